@@ -0,0 +1,21 @@
+package Benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// java -jar target/benchmarks.jar [JMH options] [benchmark regex]
+// The JMH command line, except that results are also written to jmh-result.json unless -rf/-rff say
+// otherwise, so two builds can be compared by diffing their result files.
+public class BenchmarkRunner {
+
+    public static void main(String[] args) throws Exception {
+        List<String> options = new ArrayList<>(List.of(args));
+        if (!options.contains("-rf")) {
+            options.addAll(List.of("-rf", "json"));
+        }
+        if (!options.contains("-rff")) {
+            options.addAll(List.of("-rff", "jmh-result.json"));
+        }
+        org.openjdk.jmh.Main.main(options.toArray(String[]::new));
+    }
+}
@@ -0,0 +1,86 @@
+package Benchmarks;
+
+import Service.CommandProcessor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// LRANGE and XRANGE over a large list and stream: 100 elements from the head, 100 from the middle
+// (where a range has to be found, not just walked from an end) and a 1000-element page.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CollectionBenchmark {
+
+    @Param({"100000"})
+    public int size;
+
+    private final CommandProcessor client = new CommandProcessor();
+    private List<String> lrangeHead;
+    private List<String> lrangeMiddle;
+    private List<String> lrangePage;
+    private List<String> xrangeHead;
+    private List<String> xrangeMiddle;
+    private List<String> xrangePage;
+
+    @Setup
+    public void setup() {
+        Resp.run(client, List.of("DEL", "list", "stream"));
+        Resp.fillList(client, "list", size);
+        // Explicit ids, so the middle of the stream is known: the i-th entry has id i-0.
+        for (int i = 1; i <= size; i++) {
+            Resp.run(client, List.of("XADD", "stream", i + "-0", "field", "value:" + i));
+        }
+        int middle = size / 2;
+        lrangeHead = List.of("LRANGE", "list", "0", "99");
+        lrangeMiddle = List.of("LRANGE", "list", String.valueOf(middle), String.valueOf(middle + 99));
+        lrangePage = List.of("LRANGE", "list", String.valueOf(middle), String.valueOf(middle + 999));
+        xrangeHead = List.of("XRANGE", "stream", "-", "+", "COUNT", "100");
+        xrangeMiddle = List.of("XRANGE", "stream", middle + "-0", (middle + 99) + "-0");
+        xrangePage = List.of("XRANGE", "stream", middle + "-0", "+", "COUNT", "1000");
+    }
+
+    @Benchmark
+    public int lrangeHead() {
+        return Resp.run(client, lrangeHead);
+    }
+
+    @Benchmark
+    public int lrangeMiddle() {
+        return Resp.run(client, lrangeMiddle);
+    }
+
+    @Benchmark
+    public int lrangePage() {
+        return Resp.run(client, lrangePage);
+    }
+
+    @Benchmark
+    public int xrangeHead() {
+        return Resp.run(client, xrangeHead);
+    }
+
+    @Benchmark
+    public int xrangeMiddle() {
+        return Resp.run(client, xrangeMiddle);
+    }
+
+    @Benchmark
+    public int xrangePage() {
+        return Resp.run(client, xrangePage);
+    }
+}
@@ -0,0 +1,75 @@
+package Benchmarks;
+
+import Service.CommandProcessor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Four clients at once, each with its own CommandProcessor as each connection has: all on one key
+// (they serialize on its lock), each on its own key (they should scale), and three readers of a key
+// one writer keeps setting. On fewer than four cores this measures scheduling as much as locking.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ContentionBenchmark {
+
+    @State(Scope.Thread)
+    public static class Client {
+        final CommandProcessor client = new CommandProcessor();
+        List<String> incrShared;
+        List<String> incrOwn;
+        List<String> getShared;
+        List<String> setShared;
+
+        @Setup
+        public void setup() {
+            String own = "counter:" + Thread.currentThread().threadId();
+            incrShared = List.of("INCR", "counter");
+            incrOwn = List.of("INCR", own);
+            getShared = List.of("GET", "shared");
+            setShared = List.of("SET", "shared", "0123456789abcdef");
+            Resp.run(client, setShared);
+        }
+    }
+
+    @Benchmark
+    @Threads(4)
+    public int incrSameKey(Client state) {
+        return Resp.run(state.client, state.incrShared);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public int incrOwnKey(Client state) {
+        return Resp.run(state.client, state.incrOwn);
+    }
+
+    @Benchmark
+    @Group("readWrite")
+    @GroupThreads(3)
+    public int read(Client state) {
+        return Resp.run(state.client, state.getShared);
+    }
+
+    @Benchmark
+    @Group("readWrite")
+    @GroupThreads(1)
+    public int write(Client state) {
+        return Resp.run(state.client, state.setShared);
+    }
+}
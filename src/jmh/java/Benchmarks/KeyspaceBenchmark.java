@@ -0,0 +1,74 @@
+package Benchmarks;
+
+import Models.DataStore;
+import Models.ExpiryIndex;
+import Models.RedisObject;
+import Service.CommandProcessor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// GET, SET and INCR on a keyspace of 100k keys: through CommandProcessor.respond, i.e. everything a
+// command costs after parsing (lookup, locks, stats, the handler, the reply), and on DataStore directly.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class KeyspaceBenchmark {
+
+    private static final int KEYS = 100_000;
+
+    private final DataStore dataStore = DataStore.getInstance();
+    private final CommandProcessor client = new CommandProcessor();
+    private final RedisObject value = RedisObject.ofString("0123456789abcdef");
+    private List<String> get;
+    private List<String> set;
+    private List<String> incr;
+
+    @Setup
+    public void setup() {
+        for (int i = 0; i < KEYS; i++) {
+            dataStore.set("key:" + i, RedisObject.ofString("value:" + i), ExpiryIndex.NO_EXPIRY);
+        }
+        get = List.of("GET", "key:42");
+        set = List.of("SET", "key:42", "0123456789abcdef");
+        incr = List.of("INCR", "counter");
+    }
+
+    @Benchmark
+    public int getCommand() {
+        return Resp.run(client, get);
+    }
+
+    @Benchmark
+    public int setCommand() {
+        return Resp.run(client, set);
+    }
+
+    @Benchmark
+    public int incrCommand() {
+        return Resp.run(client, incr);
+    }
+
+    @Benchmark
+    public RedisObject dataStoreGet() {
+        return dataStore.get("key:42", RedisObject.Type.STRING);
+    }
+
+    @Benchmark
+    public void dataStoreSet() {
+        dataStore.set("key:42", value, ExpiryIndex.NO_EXPIRY);
+    }
+}
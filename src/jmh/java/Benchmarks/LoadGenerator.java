@@ -0,0 +1,451 @@
+package Benchmarks;
+
+import Models.LatencyHistogram;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+// End-to-end load over real sockets, in the spirit of redis-benchmark:
+//   java -cp target/benchmarks.jar Benchmarks.LoadGenerator --connections 50 --pipeline 16 --duration 10
+//        --mix get=80,set=20 [--rate 100000] [--spawn "--io blocking"]
+// Each connection has a writer and a reader thread. Closed loop (the default) keeps --pipeline requests in
+// flight per connection. Open loop (--rate) sends on a fixed schedule whether or not replies came back,
+// and measures latency from when a request was due, so a stalled server shows up in the percentiles
+// instead of just slowing the senders down. --spawn starts Main with the given options in a JVM of its
+// own on --port, and stops it afterwards.
+public class LoadGenerator {
+
+    private static final List<String> COMMANDS = List.of("get", "set", "incr", "lpush", "lpop", "xadd", "xrange", "blpop");
+    private static final double[] PERCENTILES = {0.5, 0.9, 0.99, 0.999, 1.0};
+
+    private record Sent(int command, long startNanos) {
+    }
+
+    private String host = "127.0.0.1";
+    private int port = 6379;
+    private int connections = 50;
+    private int pipeline = 1;
+    private long requests = 100_000;
+    private int durationSeconds;
+    private int keyspace = 10_000;
+    private int valueSize = 16;
+    private long rate;
+    private String mix = "get=50,set=50";
+    private String spawn;
+
+    private int[] weights;
+    private int totalWeight;
+    private byte[] value;
+    private final LatencyHistogram overall = new LatencyHistogram();
+    private final LatencyHistogram[] perCommand = new LatencyHistogram[COMMANDS.size()];
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final AtomicLong issued = new AtomicLong();
+    private long deadline;
+
+    private static final String USAGE = """
+            Usage: java -cp target/benchmarks.jar Benchmarks.LoadGenerator [options]
+              --host <host>          server host (default 127.0.0.1)
+              --port <port>          server port (default 6379)
+              --connections <n>      connections, each with a writer and a reader thread (default 50)
+              --pipeline <n>         requests in flight per connection in closed loop (default 1)
+              --requests <n>         total requests to send (default 100000)
+              --duration <seconds>   send for this long instead of a fixed number of requests
+              --keyspace <n>         distinct keys (default 10000)
+              --value-size <bytes>   size of SET, LPUSH and XADD values (default 16)
+              --rate <n>             open loop: requests per second over all connections
+              --mix <mix>            weighted commands, e.g. get=80,set=20 (default get=50,set=50), from
+                                     get, set, incr, lpush, lpop, xadd, xrange, blpop
+              --spawn <options>      start Main with these options on --port, and stop it afterwards
+              --help                 show this help""";
+
+    public static void main(String[] args) throws Exception {
+        LoadGenerator generator = new LoadGenerator();
+        for (int i = 0; i < args.length; i += 2) {
+            if ("--help".equals(args[i]) || "-h".equals(args[i])) {
+                System.out.println(USAGE);
+                return;
+            }
+            if (i + 1 == args.length) {
+                usageError("Missing value for " + args[i]);
+            }
+            switch (args[i]) {
+                case "--host" -> generator.host = args[i + 1];
+                case "--port" -> generator.port = Integer.parseInt(args[i + 1]);
+                case "--connections" -> generator.connections = Integer.parseInt(args[i + 1]);
+                case "--pipeline" -> generator.pipeline = Integer.parseInt(args[i + 1]);
+                case "--requests" -> generator.requests = Long.parseLong(args[i + 1]);
+                case "--duration" -> generator.durationSeconds = Integer.parseInt(args[i + 1]);
+                case "--keyspace" -> generator.keyspace = Integer.parseInt(args[i + 1]);
+                case "--value-size" -> generator.valueSize = Integer.parseInt(args[i + 1]);
+                case "--rate" -> generator.rate = Long.parseLong(args[i + 1]);
+                case "--mix" -> generator.mix = args[i + 1];
+                case "--spawn" -> generator.spawn = args[i + 1];
+                default -> usageError("Unknown option: " + args[i]);
+            }
+        }
+        generator.run();
+    }
+
+    private static void usageError(String message) {
+        System.err.println(message);
+        System.err.println(USAGE);
+        System.exit(2);
+    }
+
+    private void run() throws Exception {
+        parseMix();
+        value = new byte[valueSize];
+        Arrays.fill(value, (byte) 'x');
+        for (int i = 0; i < perCommand.length; i++) {
+            perCommand[i] = new LatencyHistogram();
+        }
+        Process server = spawn == null ? null : startServer();
+        try {
+            List<Worker> workers = new ArrayList<>();
+            for (int i = 0; i < connections; i++) {
+                workers.add(new Worker(i));
+            }
+            System.out.printf(Locale.ROOT, "%d connections, %s, keyspace %d, values of %d bytes, mix %s%n", connections,
+                    rate > 0 ? "open loop at " + rate + " requests/s" : "closed loop, pipeline " + pipeline,
+                    keyspace, valueSize, mix);
+            long start = System.nanoTime();
+            deadline = durationSeconds > 0 ? start + durationSeconds * 1_000_000_000L : Long.MAX_VALUE;
+            workers.forEach(worker -> worker.start(start));
+            Thread progress = new Thread(() -> reportProgress(start), "loadgen-progress");
+            progress.setDaemon(true);
+            progress.start();
+            for (Worker worker : workers) {
+                worker.writer.join();
+            }
+            // Replies still on their way, BLPOPs timing out included.
+            long drainDeadline = System.nanoTime() + 10_000_000_000L;
+            while (workers.stream().anyMatch(Worker::outstanding) && System.nanoTime() < drainDeadline) {
+                Thread.sleep(1);
+            }
+            long elapsed = System.nanoTime() - start;
+            progress.interrupt();
+            long unanswered = workers.stream().mapToLong(worker -> worker.sentCount.get() - worker.receivedCount.get()).sum();
+            for (Worker worker : workers) {
+                worker.close();
+            }
+            report(elapsed, unanswered);
+        } finally {
+            if (server != null) {
+                server.destroy();
+                server.waitFor();
+            }
+        }
+    }
+
+    // "get=80,set=20", or "get,set" for equal shares.
+    private void parseMix() {
+        weights = new int[COMMANDS.size()];
+        for (String part : mix.toLowerCase(Locale.ROOT).split(",")) {
+            String[] nameAndWeight = part.trim().split("=");
+            int command = COMMANDS.indexOf(nameAndWeight[0]);
+            if (command < 0) {
+                throw new IllegalArgumentException("Unknown command in --mix: " + nameAndWeight[0] + ", expected one of " + COMMANDS);
+            }
+            weights[command] += nameAndWeight.length > 1 ? Integer.parseInt(nameAndWeight[1]) : 1;
+        }
+        totalWeight = Arrays.stream(weights).sum();
+        if (totalWeight <= 0) {
+            throw new IllegalArgumentException("--mix has no command with a positive weight");
+        }
+    }
+
+    private Process startServer() throws IOException, InterruptedException {
+        String java = ProcessHandle.current().info().command().orElse("java");
+        List<String> command = new ArrayList<>(List.of(java, "-cp", System.getProperty("java.class.path"), "Main",
+                "--port", String.valueOf(port)));
+        if (!spawn.isBlank()) {
+            command.addAll(Arrays.asList(spawn.trim().split("\\s+")));
+        }
+        File log = new File("loadgen-server.log");
+        Process server = new ProcessBuilder(command).redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.to(log)).start();
+        long giveUp = System.nanoTime() + 15_000_000_000L;
+        while (true) {
+            try (Socket probe = new Socket()) {
+                probe.connect(new InetSocketAddress(host, port), 1000);
+                System.out.println("Started the server with " + spawn + " on port " + port + ", logging to " + log);
+                return server;
+            } catch (IOException e) {
+                if (!server.isAlive() || System.nanoTime() > giveUp) {
+                    server.destroy();
+                    throw new IOException("The server did not start, see " + log);
+                }
+                Thread.sleep(100);
+            }
+        }
+    }
+
+    // How many of the n requests a writer wants to send it may: all until the deadline, or its share
+    // of what is left of --requests.
+    private int claim(int n) {
+        if (durationSeconds > 0) {
+            return System.nanoTime() < deadline ? n : 0;
+        }
+        long before = issued.getAndAdd(n);
+        return (int) Math.max(0, Math.min(n, requests - before));
+    }
+
+    private int pick(SplittableRandom random) {
+        int roll = random.nextInt(totalWeight);
+        for (int command = 0; ; command++) {
+            roll -= weights[command];
+            if (roll < 0) {
+                return command;
+            }
+        }
+    }
+
+    private void reportProgress(long start) {
+        long last = 0;
+        try {
+            while (true) {
+                Thread.sleep(1000);
+                long done = completed.sum();
+                System.out.printf(Locale.ROOT, "%6.1fs %10d requests/s%n", (System.nanoTime() - start) / 1e9, done - last);
+                last = done;
+            }
+        } catch (InterruptedException e) {
+            // Finished.
+        }
+    }
+
+    private void report(long elapsedNanos, long unanswered) {
+        long done = completed.sum();
+        System.out.printf(Locale.ROOT, "%n%d requests in %.3f s: %.0f requests/s, %d errors%n", done, elapsedNanos / 1e9,
+                done / (elapsedNanos / 1e9), errors.sum());
+        if (unanswered > 0) {
+            System.out.println(unanswered + " requests sent were not answered, they are left out of the latencies");
+        }
+        System.out.printf(Locale.ROOT, "%-8s %10s %10s %10s %10s %10s %10s%n", "usec", "count", "p50", "p90", "p99", "p99.9", "max");
+        printLatency("all", overall);
+        for (int command = 0; command < COMMANDS.size(); command++) {
+            if (perCommand[command].getCount() > 0) {
+                printLatency(COMMANDS.get(command), perCommand[command]);
+            }
+        }
+    }
+
+    private static void printLatency(String name, LatencyHistogram histogram) {
+        StringBuilder line = new StringBuilder(String.format(Locale.ROOT, "%-8s %10d", name, histogram.getCount()));
+        for (double percentile : PERCENTILES) {
+            line.append(String.format(Locale.ROOT, " %10.1f", histogram.percentile(percentile) / 1000.0));
+        }
+        System.out.println(line);
+    }
+
+    private class Worker {
+        private final int index;
+        private final Socket socket;
+        private final OutputStream output;
+        private final InputStream input;
+        private final ConcurrentLinkedQueue<Sent> pending = new ConcurrentLinkedQueue<>();
+        private final Semaphore inFlight = new Semaphore(pipeline);
+        private final AtomicLong sentCount = new AtomicLong();
+        private final AtomicLong receivedCount = new AtomicLong();
+        private final SplittableRandom random;
+        private volatile boolean closing;
+        private Thread writer;
+
+        Worker(int index) throws IOException {
+            this.index = index;
+            socket = new Socket();
+            socket.setTcpNoDelay(true);
+            socket.connect(new InetSocketAddress(host, port));
+            output = new BufferedOutputStream(socket.getOutputStream(), 64 * 1024);
+            input = new BufferedInputStream(socket.getInputStream(), 64 * 1024);
+            random = new SplittableRandom(index);
+        }
+
+        void start(long start) {
+            writer = new Thread(() -> write(start), "loadgen-writer-" + index);
+            Thread reader = new Thread(this::read, "loadgen-reader-" + index);
+            writer.setDaemon(true);
+            reader.setDaemon(true);
+            reader.start();
+            writer.start();
+        }
+
+        boolean outstanding() {
+            return receivedCount.get() < sentCount.get();
+        }
+
+        void close() throws IOException {
+            closing = true;
+            socket.close();
+        }
+
+        private void write(long start) {
+            long interval = rate > 0 ? Math.max(1, connections * 1_000_000_000L / rate) : 0;
+            long due = start + (rate > 0 ? index * 1_000_000_000L / rate : 0);
+            try {
+                while (true) {
+                    int batch;
+                    if (rate > 0) {
+                        long wait = due - System.nanoTime();
+                        if (wait > 0) {
+                            LockSupport.parkNanos(wait);
+                        }
+                        batch = claim(1);
+                    } else {
+                        inFlight.acquire();
+                        batch = claim(1 + inFlight.drainPermits());
+                    }
+                    if (batch == 0) {
+                        return;
+                    }
+                    long now = System.nanoTime();
+                    for (int i = 0; i < batch; i++) {
+                        int command = pick(random);
+                        // Queued first: a full buffer flushes mid-batch, and the reply may beat us back.
+                        pending.add(new Sent(command, rate > 0 ? due : now));
+                        writeCommand(command);
+                        due += interval;
+                    }
+                    sentCount.addAndGet(batch);
+                    output.flush();
+                }
+            } catch (IOException e) {
+                if (!closing) {
+                    System.out.println("Connection " + index + " failed writing: " + e.getMessage());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private void read() {
+            try {
+                while (true) {
+                    boolean failed = readReply();
+                    long end = System.nanoTime();
+                    Sent sent = pending.poll();
+                    long latency = end - sent.startNanos();
+                    overall.record(latency);
+                    perCommand[sent.command()].record(latency);
+                    if (failed) {
+                        errors.increment();
+                    }
+                    completed.increment();
+                    receivedCount.incrementAndGet();
+                    inFlight.release();
+                }
+            } catch (IOException e) {
+                if (!closing) {
+                    System.out.println("Connection " + index + " failed reading: " + e.getMessage());
+                }
+            }
+        }
+
+        private void writeCommand(int command) throws IOException {
+            String key = String.valueOf(random.nextInt(keyspace));
+            // Lists and streams get a hundredth of the keyspace, so they hold something to pop or read.
+            String collection = String.valueOf(random.nextInt(Math.max(1, keyspace / 100)));
+            switch (COMMANDS.get(command)) {
+                case "get" -> send("GET", "key:" + key);
+                case "set" -> send("SET", "key:" + key, null);
+                case "incr" -> send("INCR", "counter:" + key);
+                case "lpush" -> send("LPUSH", "list:" + collection, null);
+                case "lpop" -> send("LPOP", "list:" + collection);
+                case "xadd" -> send("XADD", "stream:" + collection, "*", "field", null);
+                case "xrange" -> send("XRANGE", "stream:" + collection, "-", "+", "COUNT", "10");
+                case "blpop" -> send("BLPOP", "list:" + collection, "0.01");
+                default -> throw new IllegalStateException();
+            }
+        }
+
+        // A null argument stands for the value.
+        private void send(String... arguments) throws IOException {
+            writeAscii("*" + arguments.length + "\r\n");
+            for (String argument : arguments) {
+                byte[] bytes = argument == null ? value : argument.getBytes(StandardCharsets.ISO_8859_1);
+                writeAscii("$" + bytes.length + "\r\n");
+                output.write(bytes);
+                writeAscii("\r\n");
+            }
+        }
+
+        private void writeAscii(String text) throws IOException {
+            output.write(text.getBytes(StandardCharsets.US_ASCII));
+        }
+
+        // Reads one whole reply, nested arrays included; true if it was an error.
+        private boolean readReply() throws IOException {
+            int type = input.read();
+            if (type < 0) {
+                throw new EOFException("connection closed by the server");
+            }
+            switch (type) {
+                case '+', ':' -> skipLine();
+                case '-' -> {
+                    skipLine();
+                    return true;
+                }
+                case '$' -> {
+                    long length = readNumber();
+                    if (length >= 0) {
+                        input.skipNBytes(length + 2);
+                    }
+                }
+                case '*' -> {
+                    long count = readNumber();
+                    for (long i = 0; i < count; i++) {
+                        readReply();
+                    }
+                }
+                default -> throw new IOException("Unexpected reply type '" + (char) type + "'");
+            }
+            return false;
+        }
+
+        private long readNumber() throws IOException {
+            long number = 0;
+            boolean negative = false;
+            int c;
+            while ((c = input.read()) != '\r') {
+                if (c < 0) {
+                    throw new EOFException("connection closed by the server");
+                }
+                if (c == '-') {
+                    negative = true;
+                } else {
+                    number = number * 10 + (c - '0');
+                }
+            }
+            input.read();
+            return negative ? -number : number;
+        }
+
+        private void skipLine() throws IOException {
+            int c;
+            while ((c = input.read()) != '\n') {
+                if (c < 0) {
+                    throw new EOFException("connection closed by the server");
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package Benchmarks;
+
+import Service.OutputEncoderService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Encoding replies into a connection's output buffer, which is reused between batches as it is by the
+// connections: status, integer, small and 4KB bulk strings, and a 100-element array as LRANGE sends.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class OutputEncoderBenchmark {
+
+    private final OutputEncoderService output = new OutputEncoderService();
+    private String small;
+    private String large;
+    private List<String> elements;
+
+    @Setup
+    public void setup() {
+        small = "0123456789abcdef";
+        large = "x".repeat(4096);
+        elements = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            elements.add("element:" + i);
+        }
+    }
+
+    @Benchmark
+    public int ok() {
+        output.reset();
+        output.writeRaw(OutputEncoderService.OK);
+        return output.size();
+    }
+
+    @Benchmark
+    public int integer() {
+        output.reset();
+        output.encodeInteger(1_234_567_890L);
+        return output.size();
+    }
+
+    @Benchmark
+    public int smallBulkString() {
+        output.reset();
+        output.encodeBulkString(small);
+        return output.size();
+    }
+
+    @Benchmark
+    public int largeBulkString() {
+        output.reset();
+        output.encodeBulkString(large);
+        return output.size();
+    }
+
+    @Benchmark
+    public int array() {
+        output.reset();
+        output.encodeList(elements);
+        return output.size();
+    }
+}
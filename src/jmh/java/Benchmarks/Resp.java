@@ -0,0 +1,51 @@
+package Benchmarks;
+
+import Service.CommandProcessor;
+import Service.OutputEncoderService;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+// Helpers shared by the benchmarks: RESP frames as a client sends them, and running commands the way a
+// connection does, through CommandProcessor.respond, dropping the reply.
+final class Resp {
+
+    private Resp() {
+    }
+
+    static byte[] command(String... arguments) {
+        ByteArrayOutputStream frame = new ByteArrayOutputStream();
+        frame.writeBytes(("*" + arguments.length + "\r\n").getBytes(StandardCharsets.US_ASCII));
+        for (String argument : arguments) {
+            byte[] bytes = argument.getBytes(StandardCharsets.ISO_8859_1);
+            frame.writeBytes(("$" + bytes.length + "\r\n").getBytes(StandardCharsets.US_ASCII));
+            frame.writeBytes(bytes);
+            frame.writeBytes("\r\n".getBytes(StandardCharsets.US_ASCII));
+        }
+        return frame.toByteArray();
+    }
+
+    // Runs the command and returns the size of its reply, so the work cannot be optimized away.
+    static int run(CommandProcessor client, List<String> arguments) {
+        OutputEncoderService output = client.getOutput();
+        client.respond(arguments);
+        int size = output.size();
+        output.reset();
+        return size;
+    }
+
+    // RPUSH key 0 1 2 ... in batches, for building large lists.
+    static void fillList(CommandProcessor client, String key, int size) {
+        for (int from = 0; from < size; from += 1000) {
+            List<String> push = new ArrayList<>();
+            push.add("RPUSH");
+            push.add(key);
+            for (int i = from; i < Math.min(size, from + 1000); i++) {
+                push.add(String.valueOf(i));
+            }
+            run(client, push);
+        }
+    }
+}
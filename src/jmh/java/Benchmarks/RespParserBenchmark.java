@@ -0,0 +1,82 @@
+package Benchmarks;
+
+import Service.RespParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Parsing what a connection reads: one small command, a SET with a 64KB value arriving in 16KB reads
+// as the connection handlers receive it, and a pipeline of 100 SETs in a single read.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RespParserBenchmark {
+
+    private static final int READ_SIZE = 16 * 1024;
+
+    private final RespParser parser = new RespParser();
+    private byte[] ping;
+    private byte[] set;
+    private byte[] largeSet;
+    private byte[] pipeline;
+
+    @Setup
+    public void setup() {
+        ping = Resp.command("PING");
+        set = Resp.command("SET", "key:000042", "0123456789abcdef");
+        largeSet = Resp.command("SET", "large", "x".repeat(64 * 1024));
+        ByteArrayOutputStream frames = new ByteArrayOutputStream();
+        for (int i = 0; i < 100; i++) {
+            frames.writeBytes(Resp.command("SET", "key:" + i, "value:" + i));
+        }
+        pipeline = frames.toByteArray();
+    }
+
+    @Benchmark
+    public List<String> ping() {
+        parser.feed(ping, 0, ping.length);
+        return parser.next();
+    }
+
+    @Benchmark
+    public List<String> set() {
+        parser.feed(set, 0, set.length);
+        return parser.next();
+    }
+
+    @Benchmark
+    public List<String> largeSet() {
+        List<String> command = null;
+        for (int offset = 0; offset < largeSet.length; offset += READ_SIZE) {
+            parser.feed(largeSet, offset, Math.min(READ_SIZE, largeSet.length - offset));
+            command = parser.next();
+        }
+        return command;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(100)
+    public void pipeline(Blackhole blackhole) {
+        parser.feed(pipeline, 0, pipeline.length);
+        List<String> command;
+        while ((command = parser.next()) != null) {
+            blackhole.consume(command);
+        }
+    }
+}
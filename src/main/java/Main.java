@@ -1,18 +1,90 @@
-import Models.ExpiryKey;
+import Models.ServerConfig;
+import Service.AofService;
 import Service.ClientHandler;
+import Service.EventLoopServer;
+import Service.ExpiryService;
+import Service.LogService;
+import Service.MetricsServer;
+import Service.ReplicationService;
+import Service.SnapshotService;
 
 import java.io.IOException;
 import java.net.ServerSocket;
 import java.net.Socket;
-import java.util.HashMap;
-import java.util.Map;
 
 public class Main {
-    private static final Map<String, ExpiryKey> keyValueMap = new HashMap<>();
+
+    private static final LogService log = LogService.getInstance();
+
     public static void main(String[] args){
+        ServerConfig config = ServerConfig.getInstance();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--port" -> config.setPort(Integer.parseInt(args[i + 1]));
+                case "--io" -> config.setIoMode(args[i + 1]);
+                case "--io-threads" -> config.setIoThreads(Integer.parseInt(args[i + 1]));
+                case "--metrics-port" -> config.setMetricsPort(Integer.parseInt(args[i + 1]));
+                case "--hz" -> config.setHz(Integer.parseInt(args[i + 1]));
+                case "--maxmemory" -> config.setMaxmemory(ServerConfig.parseMemory(args[i + 1]));
+                case "--maxmemory-policy" -> config.setMaxmemoryPolicy(args[i + 1]);
+                case "--maxmemory-samples" -> config.setMaxmemorySamples(Integer.parseInt(args[i + 1]));
+                case "--dir" -> config.setDir(args[i + 1]);
+                case "--dbfilename" -> config.setDbfilename(args[i + 1]);
+                case "--save" -> config.setSave(args[i + 1]);
+                case "--appendonly" -> config.setAppendonly(ServerConfig.parseYesNo(args[i + 1]));
+                case "--appendfsync" -> config.setAppendfsync(args[i + 1]);
+                case "--appendfilename" -> config.setAppendfilename(args[i + 1]);
+                case "--replicaof" -> config.setReplicaof(args[i + 1]);
+                case "--repl-backlog-size" -> config.setReplBacklogSize(ServerConfig.parseMemory(args[i + 1]));
+                case "--slowlog-log-slower-than" -> config.setSlowlogLogSlowerThan(Long.parseLong(args[i + 1]));
+                case "--slowlog-max-len" -> config.setSlowlogMaxLen(Integer.parseInt(args[i + 1]));
+                case "--latency-monitor-threshold" -> config.setLatencyMonitorThreshold(Long.parseLong(args[i + 1]));
+                case "--loglevel" -> config.setLoglevel(args[i + 1]);
+                default -> log.warning("Ignoring unknown option: " + args[i]);
+            }
+        }
+        log.setLevel(LogService.Level.parse(config.getLoglevel()));
+        SnapshotService snapshotService = SnapshotService.getInstance();
+        AofService aofService = AofService.getInstance();
+        // With appendonly on the AOF is the source of truth; without one yet, it is created from the RDB.
+        try {
+            if (!config.isAppendonly()) {
+                snapshotService.load();
+            } else if (aofService.load()) {
+                aofService.start();
+            } else {
+                snapshotService.load();
+                aofService.setEnabled(true);
+            }
+        } catch (IOException e) {
+            log.warning("Failed loading the " + (config.isAppendonly() ? "AOF" : "RDB") + " file: " + e.getMessage());
+            System.exit(1);
+        }
+        snapshotService.start();
+        // A replica starts from what it has on disk, and the master decides whether that is enough.
+        if (!config.getReplicaof().isEmpty()) {
+            String[] master = config.getReplicaof().split("\\s+");
+            ReplicationService.getInstance().replicaOf(master[0], Integer.parseInt(master[1]));
+        }
+        new ExpiryService().start();
+        if (config.getMetricsPort() > 0) {
+            new MetricsServer(config.getMetricsPort()).start();
+        }
+        if ("blocking".equalsIgnoreCase(config.getIoMode())) {
+            runBlocking(config.getPort());
+        } else {
+            try {
+                new EventLoopServer(config.getPort(), config.getIoThreads()).start();
+            } catch (IOException e) {
+                log.warning("IOException: " + e.getMessage());
+                System.exit(1);
+            }
+        }
+    }
+
+    private static void runBlocking(int port) {
         ServerSocket serverSocket = null;
         Socket clientSocket = null;
-        int port = 6379;
         try {
             serverSocket = new ServerSocket(port);
             serverSocket.setReuseAddress(true);
@@ -21,18 +93,19 @@ public class Main {
                 clientSocket = serverSocket.accept();
                 ClientHandler clientHandler = new ClientHandler(clientSocket);
                 Thread t = new Thread(clientHandler);
-                System.out.println("Accepted client connection with the socket : "+clientSocket.getPort()+" on the thread: "+t.getName());
+                log.verbose("Accepted client connection with the socket : "+clientSocket.getPort()+" on the thread: "+t.getName());
                 t.start();
             }
         } catch (IOException e) {
-            System.out.println("IOException: " + e.getMessage());
+            log.warning("IOException: " + e.getMessage());
+            System.exit(1);
         } finally {
             try {
                 if (clientSocket != null) {
                     clientSocket.close();
                 }
             } catch (IOException e) {
-                System.out.println("IOException: " + e.getMessage());
+                log.verbose("IOException: " + e.getMessage());
             }
         }
     }
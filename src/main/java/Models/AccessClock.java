@@ -0,0 +1,65 @@
+package Models;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+// The access clock stored on every value, Redis style. Under an LRU policy it is the second of the
+// last access; under LFU it packs the minute of the last decay (high 16 bits) with a logarithmic
+// access counter (low 8 bits) that saturates at 255 and halves in relevance as minutes pass.
+public final class AccessClock {
+
+    private static final long START = System.currentTimeMillis();
+    private static final int LFU_INIT_VAL = 5;
+    private static final int LFU_LOG_FACTOR = 10;
+    private static final int LFU_DECAY_MINUTES = 1;
+
+    private AccessClock() {
+    }
+
+    public static int initial() {
+        return ServerConfig.getInstance().isLfuPolicy() ? (minutes() << 8) | LFU_INIT_VAL : seconds();
+    }
+
+    public static int touch(int clock) {
+        if (!ServerConfig.getInstance().isLfuPolicy()) {
+            return seconds();
+        }
+        int counter = decayedCounter(clock);
+        if (counter < 255) {
+            double baseline = Math.max(0, counter - LFU_INIT_VAL);
+            if (ThreadLocalRandom.current().nextDouble() < 1.0 / (baseline * LFU_LOG_FACTOR + 1)) {
+                counter++;
+            }
+        }
+        return (minutes() << 8) | counter;
+    }
+
+    // Higher means a better eviction candidate: seconds idle for LRU, 255 minus the frequency for LFU.
+    public static long evictionScore(int clock) {
+        if (ServerConfig.getInstance().isLfuPolicy()) {
+            return 255 - decayedCounter(clock);
+        }
+        return idleSeconds(clock);
+    }
+
+    public static long idleSeconds(int clock) {
+        return Math.max(0, seconds() - clock);
+    }
+
+    public static int frequency(int clock) {
+        return decayedCounter(clock);
+    }
+
+    private static int decayedCounter(int clock) {
+        int elapsed = (minutes() - (clock >>> 8)) & 0xFFFF;
+        int counter = clock & 0xFF;
+        return Math.max(0, counter - elapsed / LFU_DECAY_MINUTES);
+    }
+
+    private static int seconds() {
+        return (int) ((System.currentTimeMillis() - START) / 1000);
+    }
+
+    private static int minutes() {
+        return (int) ((System.currentTimeMillis() / 60000) & 0xFFFF);
+    }
+}
@@ -0,0 +1,53 @@
+package Models;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+// Arguments arrive as ISO-8859-1 strings (one char per byte); stored payloads are the raw bytes.
+public final class Bytes {
+
+    private Bytes() {
+    }
+
+    public static byte[] of(String argument) {
+        return argument.getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    public static byte[][] of(List<String> arguments) {
+        byte[][] values = new byte[arguments.size()][];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = of(arguments.get(i));
+        }
+        return values;
+    }
+
+    // True when the string is exactly the decimal form of a long, so storing the number loses nothing.
+    public static boolean isCanonicalLong(String value) {
+        int length = value.length();
+        if (length == 0 || length > 20) {
+            return false;
+        }
+        int i = value.charAt(0) == '-' ? 1 : 0;
+        if (i == length) {
+            return false;
+        }
+        if (value.charAt(i) == '0') {
+            return length == 1;
+        }
+        for (int j = i; j < length; j++) {
+            char c = value.charAt(j);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        if (length - i < 19) {
+            return true;
+        }
+        try {
+            Long.parseLong(value);
+            return true;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+}
@@ -1,22 +1,33 @@
 package Models;
 
-import java.util.LinkedList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
 
 public class DataStore {
 
+    public static final String WRONGTYPE = "-WRONGTYPE Operation against a key holding the wrong kind of value";
+    // Estimated heap cost of a keyspace entry besides the key's chars and the value: map node, String, RedisObject.
+    private static final long KEY_OVERHEAD = 96;
+
     private static DataStore instance;
-    private final ConcurrentHashMap<String, ExpiryKey> keyMap;
-    private final  ConcurrentHashMap<String, LinkedList<String>> listMap;
-    private final ConcurrentHashMap<String, List<Entry>> streamMap;
-    private final ConcurrentHashMap<String, LockAndCondition> listLocks;
+    // One keyspace for every type: a key maps to exactly one typed value, found with one lookup.
+    private final ConcurrentHashMap<String, RedisObject> keyspace;
+    private final ExpiryIndex expiryIndex;
+    private final KeyLocks keyLocks;
+    private final KeyVersions keyVersions;
+    private final LongAdder usedMemory = new LongAdder();
+    private final LongAdder expiredKeys = new LongAdder();
 
     private DataStore() {
-        keyMap = new ConcurrentHashMap<>();
-        listMap = new ConcurrentHashMap<>();
-        streamMap = new ConcurrentHashMap<>();
-        listLocks = new ConcurrentHashMap<>();
+        keyspace = new ConcurrentHashMap<>();
+        expiryIndex = new ExpiryIndex();
+        keyLocks = new KeyLocks();
+        keyVersions = new KeyVersions();
     }
 
     public static synchronized DataStore getInstance() {
@@ -26,19 +37,227 @@ public class DataStore {
         return instance;
     }
 
-    public ConcurrentHashMap<String, ExpiryKey> getKeyMap() {
-        return keyMap;
+    public ExpiryIndex getExpiryIndex() {
+        return expiryIndex;
+    }
+
+    public KeyLocks getKeyLocks() {
+        return keyLocks;
+    }
+
+    public KeyVersions getKeyVersions() {
+        return keyVersions;
+    }
+
+    public RedisObject get(String key) {
+        return keyspace.get(key);
+    }
+
+    // The value under key if it has the given type, null if the key is missing, WRONGTYPE otherwise.
+    public RedisObject get(String key, RedisObject.Type type) {
+        RedisObject value = keyspace.get(key);
+        if (value != null && value.getType() != type) {
+            throw new RuntimeException(WRONGTYPE);
+        }
+        return value;
+    }
+
+    public RedisObject getOrCreate(String key, RedisObject.Type type, Supplier<RedisObject> factory) {
+        RedisObject value = keyspace.get(key);
+        if (value == null) {
+            value = keyspace.computeIfAbsent(key, k -> {
+                RedisObject created = factory.get();
+                usedMemory.add(sizeOf(k, created));
+                return created;
+            });
+        }
+        if (value.getType() != type) {
+            throw new RuntimeException(WRONGTYPE);
+        }
+        return value;
+    }
+
+    public boolean exists(String key) {
+        return keyspace.containsKey(key);
+    }
+
+    public int size() {
+        return keyspace.size();
+    }
+
+    // Runs for every key a command touches: expires it if due, otherwise records the access for LRU/LFU.
+    public void access(String key) {
+        RedisObject value = keyspace.get(key);
+        if (value == null) {
+            return;
+        }
+        if (value.isExpiredAt(System.currentTimeMillis())) {
+            expireIfNeeded(key);
+        } else {
+            value.touch();
+        }
+    }
+
+    public long getUsedMemory() {
+        return usedMemory.sum();
+    }
+
+    // For commands that grow or shrink a list or stream in place.
+    // Keys removed for having expired, whether found by a command or by the active expiry cycle.
+    public long getExpiredKeys() {
+        return expiredKeys.sum();
+    }
+
+    public void adjustMemory(long delta) {
+        usedMemory.add(delta);
+    }
+
+    // Weakly consistent: never throws on concurrent updates, so the evictor can keep one across calls.
+    public Iterator<Map.Entry<String, RedisObject>> keyspaceIterator() {
+        return keyspace.entrySet().iterator();
+    }
+
+    private static long sizeOf(String key, RedisObject value) {
+        return value == null ? 0 : KEY_OVERHEAD + key.length() + value.memoryUsage();
+    }
+
+    // Replaces whatever the key held, of any type, and gives it the new TTL (NO_EXPIRY for none).
+    public void set(String key, RedisObject value, long expiryTime) {
+        keyspace.compute(key, (k, previous) -> {
+            clearExpiry(k, previous);
+            applyExpiry(k, value, expiryTime);
+            usedMemory.add(sizeOf(k, value) - sizeOf(k, previous));
+            return value;
+        });
     }
 
-    public ConcurrentHashMap<String, LinkedList<String>> getListMap() {
-        return listMap;
+    // Atomically replaces the value with update(current), current being null when the key is missing.
+    // The TTL carries over, as it does for INCR and friends.
+    public RedisObject update(String key, UnaryOperator<RedisObject> update) {
+        return keyspace.compute(key, (k, current) -> {
+            RedisObject updated = update.apply(current);
+            if (updated == null) {
+                clearExpiry(k, current);
+            } else if (current != null && updated != current) {
+                updated.setExpiryTime(current.getExpiryTime());
+            }
+            usedMemory.add(sizeOf(k, updated) - sizeOf(k, current));
+            return updated;
+        });
     }
 
-    public ConcurrentHashMap<String, List<Entry>> getStreamMap() {
-        return streamMap;
+    public boolean remove(String key) {
+        boolean[] removed = new boolean[1];
+        keyspace.computeIfPresent(key, (k, previous) -> {
+            clearExpiry(k, previous);
+            usedMemory.add(-sizeOf(k, previous));
+            removed[0] = true;
+            return null;
+        });
+        return removed[0];
     }
 
-    public ConcurrentHashMap<String, LockAndCondition> getListLocks() {
-        return listLocks;
+    // Deletes the key only if it still holds this value, e.g. a list that was just emptied.
+    public void remove(String key, RedisObject value) {
+        keyspace.computeIfPresent(key, (k, current) -> {
+            if (current != value) {
+                return current;
+            }
+            clearExpiry(k, current);
+            usedMemory.add(-sizeOf(k, current));
+            return null;
+        });
+    }
+
+    // Moves the value and its TTL under a new name, replacing whatever the destination held.
+    public boolean rename(String source, String destination, boolean onlyIfAbsent) {
+        List<String> keys = List.of(source, destination);
+        keyLocks.lockAll(keys);
+        try {
+            RedisObject value = keyspace.get(source);
+            if (value == null) {
+                throw new RuntimeException("no such key");
+            }
+            if (source.equals(destination)) {
+                return !onlyIfAbsent;
+            }
+            if (onlyIfAbsent && keyspace.containsKey(destination)) {
+                return false;
+            }
+            long expiryTime = value.getExpiryTime();
+            remove(source);
+            set(destination, value, expiryTime);
+            return true;
+        } finally {
+            keyLocks.unlockAll(keys);
+        }
+    }
+
+    // Empties the keyspace a key at a time, each under its lock, so no command sees a value half removed.
+    public void flushAll() {
+        for (String key : keyspace.keySet()) {
+            keyLocks.lock(key);
+            try {
+                remove(key);
+            } finally {
+                keyLocks.unlock(key);
+            }
+        }
+        keyVersions.touchAll();
+    }
+
+    public boolean setExpiry(String key, long expiryTime) {
+        return keyspace.computeIfPresent(key, (k, current) -> {
+            clearExpiry(k, current);
+            applyExpiry(k, current, expiryTime);
+            return current;
+        }) != null;
+    }
+
+    public boolean persist(String key) {
+        boolean[] persisted = new boolean[1];
+        keyspace.computeIfPresent(key, (k, current) -> {
+            persisted[0] = current.getExpiryTime() != ExpiryIndex.NO_EXPIRY;
+            clearExpiry(k, current);
+            return current;
+        });
+        return persisted[0];
+    }
+
+    public boolean expireIfNeeded(String key) {
+        long now = System.currentTimeMillis();
+        RedisObject value = keyspace.get(key);
+        if (value == null || !value.isExpiredAt(now)) {
+            return false;
+        }
+        boolean[] expired = new boolean[1];
+        keyspace.computeIfPresent(key, (k, current) -> {
+            if (!current.isExpiredAt(now)) {
+                return current;
+            }
+            clearExpiry(k, current);
+            usedMemory.add(-sizeOf(k, current));
+            expired[0] = true;
+            return null;
+        });
+        if (expired[0]) {
+            keyVersions.touch(key);
+            expiredKeys.increment();
+        }
+        return expired[0];
+    }
+
+    private void clearExpiry(String key, RedisObject value) {
+        if (value != null && value.getExpiryTime() != ExpiryIndex.NO_EXPIRY) {
+            expiryIndex.remove(key, value.getExpiryTime());
+            value.setExpiryTime(ExpiryIndex.NO_EXPIRY);
+        }
+    }
+
+    private void applyExpiry(String key, RedisObject value, long expiryTime) {
+        value.setExpiryTime(expiryTime);
+        if (expiryTime != ExpiryIndex.NO_EXPIRY) {
+            expiryIndex.add(key, expiryTime);
+        }
     }
-}
\ No newline at end of file
+}
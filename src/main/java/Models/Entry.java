@@ -1,36 +1,33 @@
 package Models;
 
-import java.util.Map;
-
 public class Entry {
 
-    Long milliseconds;
-    Long sequenceNumber;
-    Map<String, String> keyValueMap;
+    private final StreamId id;
+    // Field names and values interleaved, in the order they were added.
+    private final byte[][] fields;
 
-    public Entry(Long milliseconds, Long sequenceNumber, Map<String, String> keyValueMap) {
-        this.milliseconds = milliseconds;
-        this.sequenceNumber = sequenceNumber;
-        this.keyValueMap = keyValueMap;
+    public Entry(StreamId id, byte[][] fields) {
+        this.id = id;
+        this.fields = fields;
     }
 
-    public Long getMilliseconds() {
-        return milliseconds;
+    public StreamId getStreamId() {
+        return id;
     }
 
-    public Long getSequenceNumber() {
-        return sequenceNumber;
+    public long getMilliseconds() {
+        return id.milliseconds();
     }
 
-    public Map<String, String> getKeyValueMap() {
-        return keyValueMap;
+    public long getSequenceNumber() {
+        return id.sequenceNumber();
     }
 
-    public String getId() {
-        return milliseconds + "-" + sequenceNumber;
+    public byte[][] getFields() {
+        return fields;
     }
 
-    public void setKeyValueMap(Map<String, String> keyValueMap) {
-        this.keyValueMap = keyValueMap;
+    public String getId() {
+        return id.toString();
     }
 }
@@ -0,0 +1,72 @@
+package Models;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+// The deadline of every key that carries a TTL, ordered by time so that the active expiry cycle only
+// ever touches keys that are actually due. The TTL itself lives on the RedisObject; DataStore keeps
+// the two in step by updating both while it holds the key's slot.
+public class ExpiryIndex {
+
+    public static final long NO_EXPIRY = -1L;
+
+    private record Deadline(long expiryTime, String key) implements Comparable<Deadline> {
+        @Override
+        public int compareTo(Deadline other) {
+            int byTime = Long.compare(expiryTime, other.expiryTime);
+            return byTime != 0 ? byTime : key.compareTo(other.key);
+        }
+    }
+
+    private final ConcurrentSkipListSet<Deadline> queue = new ConcurrentSkipListSet<>();
+    private final AtomicInteger size = new AtomicInteger();
+    // Deadlines are summed relative to startup so the total stays far from overflowing.
+    private final long base = System.currentTimeMillis();
+    private final LongAdder deadlineSum = new LongAdder();
+
+    void add(String key, long expiryTime) {
+        if (queue.add(new Deadline(expiryTime, key))) {
+            size.incrementAndGet();
+            deadlineSum.add(expiryTime - base);
+        }
+    }
+
+    void remove(String key, long expiryTime) {
+        if (queue.remove(new Deadline(expiryTime, key))) {
+            size.decrementAndGet();
+            deadlineSum.add(base - expiryTime);
+        }
+    }
+
+    public List<String> dueKeys(long now, int limit) {
+        List<String> keys = new ArrayList<>();
+        for (Deadline deadline : queue) {
+            if (deadline.expiryTime() > now || keys.size() >= limit) {
+                break;
+            }
+            keys.add(deadline.key());
+        }
+        return keys;
+    }
+
+    // The key closest to expiring, for the volatile-ttl eviction policy.
+    public String soonestKey() {
+        for (Deadline deadline : queue) {
+            return deadline.key();
+        }
+        return null;
+    }
+
+    // Mean remaining TTL in milliseconds over the keys that have one, for INFO keyspace.
+    public long averageTtl(long now) {
+        int keys = size.get();
+        return keys > 0 ? Math.max(0, deadlineSum.sum() / keys + base - now) : 0;
+    }
+
+    public int size() {
+        return size.get();
+    }
+}
@@ -0,0 +1,84 @@
+package Models;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+// A fixed set of lock stripes shared by all keys. Nothing is allocated per key, so locks never
+// leak when keys are deleted. Multi-key callers take their stripes in index order to avoid deadlock.
+public class KeyLocks {
+
+    private static final int STRIPES = 1024;
+
+    private final ReentrantLock[] locks = new ReentrantLock[STRIPES];
+
+    public KeyLocks() {
+        for (int i = 0; i < STRIPES; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    private static int stripe(String key) {
+        int h = key.hashCode();
+        return (h ^ (h >>> 16)) & (STRIPES - 1);
+    }
+
+    public void lock(String key) {
+        locks[stripe(key)].lock();
+    }
+
+    public void unlock(String key) {
+        locks[stripe(key)].unlock();
+    }
+
+    // Every stripe, in index order. While they are held no keyed command is running, so this is an
+    // instant between commands, the one a point-in-time snapshot starts from.
+    public void lockEverything() {
+        for (ReentrantLock lock : locks) {
+            lock.lock();
+        }
+    }
+
+    public void unlockEverything() {
+        for (int i = STRIPES - 1; i >= 0; i--) {
+            locks[i].unlock();
+        }
+    }
+
+    // Every keyed command goes through these, so the common one-key case skips the sorting.
+    public void lockAll(List<String> keys) {
+        if (keys.size() == 1) {
+            lock(keys.get(0));
+            return;
+        }
+        for (int stripe : stripesOf(keys)) {
+            locks[stripe].lock();
+        }
+    }
+
+    public void unlockAll(List<String> keys) {
+        if (keys.size() == 1) {
+            unlock(keys.get(0));
+            return;
+        }
+        int[] stripes = stripesOf(keys);
+        for (int i = stripes.length - 1; i >= 0; i--) {
+            locks[stripes[i]].unlock();
+        }
+    }
+
+    private static int[] stripesOf(List<String> keys) {
+        int[] stripes = new int[keys.size()];
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = stripe(keys.get(i));
+        }
+        Arrays.sort(stripes);
+        int n = 0;
+        for (int i = 0; i < stripes.length; i++) {
+            if (n == 0 || stripes[n - 1] != stripes[i]) {
+                stripes[n++] = stripes[i];
+            }
+        }
+        return Arrays.copyOf(stripes, n);
+    }
+}
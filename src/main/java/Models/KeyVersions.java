@@ -0,0 +1,54 @@
+package Models;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Modification stamps for WATCH. Only keys some client watches have a stamp, so while nobody watches
+// a write pays one isEmpty() check. A stamp is bumped under its key's lock by every change to the key,
+// including expiry and eviction; EXEC compares it with the value seen when the key was watched.
+public class KeyVersions {
+
+    private static class Stamp {
+        int watchers;
+        volatile long version;
+    }
+
+    private final ConcurrentHashMap<String, Stamp> stamps = new ConcurrentHashMap<>();
+    private final AtomicLong clock = new AtomicLong();
+
+    // Returns the key's current version, to hand back to changedSince.
+    public long watch(String key) {
+        return stamps.compute(key, (k, stamp) -> {
+            if (stamp == null) {
+                stamp = new Stamp();
+            }
+            stamp.watchers++;
+            return stamp;
+        }).version;
+    }
+
+    public void unwatch(String key) {
+        stamps.computeIfPresent(key, (k, stamp) -> --stamp.watchers == 0 ? null : stamp);
+    }
+
+    public boolean changedSince(String key, long version) {
+        Stamp stamp = stamps.get(key);
+        return stamp == null || stamp.version != version;
+    }
+
+    public void touch(String key) {
+        if (stamps.isEmpty()) {
+            return;
+        }
+        Stamp stamp = stamps.get(key);
+        if (stamp != null) {
+            stamp.version = clock.incrementAndGet();
+        }
+    }
+
+    public void touchAll() {
+        for (Stamp stamp : stamps.values()) {
+            stamp.version = clock.incrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package Models;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+// The value stored under a key: its type, its payload in one of the type's encodings, and its TTL.
+// String payloads are immutable (a long for the int encoding, raw bytes otherwise); list and stream
+// payloads are mutated in place by their commands.
+public class RedisObject {
+
+    public enum Type {
+        STRING, LIST, STREAM;
+
+        public String getName() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    private final Type type;
+    private final Object value;
+    // Only changed by DataStore while it holds the key's slot, together with the expiry index.
+    private volatile long expiryTime = ExpiryIndex.NO_EXPIRY;
+    private volatile int accessClock = AccessClock.initial();
+
+    private RedisObject(Type type, Object value) {
+        this.type = type;
+        this.value = value;
+    }
+
+    // Numbers that round-trip exactly get the int encoding so counters never re-parse.
+    public static RedisObject ofString(String value) {
+        if (Bytes.isCanonicalLong(value)) {
+            return new RedisObject(Type.STRING, Long.parseLong(value));
+        }
+        return new RedisObject(Type.STRING, Bytes.of(value));
+    }
+
+    // Same rule for a payload that is already bytes, e.g. one read from a snapshot; the array is kept.
+    public static RedisObject ofBytes(byte[] value) {
+        if (value.length <= 20) {
+            String text = new String(value, StandardCharsets.ISO_8859_1);
+            if (Bytes.isCanonicalLong(text)) {
+                return new RedisObject(Type.STRING, Long.parseLong(text));
+            }
+        }
+        return new RedisObject(Type.STRING, value);
+    }
+
+    public static RedisObject ofLong(long number) {
+        return new RedisObject(Type.STRING, number);
+    }
+
+    public static RedisObject ofList(RingList list) {
+        return new RedisObject(Type.LIST, list);
+    }
+
+    public static RedisObject ofStream(Stream stream) {
+        return new RedisObject(Type.STREAM, stream);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public String getEncoding() {
+        return switch (type) {
+            case STRING -> isInteger() ? "int" : "raw";
+            case LIST -> "ringbuffer";
+            case STREAM -> "stream";
+        };
+    }
+
+    public boolean isInteger() {
+        return value instanceof Long;
+    }
+
+    public long getLong() {
+        return (Long) value;
+    }
+
+    public byte[] getBytes() {
+        return value instanceof Long number ? Long.toString(number).getBytes(StandardCharsets.US_ASCII) : (byte[]) value;
+    }
+
+    public RingList getList() {
+        return (RingList) value;
+    }
+
+    public Stream getStream() {
+        return (Stream) value;
+    }
+
+    public long getExpiryTime() {
+        return expiryTime;
+    }
+
+    void setExpiryTime(long expiryTime) {
+        this.expiryTime = expiryTime;
+    }
+
+    // Estimated heap cost of the value, used for maxmemory accounting.
+    public long memoryUsage() {
+        return switch (type) {
+            case STRING -> isInteger() ? 16 : 16 + ((byte[]) value).length;
+            case LIST -> getList().memoryUsage();
+            case STREAM -> getStream().memoryUsage();
+        };
+    }
+
+    public int getAccessClock() {
+        return accessClock;
+    }
+
+    // Only writes when the clock moved, so hot keys read by many threads don't bounce the cache line.
+    public void touch() {
+        int current = accessClock;
+        int next = AccessClock.touch(current);
+        if (next != current) {
+            accessClock = next;
+        }
+    }
+
+    public boolean isExpiredAt(long now) {
+        return expiryTime != ExpiryIndex.NO_EXPIRY && expiryTime <= now;
+    }
+}
@@ -0,0 +1,130 @@
+package Models;
+
+import java.util.NoSuchElementException;
+
+// List storage as a growable circular array: O(1) push and pop at both ends, O(1) access by index
+// and one array slot per element instead of a linked node. Callers hold the key's lock.
+public class RingList {
+
+    private static final int MIN_CAPACITY = 8;
+    // Estimated heap cost of the list itself and of each stored byte[] beyond its payload.
+    private static final long BASE_OVERHEAD = 48;
+    private static final long ELEMENT_OVERHEAD = 16;
+
+    private byte[][] elements = new byte[MIN_CAPACITY][];
+    private int head;
+    private int size;
+    private long payloadBytes;
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public long memoryUsage() {
+        return BASE_OVERHEAD + 4L * elements.length + ELEMENT_OVERHEAD * size + payloadBytes;
+    }
+
+    public void pushFirst(byte[] value) {
+        ensureCapacity(size + 1);
+        head = (head - 1) & (elements.length - 1);
+        elements[head] = value;
+        payloadBytes += value.length;
+        size++;
+    }
+
+    public void pushLast(byte[] value) {
+        ensureCapacity(size + 1);
+        elements[(head + size) & (elements.length - 1)] = value;
+        payloadBytes += value.length;
+        size++;
+    }
+
+    public byte[] popFirst() {
+        if (size == 0) {
+            throw new NoSuchElementException();
+        }
+        byte[] value = elements[head];
+        elements[head] = null;
+        payloadBytes -= value.length;
+        head = (head + 1) & (elements.length - 1);
+        size--;
+        shrinkIfSparse();
+        return value;
+    }
+
+    public byte[] popLast() {
+        if (size == 0) {
+            throw new NoSuchElementException();
+        }
+        int tail = (head + size - 1) & (elements.length - 1);
+        byte[] value = elements[tail];
+        elements[tail] = null;
+        payloadBytes -= value.length;
+        size--;
+        shrinkIfSparse();
+        return value;
+    }
+
+    public byte[] get(int index) {
+        return elements[(head + index) & (elements.length - 1)];
+    }
+
+    public void set(int index, byte[] value) {
+        int slot = (head + index) & (elements.length - 1);
+        payloadBytes += value.length - elements[slot].length;
+        elements[slot] = value;
+    }
+
+    // Keeps only the elements in [start, end], both already clamped to valid indexes.
+    public void trim(int start, int end) {
+        if (start > end) {
+            clear();
+            return;
+        }
+        int mask = elements.length - 1;
+        for (int i = 0; i < start; i++) {
+            payloadBytes -= elements[(head + i) & mask].length;
+            elements[(head + i) & mask] = null;
+        }
+        for (int i = end + 1; i < size; i++) {
+            payloadBytes -= elements[(head + i) & mask].length;
+            elements[(head + i) & mask] = null;
+        }
+        head = (head + start) & mask;
+        size = end - start + 1;
+        shrinkIfSparse();
+    }
+
+    public void clear() {
+        elements = new byte[MIN_CAPACITY][];
+        head = 0;
+        size = 0;
+        payloadBytes = 0;
+    }
+
+    private void ensureCapacity(int required) {
+        if (required <= elements.length) {
+            return;
+        }
+        resize(elements.length << 1);
+    }
+
+    private void shrinkIfSparse() {
+        if (elements.length > MIN_CAPACITY && size < elements.length >>> 2) {
+            resize(Math.max(MIN_CAPACITY, elements.length >>> 1));
+        }
+    }
+
+    private void resize(int capacity) {
+        byte[][] resized = new byte[capacity][];
+        int firstPart = Math.min(size, elements.length - head);
+        System.arraycopy(elements, head, resized, 0, firstPart);
+        System.arraycopy(elements, 0, resized, firstPart, size - firstPart);
+        elements = resized;
+        head = 0;
+    }
+}
@@ -0,0 +1,350 @@
+package Models;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+public class ServerConfig {
+
+    private static final List<String> POLICIES = List.of("noeviction", "allkeys-lru", "allkeys-lfu",
+            "volatile-lru", "volatile-lfu", "volatile-ttl");
+
+    private static ServerConfig instance;
+    private int port = 6379;
+    private String ioMode = "nio";
+    private int ioThreads = Runtime.getRuntime().availableProcessors();
+    private int metricsPort = 0;
+    private int hz = 10;
+    private long maxmemory = 0;
+    private String maxmemoryPolicy = "noeviction";
+    private int maxmemorySamples = 5;
+    private String dir = ".";
+    private String dbfilename = "dump.rdb";
+    private String save = "3600 1 300 100 60 10000";
+    private List<long[]> saveRules = parseSaveRules(save);
+    private boolean appendonly = false;
+    private String appendfilename = "appendonly.aof";
+    private String appendfsync = "everysec";
+    private int autoAofRewritePercentage = 100;
+    private long autoAofRewriteMinSize = 64L * 1024 * 1024;
+    private String replicaof = "";
+    private long replBacklogSize = 1024 * 1024;
+    private long slowlogLogSlowerThan = 10000;
+    private int slowlogMaxLen = 128;
+    private long latencyMonitorThreshold = 0;
+    private String loglevel = "notice";
+
+    private ServerConfig() {
+    }
+
+    public static synchronized ServerConfig getInstance() {
+        if(instance == null) {
+            instance = new ServerConfig();
+        }
+        return instance;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public void setPort(int port) {
+        this.port = port;
+    }
+
+    public String getIoMode() {
+        return ioMode;
+    }
+
+    public void setIoMode(String ioMode) {
+        this.ioMode = ioMode;
+    }
+
+    public int getIoThreads() {
+        return ioThreads;
+    }
+
+    public void setIoThreads(int ioThreads) {
+        this.ioThreads = ioThreads;
+    }
+
+    // Port of the plain-text metrics endpoint; 0 leaves it off.
+    public int getMetricsPort() {
+        return metricsPort;
+    }
+
+    public void setMetricsPort(int metricsPort) {
+        this.metricsPort = metricsPort;
+    }
+
+    public int getHz() {
+        return hz;
+    }
+
+    public void setHz(int hz) {
+        this.hz = Math.max(1, Math.min(hz, 500));
+    }
+
+    public long getMaxmemory() {
+        return maxmemory;
+    }
+
+    public void setMaxmemory(long maxmemory) {
+        this.maxmemory = Math.max(0, maxmemory);
+    }
+
+    public String getMaxmemoryPolicy() {
+        return maxmemoryPolicy;
+    }
+
+    public void setMaxmemoryPolicy(String maxmemoryPolicy) {
+        String policy = maxmemoryPolicy.toLowerCase(Locale.ROOT);
+        if (!POLICIES.contains(policy)) {
+            throw new IllegalArgumentException("Unknown maxmemory policy: " + maxmemoryPolicy);
+        }
+        this.maxmemoryPolicy = policy;
+    }
+
+    public boolean isLfuPolicy() {
+        return maxmemoryPolicy.endsWith("lfu");
+    }
+
+    public int getMaxmemorySamples() {
+        return maxmemorySamples;
+    }
+
+    public void setMaxmemorySamples(int maxmemorySamples) {
+        this.maxmemorySamples = Math.max(1, Math.min(maxmemorySamples, 64));
+    }
+
+    public String getDir() {
+        return dir;
+    }
+
+    public void setDir(String dir) {
+        this.dir = dir;
+    }
+
+    public String getDbfilename() {
+        return dbfilename;
+    }
+
+    public void setDbfilename(String dbfilename) {
+        if (dbfilename.contains("/") || dbfilename.contains("\\")) {
+            throw new IllegalArgumentException("dbfilename can't be a path, just a filename");
+        }
+        this.dbfilename = dbfilename;
+    }
+
+    public String getSave() {
+        return save;
+    }
+
+    // "<seconds> <changes>" pairs: snapshot when at least <changes> writes happened in <seconds>. "" disables.
+    public void setSave(String save) {
+        this.saveRules = parseSaveRules(save);
+        this.save = save.trim();
+    }
+
+    public List<long[]> getSaveRules() {
+        return saveRules;
+    }
+
+    private static List<long[]> parseSaveRules(String save) {
+        String[] parts = save.trim().isEmpty() ? new String[0] : save.trim().split("\\s+");
+        if (parts.length % 2 != 0) {
+            throw new IllegalArgumentException("Invalid save parameters");
+        }
+        List<long[]> rules = new ArrayList<>();
+        for (int i = 0; i < parts.length; i += 2) {
+            rules.add(new long[]{Long.parseLong(parts[i]), Long.parseLong(parts[i + 1])});
+        }
+        return List.copyOf(rules);
+    }
+
+    public boolean isAppendonly() {
+        return appendonly;
+    }
+
+    public void setAppendonly(boolean appendonly) {
+        this.appendonly = appendonly;
+    }
+
+    public String getAppendfilename() {
+        return appendfilename;
+    }
+
+    public void setAppendfilename(String appendfilename) {
+        if (appendfilename.contains("/") || appendfilename.contains("\\")) {
+            throw new IllegalArgumentException("appendfilename can't be a path, just a filename");
+        }
+        this.appendfilename = appendfilename;
+    }
+
+    public String getAppendfsync() {
+        return appendfsync;
+    }
+
+    public void setAppendfsync(String appendfsync) {
+        String policy = appendfsync.toLowerCase(Locale.ROOT);
+        if (!List.of("always", "everysec", "no").contains(policy)) {
+            throw new IllegalArgumentException("argument(s) must be one of the following: always, everysec, no");
+        }
+        this.appendfsync = policy;
+    }
+
+    public int getAutoAofRewritePercentage() {
+        return autoAofRewritePercentage;
+    }
+
+    public void setAutoAofRewritePercentage(int autoAofRewritePercentage) {
+        this.autoAofRewritePercentage = Math.max(0, autoAofRewritePercentage);
+    }
+
+    public long getAutoAofRewriteMinSize() {
+        return autoAofRewriteMinSize;
+    }
+
+    public void setAutoAofRewriteMinSize(long autoAofRewriteMinSize) {
+        this.autoAofRewriteMinSize = Math.max(0, autoAofRewriteMinSize);
+    }
+
+    // "<host> <port>" of the master this server replicates, or "" for a master.
+    public String getReplicaof() {
+        return replicaof;
+    }
+
+    public void setReplicaof(String replicaof) {
+        String value = replicaof.trim();
+        if (!value.isEmpty() && !"no one".equalsIgnoreCase(value)) {
+            String[] parts = value.split("\\s+");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("replicaof must be '<host> <port>'");
+            }
+            Integer.parseInt(parts[1]);
+        }
+        this.replicaof = "no one".equalsIgnoreCase(value) ? "" : value;
+    }
+
+    public long getReplBacklogSize() {
+        return replBacklogSize;
+    }
+
+    public void setReplBacklogSize(long replBacklogSize) {
+        this.replBacklogSize = Math.max(16 * 1024, Math.min(replBacklogSize, Integer.MAX_VALUE - 8));
+    }
+
+    // Microseconds; 0 logs every command, a negative value none.
+    public long getSlowlogLogSlowerThan() {
+        return slowlogLogSlowerThan;
+    }
+
+    public void setSlowlogLogSlowerThan(long slowlogLogSlowerThan) {
+        this.slowlogLogSlowerThan = slowlogLogSlowerThan;
+    }
+
+    public int getSlowlogMaxLen() {
+        return slowlogMaxLen;
+    }
+
+    public void setSlowlogMaxLen(int slowlogMaxLen) {
+        this.slowlogMaxLen = Math.max(0, slowlogMaxLen);
+    }
+
+    // Milliseconds; 0 turns the latency monitor off.
+    public long getLatencyMonitorThreshold() {
+        return latencyMonitorThreshold;
+    }
+
+    public void setLatencyMonitorThreshold(long latencyMonitorThreshold) {
+        this.latencyMonitorThreshold = Math.max(0, latencyMonitorThreshold);
+    }
+
+    public String getLoglevel() {
+        return loglevel;
+    }
+
+    public void setLoglevel(String loglevel) {
+        String level = loglevel.toLowerCase(Locale.ROOT);
+        if (!List.of("debug", "verbose", "notice", "warning").contains(level)) {
+            throw new IllegalArgumentException("argument(s) must be one of the following: debug, verbose, notice, warning");
+        }
+        this.loglevel = level;
+    }
+
+    public static boolean parseYesNo(String value) {
+        if ("yes".equalsIgnoreCase(value)) {
+            return true;
+        }
+        if ("no".equalsIgnoreCase(value)) {
+            return false;
+        }
+        throw new IllegalArgumentException("argument must be 'yes' or 'no'");
+    }
+
+    // The settings by their redis.conf names, for CONFIG GET.
+    public Map<String, String> toMap() {
+        Map<String, String> values = new LinkedHashMap<>();
+        values.put("port", String.valueOf(port));
+        values.put("io-threads", String.valueOf(ioThreads));
+        values.put("metrics-port", String.valueOf(metricsPort));
+        values.put("hz", String.valueOf(hz));
+        values.put("maxmemory", String.valueOf(maxmemory));
+        values.put("maxmemory-policy", maxmemoryPolicy);
+        values.put("maxmemory-samples", String.valueOf(maxmemorySamples));
+        values.put("dir", dir);
+        values.put("dbfilename", dbfilename);
+        values.put("save", save);
+        values.put("appendonly", appendonly ? "yes" : "no");
+        values.put("appendfilename", appendfilename);
+        values.put("appendfsync", appendfsync);
+        values.put("auto-aof-rewrite-percentage", String.valueOf(autoAofRewritePercentage));
+        values.put("auto-aof-rewrite-min-size", String.valueOf(autoAofRewriteMinSize));
+        values.put("replicaof", replicaof);
+        values.put("repl-backlog-size", String.valueOf(replBacklogSize));
+        values.put("slowlog-log-slower-than", String.valueOf(slowlogLogSlowerThan));
+        values.put("slowlog-max-len", String.valueOf(slowlogMaxLen));
+        values.put("latency-monitor-threshold", String.valueOf(latencyMonitorThreshold));
+        values.put("loglevel", loglevel);
+        return values;
+    }
+
+    // CONFIG SET; only settings that can change at runtime.
+    public void set(String name, String value) {
+        switch (name.toLowerCase(Locale.ROOT)) {
+            case "maxmemory" -> setMaxmemory(parseMemory(value));
+            case "maxmemory-policy" -> setMaxmemoryPolicy(value);
+            case "maxmemory-samples" -> setMaxmemorySamples(Integer.parseInt(value));
+            case "dir" -> setDir(value);
+            case "dbfilename" -> setDbfilename(value);
+            case "save" -> setSave(value);
+            case "appendonly" -> setAppendonly(parseYesNo(value));
+            case "appendfsync" -> setAppendfsync(value);
+            case "auto-aof-rewrite-percentage" -> setAutoAofRewritePercentage(Integer.parseInt(value));
+            case "auto-aof-rewrite-min-size" -> setAutoAofRewriteMinSize(parseMemory(value));
+            case "repl-backlog-size" -> setReplBacklogSize(parseMemory(value));
+            case "slowlog-log-slower-than" -> setSlowlogLogSlowerThan(Long.parseLong(value));
+            case "slowlog-max-len" -> setSlowlogMaxLen(Integer.parseInt(value));
+            case "latency-monitor-threshold" -> setLatencyMonitorThreshold(Long.parseLong(value));
+            case "loglevel" -> setLoglevel(value);
+            default -> throw new IllegalArgumentException("Unknown option or number of arguments for CONFIG SET - '" + name + "'");
+        }
+    }
+
+    // Accepts plain bytes or a k/kb/m/mb/g/gb suffix, as redis.conf does.
+    public static long parseMemory(String value) {
+        String lower = value.trim().toLowerCase(Locale.ROOT);
+        long unit = 1;
+        String[][] suffixes = {{"gb", "1073741824"}, {"mb", "1048576"}, {"kb", "1024"}, {"g", "1000000000"}, {"m", "1000000"}, {"k", "1000"}, {"b", "1"}};
+        for (String[] suffix : suffixes) {
+            if (lower.endsWith(suffix[0])) {
+                unit = Long.parseLong(suffix[1]);
+                lower = lower.substring(0, lower.length() - suffix[0].length());
+                break;
+            }
+        }
+        return Long.parseLong(lower) * unit;
+    }
+}
@@ -0,0 +1,176 @@
+package Models;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Append-only stream storage: entries live in ID order inside fixed-size chunks, so entry i is found
+// in O(1) and any ID in O(log n) by binary search. Appends are serialized; reads take no lock because
+// an entry is fully stored before the volatile size that exposes it is published.
+public class Stream {
+
+    private static final int CHUNK_SHIFT = 8;
+    private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    // Estimated heap cost of an Entry with its StreamId, and of each field's byte[] beyond its payload.
+    private static final long ENTRY_OVERHEAD = 64;
+    private static final long FIELD_OVERHEAD = 24;
+
+    private volatile Entry[][] chunks = new Entry[4][];
+    private volatile int size;
+    private volatile StreamId lastId = StreamId.MIN;
+    private volatile long memoryUsage = 64;
+
+    public synchronized StreamId add(String idSpec, byte[][] fields) {
+        StreamId id = resolveId(idSpec);
+        append(id, fields);
+        return id;
+    }
+
+    // Appends an entry whose ID is already known, e.g. one restored from a snapshot.
+    public synchronized void append(StreamId id, byte[][] fields) {
+        if (size > 0 && id.compareTo(lastId) <= 0) {
+            throw new IllegalArgumentException("Stream entry " + id + " is not after " + lastId);
+        }
+        int index = size;
+        int chunk = index >>> CHUNK_SHIFT;
+        Entry[][] current = chunks;
+        long added = ENTRY_OVERHEAD;
+        if (chunk == current.length) {
+            Entry[][] grown = new Entry[current.length * 2][];
+            System.arraycopy(current, 0, grown, 0, current.length);
+            added += 4L * current.length;
+            current = grown;
+        }
+        if (current[chunk] == null) {
+            current[chunk] = new Entry[CHUNK_SIZE];
+            added += 16 + 4L * CHUNK_SIZE;
+        }
+        for (byte[] field : fields) {
+            added += FIELD_OVERHEAD + field.length;
+        }
+        current[chunk][index & CHUNK_MASK] = new Entry(id, fields);
+        memoryUsage += added;
+        chunks = current;
+        lastId = id;
+        size = index + 1;
+    }
+
+    public long memoryUsage() {
+        return memoryUsage;
+    }
+
+    private StreamId resolveId(String idSpec) {
+        StreamId last = lastId;
+        if (idSpec.equals("*")) {
+            long now = System.currentTimeMillis();
+            if (Long.compareUnsigned(now, last.milliseconds()) > 0) {
+                return new StreamId(now, 0);
+            }
+            return nextAfter(last);
+        }
+        StreamId id;
+        if (idSpec.endsWith("-*")) {
+            long milliseconds = StreamId.parse(idSpec.substring(0, idSpec.length() - 2), 0).milliseconds();
+            if (size > 0 && milliseconds == last.milliseconds()) {
+                id = nextAfter(last);
+            } else {
+                id = new StreamId(milliseconds, milliseconds == 0 ? 1 : 0);
+            }
+        } else {
+            id = StreamId.parse(idSpec, 0);
+        }
+        if (id.compareTo(StreamId.MIN) == 0) {
+            throw new RuntimeException("The ID specified in XADD must be greater than 0-0");
+        }
+        if (size > 0 && id.compareTo(last) <= 0) {
+            throw new RuntimeException("The ID specified in XADD is equal or smaller than the target stream top item");
+        }
+        return id;
+    }
+
+    private StreamId nextAfter(StreamId last) {
+        if (last.compareTo(StreamId.MAX) == 0) {
+            throw new RuntimeException("The stream has exhausted the last possible ID, unable to add more items");
+        }
+        return last.next();
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public StreamId getLastId() {
+        return lastId;
+    }
+
+    // Entries below size() never change, so a reader can walk [0, size) without a lock.
+    public Entry get(int index) {
+        return entryAt(chunks, index);
+    }
+
+    public List<Entry> range(StreamId start, StreamId end, int count) {
+        int length = size;
+        Entry[][] snapshot = chunks;
+        List<Entry> entries = new ArrayList<>();
+        for (int i = lowerBound(snapshot, length, start); i < length && entries.size() < count; i++) {
+            Entry entry = entryAt(snapshot, i);
+            if (entry.getStreamId().compareTo(end) > 0) {
+                break;
+            }
+            entries.add(entry);
+        }
+        return entries;
+    }
+
+    public List<Entry> reverseRange(StreamId end, StreamId start, int count) {
+        int length = size;
+        Entry[][] snapshot = chunks;
+        List<Entry> entries = new ArrayList<>();
+        for (int i = upperBound(snapshot, length, end) - 1; i >= 0 && entries.size() < count; i--) {
+            Entry entry = entryAt(snapshot, i);
+            if (entry.getStreamId().compareTo(start) < 0) {
+                break;
+            }
+            entries.add(entry);
+        }
+        return entries;
+    }
+
+    public List<Entry> entriesAfter(StreamId id, int count) {
+        return id.compareTo(StreamId.MAX) == 0 ? new ArrayList<>() : range(id.next(), StreamId.MAX, count);
+    }
+
+    private static Entry entryAt(Entry[][] snapshot, int index) {
+        return snapshot[index >>> CHUNK_SHIFT][index & CHUNK_MASK];
+    }
+
+    // Index of the first entry whose ID is >= id.
+    private static int lowerBound(Entry[][] snapshot, int length, StreamId id) {
+        int low = 0;
+        int high = length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (entryAt(snapshot, mid).getStreamId().compareTo(id) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // Index of the first entry whose ID is > id.
+    private static int upperBound(Entry[][] snapshot, int length, StreamId id) {
+        int low = 0;
+        int high = length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (entryAt(snapshot, mid).getStreamId().compareTo(id) <= 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,47 @@
+package Models;
+
+public record StreamId(long milliseconds, long sequenceNumber) implements Comparable<StreamId> {
+
+    public static final StreamId MIN = new StreamId(0, 0);
+    public static final StreamId MAX = new StreamId(-1, -1);
+
+    // Both parts are unsigned 64-bit numbers in Redis, so compare them as such.
+    @Override
+    public int compareTo(StreamId other) {
+        int byMilliseconds = Long.compareUnsigned(milliseconds, other.milliseconds);
+        return byMilliseconds != 0 ? byMilliseconds : Long.compareUnsigned(sequenceNumber, other.sequenceNumber);
+    }
+
+    public StreamId next() {
+        if (sequenceNumber != -1) {
+            return new StreamId(milliseconds, sequenceNumber + 1);
+        }
+        return milliseconds == -1 ? this : new StreamId(milliseconds + 1, 0);
+    }
+
+    public StreamId previous() {
+        if (sequenceNumber != 0) {
+            return new StreamId(milliseconds, sequenceNumber - 1);
+        }
+        return milliseconds == 0 ? this : new StreamId(milliseconds - 1, -1);
+    }
+
+    // Parses "ms-seq" or a bare "ms", in which case the missing sequence defaults to missingSequence.
+    public static StreamId parse(String id, long missingSequence) {
+        try {
+            int dash = id.indexOf('-');
+            if (dash < 0) {
+                return new StreamId(Long.parseUnsignedLong(id), missingSequence);
+            }
+            return new StreamId(Long.parseUnsignedLong(id.substring(0, dash)),
+                    Long.parseUnsignedLong(id.substring(dash + 1)));
+        } catch (NumberFormatException e) {
+            throw new RuntimeException("Invalid stream ID specified as stream command argument");
+        }
+    }
+
+    @Override
+    public String toString() {
+        return Long.toUnsignedString(milliseconds) + "-" + Long.toUnsignedString(sequenceNumber);
+    }
+}
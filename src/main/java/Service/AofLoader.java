@@ -0,0 +1,78 @@
+package Service;
+
+import Models.DataStore;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+// Replays a file in AOF format into the keyspace: an optional RDB preamble, then RESP commands run
+// through a CommandProcessor of their own with the replies thrown away. A command cut off by the end
+// of the file is left unapplied; getValidLength() says where the last complete one ended.
+class AofLoader {
+
+    private static final int READ_CHUNK = 64 * 1024;
+
+    private final FileChannel file;
+    private long keysLoaded;
+    private long commands;
+    private long validLength;
+
+    AofLoader(FileChannel file) {
+        this.file = file;
+    }
+
+    long getKeysLoaded() {
+        return keysLoaded;
+    }
+
+    long getCommands() {
+        return commands;
+    }
+
+    long getValidLength() {
+        return validLength;
+    }
+
+    void load(DataStore dataStore) throws IOException {
+        long position = 0;
+        ByteBuffer chunk = ByteBuffer.allocate(READ_CHUNK);
+        if (file.size() >= Rdb.MAGIC.length()) {
+            file.read(chunk, 0);
+            if (new String(chunk.array(), 0, Rdb.MAGIC.length(), StandardCharsets.US_ASCII).equals(Rdb.MAGIC)) {
+                RdbLoader loader = new RdbLoader(file);
+                loader.load(dataStore);
+                keysLoaded = loader.getKeysLoaded();
+                position = loader.getPosition();
+            }
+        }
+        RespParser parser = new RespParser();
+        CommandProcessor replay = new CommandProcessor();
+        replay.setMaster(true);
+        long fedBytes = position;
+        while (true) {
+            chunk.clear();
+            int read = file.read(chunk, fedBytes);
+            if (read <= 0) {
+                break;
+            }
+            parser.feed(chunk.array(), 0, read);
+            fedBytes += read;
+            List<String> arguments;
+            try {
+                while ((arguments = parser.next()) != null) {
+                    if (!arguments.isEmpty()) {
+                        replay.respond(arguments);
+                        replay.getOutput().reset();
+                        commands++;
+                    }
+                }
+            } catch (RuntimeException e) {
+                throw new IOException("Bad file format reading the append only file: " + e.getMessage());
+            }
+        }
+        validLength = fedBytes - parser.bufferedBytes();
+    }
+}
@@ -0,0 +1,599 @@
+package Service;
+
+import Models.DataStore;
+import Models.ServerConfig;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+// The append-only file. Write commands are encoded into a shared buffer under their key locks, and one
+// writer thread appends whatever has accumulated with a single write (and, for appendfsync always, a
+// single fsync), so every command that arrived during the previous write shares the next one: group
+// commit. Replies are held until the command's record is written (always: fsynced), as Redis does by
+// flushing the AOF before it writes replies. Offsets count logged bytes since startup.
+//
+// BGREWRITEAOF compacts the log without forking: a KeyspaceCapture writes the keyspace as an RDB
+// preamble while writes go on, the records logged meanwhile are appended after it, and the new file
+// replaces the old.
+public class AofService {
+
+    private static final LogService log = LogService.getInstance();
+
+    private static final long FSYNC_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final long RETRY_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final long ERROR_LOG_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(30);
+
+    private static AofService instance;
+
+    private final DataStore dataStore = DataStore.getInstance();
+    private final ServerConfig config = ServerConfig.getInstance();
+    private final LatencyMonitor latencyMonitor = LatencyMonitor.getInstance();
+    // Lock order is ioLock, then lock. ioLock is held while the file is written or swapped, lock while
+    // the in-memory buffers are.
+    private final ReentrantLock ioLock = new ReentrantLock();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition fed = lock.newCondition();
+    // Guarded by lock.
+    private OutputEncoderService pending = new OutputEncoderService();
+    private OutputEncoderService spare = new OutputEncoderService();
+    private final PriorityQueue<DurableWaiter> durableWaiters =
+            new PriorityQueue<>(Comparator.comparingLong(DurableWaiter::offset));
+    private long appendedOffset;
+    private volatile KeyspaceCapture rewrite;
+    // Guarded by ioLock. Null while logging is off, or while the first rewrite creates the file.
+    private FileChannel channel;
+    private long lastFsyncNanos = System.nanoTime();
+    private boolean unsynced;
+    private volatile boolean logging;
+    private volatile long durableOffset;
+    private volatile long currentSize;
+    private volatile long baseSize;
+    private volatile boolean lastRewriteOk = true;
+    private volatile boolean lastWriteOk = true;
+    private volatile String lastWriteError;
+    // While writes fail, the writer retries no sooner than this.
+    private volatile long retryAtNanos;
+    private long lastErrorLogNanos;
+    // CONFIG SET appendonly yes whose rewrite failed before there was a file to log to.
+    private volatile boolean firstRewriteFailed;
+    private volatile long lastRewriteMillis = -1;
+    private Thread writer;
+
+    private record DurableWaiter(long offset, Runnable callback) {
+    }
+
+    private AofService() {
+    }
+
+    public static synchronized AofService getInstance() {
+        if(instance == null) {
+            instance = new AofService();
+        }
+        return instance;
+    }
+
+    public boolean isLogging() {
+        return logging;
+    }
+
+    public boolean isRewriting() {
+        return rewrite != null;
+    }
+
+    // False while the log cannot be written, when write commands are refused rather than acknowledged.
+    public boolean isWritable() {
+        return !logging || lastWriteOk;
+    }
+
+    public String getLastWriteError() {
+        return lastWriteError;
+    }
+
+    private Path aofPath() {
+        return Path.of(config.getDir(), config.getAppendfilename());
+    }
+
+    // Replays dir/appendfilename into the keyspace: the RDB preamble if there is one, then the
+    // commands after it. A command cut off at the end (a crash mid-write) is truncated away with a
+    // warning. False if there is no file. Runs before the server accepts connections.
+    public boolean load() throws IOException {
+        Path path = aofPath();
+        if (!Files.exists(path)) {
+            return false;
+        }
+        long start = System.nanoTime();
+        AofLoader loader;
+        try (FileChannel file = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            loader = new AofLoader(file);
+            loader.load(dataStore);
+            long valid = loader.getValidLength();
+            if (valid < file.size()) {
+                log.warning("!!! Warning: short read while loading the AOF file " + path + "!!!");
+                log.warning(String.format("AOF loaded anyway, truncating %d bytes of an incomplete command at offset %d",
+                        file.size() - valid, valid));
+                file.truncate(valid);
+                file.force(true);
+            }
+            currentSize = file.size();
+            baseSize = currentSize;
+        }
+        log.notice(String.format("DB loaded from append only file: %d keys and %d commands in %.3f seconds",
+                loader.getKeysLoaded(), loader.getCommands(), (System.nanoTime() - start) / 1e9));
+        return true;
+    }
+
+    // Starts logging to the existing file, which load() has just replayed.
+    public void start() throws IOException {
+        ioLock.lock();
+        try {
+            channel = FileChannel.open(aofPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.APPEND);
+            currentSize = channel.size();
+            logging = true;
+        } finally {
+            ioLock.unlock();
+        }
+        startWriter();
+    }
+
+    // CONFIG SET appendonly: turning it on writes a fresh file from the dataset with a rewrite, and
+    // commands are logged from that moment; turning it off flushes what is buffered and closes the file.
+    public void setEnabled(boolean enabled) {
+        if (enabled) {
+            if (logging) {
+                return;
+            }
+            logging = true;
+            startWriter();
+            if (!startRewrite()) {
+                logging = false;
+                config.setAppendonly(false);
+                throw new RuntimeException("Background append only file rewriting failed to start");
+            }
+        } else if (logging) {
+            stop();
+        }
+    }
+
+    private synchronized void startWriter() {
+        if (writer != null) {
+            return;
+        }
+        writer = new Thread(this::writeLoop, "aof-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    private void stop() {
+        List<Runnable> callbacks;
+        ioLock.lock();
+        try {
+            OutputEncoderService batch;
+            lock.lock();
+            try {
+                logging = false;
+                firstRewriteFailed = false;
+                KeyspaceCapture current = rewrite;
+                if (current != null) {
+                    current.abort();
+                }
+                batch = takePending();
+            } finally {
+                lock.unlock();
+            }
+            if (channel != null) {
+                try {
+                    writeBatch(batch);
+                    channel.force(false);
+                } catch (IOException e) {
+                    log.warning("Error writing to the AOF file: " + e.getMessage());
+                }
+                closeQuietly(channel);
+                channel = null;
+            }
+            batch.reset();
+            lock.lock();
+            try {
+                spare = batch;
+                durableOffset = appendedOffset;
+                callbacks = dueWaiters();
+            } finally {
+                lock.unlock();
+            }
+        } finally {
+            ioLock.unlock();
+        }
+        callbacks.forEach(Runnable::run);
+    }
+
+    // Called by a write command with its keys locked, before it changes them.
+    public void beforeWrite(List<String> keys) {
+        KeyspaceCapture current = rewrite;
+        if (current != null) {
+            current.beforeWrite(keys);
+        }
+    }
+
+    // Logs one command, called with its keys still locked. Returns the offset the client's reply waits for.
+    public long feed(List<String> keys, List<String> command) {
+        lock.lock();
+        try {
+            if (!logging) {
+                return 0;
+            }
+            int before = pending.size();
+            pending.encodeList(command);
+            appendedOffset += pending.size() - before;
+            KeyspaceCapture current = rewrite;
+            if (current != null) {
+                current.record(keys, command);
+            }
+            fed.signal();
+            return appendedOffset;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean isDurable(long offset) {
+        return offset <= durableOffset;
+    }
+
+    // Runs callback, on the writer thread or right away, once everything up to offset is written.
+    public void whenDurable(long offset, Runnable callback) {
+        lock.lock();
+        try {
+            if (offset > durableOffset) {
+                durableWaiters.add(new DurableWaiter(offset, callback));
+                return;
+            }
+        } finally {
+            lock.unlock();
+        }
+        callback.run();
+    }
+
+    // For thread-per-connection clients, which can simply wait.
+    public void awaitDurable(long offset) throws InterruptedException {
+        if (isDurable(offset)) {
+            return;
+        }
+        CountDownLatch written = new CountDownLatch(1);
+        whenDurable(offset, written::countDown);
+        written.await();
+    }
+
+    private OutputEncoderService takePending() {
+        OutputEncoderService batch = pending;
+        pending = spare;
+        spare = null;
+        return batch;
+    }
+
+    private List<Runnable> dueWaiters() {
+        List<Runnable> due = new ArrayList<>();
+        while (!durableWaiters.isEmpty() && durableWaiters.peek().offset() <= durableOffset) {
+            due.add(durableWaiters.poll().callback());
+        }
+        return due;
+    }
+
+    private void writeLoop() {
+        while (true) {
+            try {
+                awaitWork();
+                writeOnce();
+                checkAutoRewrite();
+                retryFirstRewrite();
+            } catch (InterruptedException e) {
+                return;
+            } catch (RuntimeException e) {
+                log.warning("AOF writer error: " + e.getMessage());
+            }
+        }
+    }
+
+    // Waits for records to write, or for the next everysec fsync of records already written. While the
+    // log is failing it waits for the next retry instead, however much is fed meanwhile.
+    private void awaitWork() throws InterruptedException {
+        lock.lock();
+        try {
+            if (!lastWriteOk && retryAtNanos - System.nanoTime() > 0) {
+                long wait;
+                while ((wait = retryAtNanos - System.nanoTime()) > 0) {
+                    fed.awaitNanos(wait);
+                }
+            } else if (pending.isEmpty()) {
+                fed.await(FSYNC_INTERVAL_NANOS, TimeUnit.NANOSECONDS);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // One group commit: everything fed so far goes out in one write, then is fsynced per appendfsync.
+    private void writeOnce() {
+        long batchEnd;
+        List<Runnable> callbacks;
+        ioLock.lock();
+        try {
+            OutputEncoderService batch;
+            lock.lock();
+            try {
+                if (pending.isEmpty() && !unsynced) {
+                    return;
+                }
+                batch = takePending();
+                batchEnd = appendedOffset;
+            } finally {
+                lock.unlock();
+            }
+            // With no file yet the records only matter to the rewrite that is creating it.
+            if (channel != null) {
+                long sizeBefore = currentSize;
+                try {
+                    writeBatch(batch);
+                    syncIfDue();
+                    if (!lastWriteOk && !firstRewriteFailed) {
+                        log.warning("AOF write error looks solved, Redis can write again.");
+                        lastWriteOk = true;
+                    }
+                } catch (IOException e) {
+                    writeFailed(e.getMessage());
+                    retryLater(batch, sizeBefore);
+                    return;
+                }
+            }
+            batch.reset();
+            lock.lock();
+            try {
+                spare = batch;
+                // Without a file nothing is durable until the rewrite creating it has forced it to disk.
+                if (channel != null && (!"always".equals(config.getAppendfsync()) || !unsynced)) {
+                    durableOffset = Math.max(durableOffset, batchEnd);
+                }
+                callbacks = dueWaiters();
+            } finally {
+                lock.unlock();
+            }
+        } finally {
+            ioLock.unlock();
+        }
+        callbacks.forEach(Runnable::run);
+    }
+
+    // Retries come about once a second, and the error is logged when it first happens and then at most
+    // every 30 seconds, as Redis does.
+    private void writeFailed(String error) {
+        long now = System.nanoTime();
+        if (lastWriteOk || now - lastErrorLogNanos >= ERROR_LOG_INTERVAL_NANOS) {
+            log.warning("Error writing to the AOF file: " + error);
+            lastErrorLogNanos = now;
+        }
+        lastWriteError = error;
+        retryAtNanos = now + RETRY_INTERVAL_NANOS;
+        lastWriteOk = false;
+    }
+
+    // Called with ioLock held. Cuts a partly written batch off the file and puts it back in front of
+    // the records fed since, so its clients stay waiting until a later write succeeds.
+    private void retryLater(OutputEncoderService batch, long sizeBefore) {
+        try {
+            channel.truncate(sizeBefore);
+            currentSize = sizeBefore;
+        } catch (IOException e) {
+            log.warning("Could not remove a short write from the AOF file: " + e.getMessage());
+        }
+        lock.lock();
+        try {
+            batch.writeRaw(Arrays.copyOf(pending.getBuffer(), pending.size()));
+            pending.reset();
+            spare = pending;
+            pending = batch;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Called with ioLock held.
+    private void writeBatch(OutputEncoderService batch) throws IOException {
+        if (batch.isEmpty()) {
+            return;
+        }
+        ByteBuffer bytes = ByteBuffer.wrap(batch.getBuffer(), 0, batch.size());
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+        currentSize += batch.size();
+        unsynced = true;
+    }
+
+    // Called with ioLock held. always fsyncs every batch; everysec at most once a second; no never.
+    private void syncIfDue() throws IOException {
+        if (!unsynced) {
+            return;
+        }
+        String policy = config.getAppendfsync();
+        long now = System.nanoTime();
+        if ("always".equals(policy) || ("everysec".equals(policy) && now - lastFsyncNanos >= FSYNC_INTERVAL_NANOS)) {
+            channel.force(false);
+            lastFsyncNanos = now;
+            unsynced = false;
+            latencyMonitor.record(LatencyMonitor.AOF_FSYNC, System.nanoTime() - now);
+        } else if ("no".equals(policy)) {
+            unsynced = false;
+        }
+    }
+
+    private void checkAutoRewrite() {
+        int percentage = config.getAutoAofRewritePercentage();
+        long size = currentSize;
+        if (percentage == 0 || !logging || rewrite != null || size < config.getAutoAofRewriteMinSize()) {
+            return;
+        }
+        long base = Math.max(baseSize, 1);
+        long growth = (size - base) * 100 / base;
+        if (growth >= percentage) {
+            log.notice(String.format("Starting automatic rewriting of AOF on %d%% growth", growth));
+            startRewrite();
+        }
+    }
+
+    // Until the first rewrite has created the file the log is failing; it is retried every second.
+    private void retryFirstRewrite() {
+        if (firstRewriteFailed && logging && rewrite == null && System.nanoTime() >= retryAtNanos) {
+            startRewrite();
+        }
+    }
+
+    // BGREWRITEAOF: false when a rewrite is already running.
+    public boolean startRewrite() {
+        KeyspaceCapture started;
+        lock.lock();
+        try {
+            if (rewrite != null) {
+                return false;
+            }
+            try {
+                started = new KeyspaceCapture(aofPath().resolveSibling("temp-rewriteaof-" + ProcessHandle.current().pid() + ".aof"));
+            } catch (IOException e) {
+                lastRewriteOk = false;
+                log.warning("Can't open the append-only file for rewriting: " + e.getMessage());
+                return false;
+            }
+            rewrite = started;
+        } finally {
+            lock.unlock();
+        }
+        Thread thread = new Thread(() -> runRewrite(started), "aof-rewrite");
+        thread.setDaemon(true);
+        thread.start();
+        return true;
+    }
+
+    private void runRewrite(KeyspaceCapture current) {
+        try {
+            current.walk();
+            switchTo(current);
+            lastRewriteOk = true;
+            log.notice("Background AOF rewrite finished successfully");
+        } catch (IOException | RuntimeException e) {
+            lastRewriteOk = false;
+            log.warning("Background AOF rewrite failed: " + e.getMessage());
+            current.discard();
+            ioLock.lock();
+            try {
+                lock.lock();
+                try {
+                    if (rewrite == current) {
+                        rewrite = null;
+                    }
+                    // Replies held for the records fed since appendonly was turned on keep waiting.
+                    if (logging && channel == null) {
+                        firstRewriteFailed = true;
+                        writeFailed(e.getMessage());
+                    }
+                } finally {
+                    lock.unlock();
+                }
+            } finally {
+                ioLock.unlock();
+            }
+        } finally {
+            lastRewriteMillis = System.currentTimeMillis() - current.getStartTime();
+        }
+    }
+
+    // Moves the rewritten file into place. Holds both locks throughout, so no record is fed or written
+    // to the old file in between.
+    private void switchTo(KeyspaceCapture current) throws IOException {
+        List<Runnable> callbacks;
+        long start = System.nanoTime();
+        ioLock.lock();
+        try {
+            lock.lock();
+            try {
+                long preamble = current.finish();
+                Files.move(current.getPath(), aofPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                if (channel != null) {
+                    closeQuietly(channel);
+                }
+                FileChannel file = current.getFile();
+                // A rewrite asked for with the AOF off just leaves a compacted file behind.
+                if (logging) {
+                    channel = file;
+                    channel.position(channel.size());
+                } else {
+                    channel = null;
+                    closeQuietly(file);
+                }
+                // Everything in pending was recorded by the rewrite, now on disk in the new file.
+                pending.reset();
+                unsynced = false;
+                lastFsyncNanos = System.nanoTime();
+                baseSize = preamble;
+                currentSize = file.size();
+                durableOffset = appendedOffset;
+                rewrite = null;
+                if (firstRewriteFailed || !lastWriteOk) {
+                    log.warning("AOF write error looks solved, Redis can write again.");
+                }
+                firstRewriteFailed = false;
+                lastWriteOk = true;
+                callbacks = dueWaiters();
+            } finally {
+                lock.unlock();
+            }
+        } finally {
+            ioLock.unlock();
+            // Writers feeding the log wait on the lock throughout.
+            latencyMonitor.record(LatencyMonitor.AOF_REWRITE_SWITCH, System.nanoTime() - start);
+        }
+        callbacks.forEach(Runnable::run);
+    }
+
+    private static void closeQuietly(FileChannel file) {
+        try {
+            file.close();
+        } catch (IOException e) {
+            log.warning("IOException: " + e.getMessage());
+        }
+    }
+
+    public void appendInfo(StringBuilder info) {
+        KeyspaceCapture current = rewrite;
+        info.append("aof_enabled:").append(logging ? 1 : 0).append("\r\n");
+        info.append("aof_rewrite_in_progress:").append(current != null ? 1 : 0).append("\r\n");
+        info.append("aof_last_rewrite_time_sec:").append(lastRewriteMillis < 0 ? -1 : lastRewriteMillis / 1000).append("\r\n");
+        info.append("aof_current_rewrite_time_sec:")
+                .append(current == null ? -1 : (System.currentTimeMillis() - current.getStartTime()) / 1000).append("\r\n");
+        info.append("aof_last_bgrewrite_status:").append(lastRewriteOk ? "ok" : "err").append("\r\n");
+        info.append("aof_last_write_status:").append(lastWriteOk ? "ok" : "err").append("\r\n");
+        if (logging) {
+            int buffered;
+            lock.lock();
+            try {
+                buffered = pending.size();
+            } finally {
+                lock.unlock();
+            }
+            info.append("aof_current_size:").append(currentSize).append("\r\n");
+            info.append("aof_base_size:").append(baseSize).append("\r\n");
+            info.append("aof_buffer_length:").append(buffered).append("\r\n");
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package Service;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// A client parked by a blocking command. Exactly one of serve, timeout or cancel wins the claim;
+// the winner writes the reply (if any) into the client's output and resumes it. No thread waits.
+public final class BlockedClient {
+
+    private static final ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, r -> {
+        Thread t = new Thread(r, "blocked-client-timer");
+        t.setDaemon(true);
+        return t;
+    });
+
+    static {
+        timer.setRemoveOnCancelPolicy(true);
+    }
+
+    private final CommandProcessor client;
+    private final AtomicBoolean claimed = new AtomicBoolean();
+    private final Runnable unregister;
+    private volatile ScheduledFuture<?> timeout;
+
+    public BlockedClient(CommandProcessor client, Runnable unregister) {
+        this.client = client;
+        this.unregister = unregister;
+        client.block(this);
+    }
+
+    public void startTimeout(long timeoutMillis, Runnable onTimeout) {
+        if (timeoutMillis <= 0) {
+            return;
+        }
+        timeout = timer.schedule(() -> {
+            if (claim()) {
+                onTimeout.run();
+                client.unblock();
+            }
+        }, timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    // Must be followed by writing the reply and calling resume().
+    public boolean claim() {
+        if (!tryClaim()) {
+            return false;
+        }
+        unregister.run();
+        return true;
+    }
+
+    // For callers holding locks the unregister callback may need: claim now, unregister() once released.
+    public boolean tryClaim() {
+        if (!claimed.compareAndSet(false, true)) {
+            return false;
+        }
+        ScheduledFuture<?> pending = timeout;
+        if (pending != null) {
+            pending.cancel(false);
+        }
+        return true;
+    }
+
+    public void unregister() {
+        unregister.run();
+    }
+
+    public OutputEncoderService getOutput() {
+        return client.getOutput();
+    }
+
+    // Records where the AOF logged the write made on this client's behalf, so its reply waits for it.
+    public void loggedAt(long offset) {
+        client.setLogOffset(offset);
+    }
+
+    public void resume() {
+        client.unblock();
+    }
+
+    // The connection went away: drop the registration without replying.
+    // True if the client was still parked, so nobody else will resume it.
+    public boolean cancel() {
+        return claim();
+    }
+}
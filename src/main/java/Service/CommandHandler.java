@@ -0,0 +1,9 @@
+package Service;
+
+import java.util.List;
+
+@FunctionalInterface
+public interface CommandHandler {
+
+    void execute(CommandProcessor client, List<String> arguments);
+}
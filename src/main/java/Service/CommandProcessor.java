@@ -0,0 +1,417 @@
+package Service;
+
+import Models.DataStore;
+import Models.KeyLocks;
+import Models.KeyVersions;
+
+import java.net.InetSocketAddress;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+public class CommandProcessor {
+
+    final OutputEncoderService outputEncoderService = new OutputEncoderService();
+    private final CommandRegistry commandRegistry = CommandRegistry.getInstance();
+    private static final Consumer<String> accessKey = DataStore.getInstance()::access;
+    private static final EvictionService evictionService = EvictionService.getInstance();
+    private static final SnapshotService snapshotService = SnapshotService.getInstance();
+    private static final AofService aofService = AofService.getInstance();
+    private static final PropagationService propagationService = PropagationService.getInstance();
+    private static final ReplicationService replicationService = ReplicationService.getInstance();
+    private static final KeyLocks keyLocks = DataStore.getInstance().getKeyLocks();
+    private static final KeyVersions keyVersions = DataStore.getInstance().getKeyVersions();
+    // What runs straight away inside MULTI instead of being queued.
+    private static final Set<String> TRANSACTION_CONTROL = Set.of("multi", "exec", "discard", "watch");
+    // All a client may send while subscribed to something.
+    private static final Set<String> SUBSCRIBED_CONTEXT = Set.of("subscribe", "unsubscribe", "psubscribe", "punsubscribe", "ping");
+    private static final PubSubService pubSubService = PubSubService.getInstance();
+    private static final StatsService statsService = StatsService.getInstance();
+    private static final SlowLog slowLog = SlowLog.getInstance();
+    private static final LatencyMonitor latencyMonitor = LatencyMonitor.getInstance();
+    private static final MonitorService monitorService = MonitorService.getInstance();
+    private static final LogService log = LogService.getInstance();
+    private volatile BlockedClient blockedClient;
+    private Runnable resumeListener = () -> {};
+    private List<String> propagated;
+    // End of the last AOF record written for this client; its replies are held until that is durable.
+    private volatile long logOffset;
+    // Replication stream offset after this client's last write, which WAIT waits for replicas to reach.
+    private long replicationOffset;
+    // The connection itself and who is on the other end, for serving a replica straight from its socket.
+    private WritableByteChannel rawOutput;
+    private InetSocketAddress peer;
+    private volatile ReplicaLink replicaLink;
+    // Commands from the master, or replayed from a file on its behalf: applied even on a read-only
+    // replica, and propagated exactly as received.
+    private boolean master;
+    // MULTI: the commands queued so far, null outside a transaction, and whether one was rejected.
+    private List<List<String>> queued;
+    private boolean queueRejected;
+    // WATCH: each watched key with its version when it was watched.
+    private final Map<String, Long> watched = new LinkedHashMap<>();
+    // Set while EXEC runs the queue, when blocking commands time out at once instead of parking.
+    private boolean executing;
+    // Pub/Sub: what this client is subscribed to, and where messages published to it go.
+    private final Set<String> channels = new LinkedHashSet<>();
+    private final Set<String> patterns = new LinkedHashSet<>();
+    private Consumer<byte[]> pushListener = message -> {};
+    private volatile boolean monitor;
+
+    public OutputEncoderService getOutput() {
+        return outputEncoderService;
+    }
+
+    public void setResumeListener(Runnable resumeListener) {
+        this.resumeListener = resumeListener;
+    }
+
+    // The connection's way to queue a published message for writing; called from the publisher's thread.
+    public void setPushListener(Consumer<byte[]> pushListener) {
+        this.pushListener = pushListener;
+    }
+
+    void push(byte[] message) {
+        pushListener.accept(message);
+    }
+
+    Set<String> getChannels() {
+        return channels;
+    }
+
+    Set<String> getPatterns() {
+        return patterns;
+    }
+
+    public boolean isSubscribed() {
+        return !channels.isEmpty() || !patterns.isEmpty();
+    }
+
+    void startMonitoring() {
+        monitor = true;
+        monitorService.add(this);
+    }
+
+    public boolean isMonitor() {
+        return monitor;
+    }
+
+    void block(BlockedClient blockedClient) {
+        this.blockedClient = blockedClient;
+        statsService.clientBlocked();
+    }
+
+    // Called by whichever thread served or timed out the blocked command, after it wrote the reply.
+    void unblock() {
+        synchronized (this) {
+            blockedClient = null;
+            notifyAll();
+        }
+        statsService.clientUnblocked();
+        resumeListener.run();
+    }
+
+    public boolean isBlocked() {
+        return blockedClient != null;
+    }
+
+    public synchronized void awaitUnblocked() throws InterruptedException {
+        while (blockedClient != null) {
+            wait();
+        }
+    }
+
+    public void disconnect() {
+        BlockedClient blocked = blockedClient;
+        if (blocked != null && blocked.cancel()) {
+            statsService.clientUnblocked();
+        }
+        ReplicaLink link = replicaLink;
+        if (link != null) {
+            link.close();
+        }
+        unwatchAll();
+        if (monitor) {
+            monitorService.remove(this);
+        }
+        for (String channel : channels) {
+            pubSubService.unsubscribe(this, channel);
+        }
+        for (String pattern : patterns) {
+            pubSubService.punsubscribe(this, pattern);
+        }
+    }
+
+    public void setRawOutput(WritableByteChannel rawOutput) {
+        this.rawOutput = rawOutput;
+    }
+
+    WritableByteChannel getRawOutput() {
+        return rawOutput;
+    }
+
+    public void setPeer(InetSocketAddress peer) {
+        this.peer = peer;
+    }
+
+    public InetSocketAddress getPeer() {
+        return peer;
+    }
+
+    // "ip:port" as SLOWLOG and MONITOR show the client; empty for the AOF loader.
+    public String describePeer() {
+        return peer == null ? "" : peer.getAddress().getHostAddress() + ":" + peer.getPort();
+    }
+
+    ReplicaLink getReplicaLink() {
+        return replicaLink;
+    }
+
+    void setReplicaLink(ReplicaLink replicaLink) {
+        this.replicaLink = replicaLink;
+    }
+
+    // After PSYNC the connection belongs to the replica's sender; replies to anything it sends are dropped.
+    public boolean isReplica() {
+        ReplicaLink link = replicaLink;
+        return link != null && link.getState() != ReplicaLink.State.HANDSHAKE;
+    }
+
+    void setMaster(boolean master) {
+        this.master = master;
+    }
+
+    boolean isMaster() {
+        return master;
+    }
+
+    long getReplicationOffset() {
+        return replicationOffset;
+    }
+
+    boolean inTransaction() {
+        return queued != null;
+    }
+
+    void beginTransaction() {
+        queued = new ArrayList<>();
+        queueRejected = false;
+    }
+
+    // Ends the transaction, returning what was queued, or null if any command was rejected on the way.
+    List<List<String>> endTransaction() {
+        List<List<String>> commands = queueRejected ? null : queued;
+        queued = null;
+        queueRejected = false;
+        return commands;
+    }
+
+    void watch(String key) {
+        if (!watched.containsKey(key)) {
+            watched.put(key, keyVersions.watch(key));
+        }
+    }
+
+    Set<String> getWatchedKeys() {
+        return watched.keySet();
+    }
+
+    // Called with the watched keys locked. Lazy expiry runs first, so a key that expired since it was
+    // watched counts as changed.
+    boolean watchedKeysChanged() {
+        for (Map.Entry<String, Long> entry : watched.entrySet()) {
+            accessKey.accept(entry.getKey());
+            if (keyVersions.changedSince(entry.getKey(), entry.getValue())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    void unwatchAll() {
+        for (String key : watched.keySet()) {
+            keyVersions.unwatch(key);
+        }
+        watched.clear();
+    }
+
+    boolean isExecuting() {
+        return executing;
+    }
+
+    void setExecuting(boolean executing) {
+        this.executing = executing;
+    }
+
+    // Logs the running write command as this instead of its own arguments: the deterministic form of
+    // a command whose effect depends on the clock or on state (SET EX, XADD *), or nothing at all.
+    public void propagateAs(List<String> command) {
+        propagated = command;
+    }
+
+    public long getLogOffset() {
+        return logOffset;
+    }
+
+    void setLogOffset(long logOffset) {
+        this.logOffset = logOffset;
+    }
+
+    public boolean isBlocking(List<String> arguments) {
+        CommandSpec spec = commandRegistry.lookup(arguments.get(0));
+        return queued == null && spec != null && spec.hasFlag(CommandSpec.Flag.BLOCKING);
+    }
+
+    public void respond(List<String> arguments) {
+        if (log.isEnabled(LogService.Level.DEBUG)) {
+            log.sampled(LogService.Level.DEBUG, () -> "Received command from " + describePeer() + ": " + arguments);
+        }
+        String command = arguments.get(0);
+        CommandSpec spec = commandRegistry.lookup(command);
+        if (spec == null) {
+            rejectQueued();
+            outputEncoderService.encodeSimpleError("unknown command '" + command + "', with args beginning with: "
+                    + describeArguments(arguments));
+            return;
+        }
+        if (!spec.checkArity(arguments.size())) {
+            spec.getStats().reject();
+            rejectQueued();
+            outputEncoderService.encodeSimpleError("wrong number of arguments for '" + spec.getName() + "' command");
+            return;
+        }
+        if (spec.hasFlag(CommandSpec.Flag.WRITE) && !master && replicationService.isReplica()) {
+            spec.getStats().reject();
+            rejectQueued();
+            outputEncoderService.encodeSimpleError("-READONLY You can't write against a read only replica.");
+            return;
+        }
+        if (spec.hasFlag(CommandSpec.Flag.WRITE) && !master && !aofService.isWritable()) {
+            spec.getStats().reject();
+            rejectQueued();
+            outputEncoderService.encodeSimpleError("-MISCONF Errors writing to the AOF file: " + aofService.getLastWriteError());
+            return;
+        }
+        if (isSubscribed() && !SUBSCRIBED_CONTEXT.contains(spec.getName())) {
+            spec.getStats().reject();
+            outputEncoderService.encodeSimpleError("Can't execute '" + spec.getName()
+                    + "': only (P)SUBSCRIBE / (P)UNSUBSCRIBE / PING are allowed in this context");
+            return;
+        }
+        if (queued != null && !TRANSACTION_CONTROL.contains(spec.getName())) {
+            queued.add(arguments);
+            outputEncoderService.writeRaw(OutputEncoderService.QUEUED);
+            return;
+        }
+        boolean batch = ReadyKeys.begin();
+        try {
+            if (spec.hasFlag(CommandSpec.Flag.DENYOOM) && !evictionService.makeRoom()) {
+                spec.getStats().reject();
+                outputEncoderService.encodeSimpleError("-OOM command not allowed when used memory > 'maxmemory'.");
+                return;
+            }
+            // The command runs with its keys locked, which is what keeps it from interleaving with an EXEC
+            // on the same keys. Eviction above may lock other keys, so it has to come first.
+            List<String> keys;
+            try {
+                keys = spec.getKeys(arguments);
+            } catch (RuntimeException e) {
+                // Malformed arguments a key extractor cannot make sense of get an error reply, like the handler's own.
+                spec.getStats().reject();
+                outputEncoderService.encodeSimpleError(e.getMessage() == null ? e.toString() : e.getMessage());
+                return;
+            }
+            keyLocks.lockAll(keys);
+            try {
+                execute(spec, arguments, keys);
+            } finally {
+                keyLocks.unlockAll(keys);
+            }
+        } finally {
+            // Clients blocked on keys this command pushed to are served now that its locks are released.
+            if (batch) {
+                ReadyKeys.end();
+            }
+        }
+    }
+
+    // Runs a command whose keys the caller holds locked, writing its reply or its error. The time it
+    // takes is recorded for INFO commandstats and latencystats, and the SLOWLOG and LATENCY monitor
+    // when over their thresholds; for EXEC it includes its commands', which are logged on their own.
+    void execute(CommandSpec spec, List<String> arguments, List<String> keys) {
+        if (monitorService.isActive() && !spec.hasFlag(CommandSpec.Flag.ADMIN)) {
+            monitorService.feed(this, arguments);
+        }
+        int mark = outputEncoderService.size();
+        long start = System.nanoTime();
+        boolean failed = false;
+        try {
+            // Lazy expiry and the LRU/LFU access clock for every key the command touches, whatever its type.
+            for (String key : keys) {
+                accessKey.accept(key);
+            }
+            if (spec.hasFlag(CommandSpec.Flag.WRITE)) {
+                executeWrite(spec, arguments, keys);
+                for (String key : keys) {
+                    keyVersions.touch(key);
+                }
+                snapshotService.markDirty();
+            } else {
+                spec.getHandler().execute(this, arguments);
+            }
+        } catch (NumberFormatException e) {
+            failed = true;
+            outputEncoderService.truncate(mark);
+            outputEncoderService.encodeSimpleError("value is not an integer or out of range");
+        } catch (RuntimeException e) {
+            failed = true;
+            outputEncoderService.truncate(mark);
+            outputEncoderService.encodeSimpleError(e.getMessage() == null ? e.toString() : e.getMessage());
+        } finally {
+            propagated = null;
+            long elapsed = System.nanoTime() - start;
+            spec.getStats().record(elapsed, failed);
+            if (!spec.hasFlag(CommandSpec.Flag.SKIP_SLOWLOG)) {
+                slowLog.record(this, arguments, elapsed);
+                latencyMonitor.record(spec.hasFlag(CommandSpec.Flag.FAST) ? LatencyMonitor.FAST_COMMAND : LatencyMonitor.COMMAND, elapsed);
+            }
+        }
+    }
+
+    // A command refused while queuing makes the whole transaction fail at EXEC.
+    private void rejectQueued() {
+        if (queued != null) {
+            queueRejected = true;
+        }
+    }
+
+    // With the AOF or replication on, the command is propagated before its keys' locks are released, so
+    // records for a key reach the log and the replicas in the order the changes were applied. A command
+    // that fails is not propagated.
+    private void executeWrite(CommandSpec spec, List<String> arguments, List<String> keys) {
+        if (!propagationService.isActive()) {
+            spec.getHandler().execute(this, arguments);
+            return;
+        }
+        propagationService.beforeWrite(keys);
+        spec.getHandler().execute(this, arguments);
+        List<String> logged = propagated == null || master ? arguments : propagated;
+        if (!logged.isEmpty()) {
+            logOffset = propagationService.propagate(keys, logged);
+            replicationOffset = replicationService.getOffset();
+        }
+    }
+
+    private String describeArguments(List<String> arguments) {
+        StringBuilder description = new StringBuilder();
+        for (int i = 1; i < arguments.size() && description.length() < 128; i++) {
+            description.append('\'').append(arguments.get(i)).append("' ");
+        }
+        return description.toString();
+    }
+}
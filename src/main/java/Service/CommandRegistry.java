@@ -0,0 +1,55 @@
+package Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+public class CommandRegistry {
+
+    private static CommandRegistry instance;
+    private final Map<String, CommandSpec> commands = new HashMap<>();
+    private final List<CommandSpec> specs = new ArrayList<>();
+
+    private CommandRegistry() {
+        ListCommands listCommands = new ListCommands();
+        StreamCommands streamCommands = new StreamCommands();
+        new ServerCommands().register(this);
+        new KeyCommands(listCommands, streamCommands).register(this);
+        new StringCommands().register(this);
+        listCommands.register(this);
+        streamCommands.register(this);
+        new ReplicationCommands().register(this);
+        new TransactionCommands().register(this);
+        new PubSubCommands().register(this);
+    }
+
+    public static synchronized CommandRegistry getInstance() {
+        if(instance == null) {
+            instance = new CommandRegistry();
+        }
+        return instance;
+    }
+
+    public void register(CommandSpec spec) {
+        // Index both spellings so the usual upper or lower case names resolve without allocating.
+        commands.put(spec.getName(), spec);
+        commands.put(spec.getName().toUpperCase(Locale.ROOT), spec);
+        specs.add(spec);
+    }
+
+    public CommandSpec lookup(String name) {
+        CommandSpec spec = commands.get(name);
+        if (spec == null) {
+            spec = commands.get(name.toLowerCase(Locale.ROOT));
+        }
+        return spec;
+    }
+
+    public Collection<CommandSpec> getCommands() {
+        return Collections.unmodifiableList(specs);
+    }
+}
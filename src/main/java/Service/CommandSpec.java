@@ -0,0 +1,118 @@
+package Service;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+public class CommandSpec {
+
+    public enum Flag {
+        WRITE, READONLY, DENYOOM, FAST, BLOCKING, ADMIN, PUBSUB, MOVABLE_KEYS, SKIP_SLOWLOG;
+
+        public String replyName() {
+            return name().toLowerCase(Locale.ROOT).replace("_", "");
+        }
+    }
+
+    private final String name;
+    // Redis convention: a positive arity is exact, a negative one is a minimum, both counting the command name.
+    private final int arity;
+    private final Set<Flag> flags;
+    private final int firstKey;
+    private final int lastKey;
+    private final int keyStep;
+    private final CommandHandler handler;
+    private Function<List<String>, List<String>> keyExtractor;
+    private final CommandStats stats = new CommandStats();
+
+    public CommandSpec(String name, int arity, Set<Flag> flags, int firstKey, int lastKey, int keyStep,
+                       CommandHandler handler) {
+        this.name = name.toLowerCase(Locale.ROOT);
+        this.arity = arity;
+        this.flags = flags.isEmpty() ? EnumSet.noneOf(Flag.class) : EnumSet.copyOf(flags);
+        this.firstKey = firstKey;
+        this.lastKey = lastKey;
+        this.keyStep = keyStep;
+        this.handler = handler;
+    }
+
+    // Commands whose keys are not at fixed positions (e.g. XREAD ... STREAMS k1 k2 id1 id2) supply their own lookup.
+    public CommandSpec withKeyExtractor(Function<List<String>, List<String>> keyExtractor) {
+        this.keyExtractor = keyExtractor;
+        this.flags.add(Flag.MOVABLE_KEYS);
+        return this;
+    }
+
+    public boolean checkArity(int argumentCount) {
+        return arity >= 0 ? argumentCount == arity : argumentCount >= -arity;
+    }
+
+    public List<String> getKeys(List<String> arguments) {
+        if (keyExtractor != null) {
+            return keyExtractor.apply(arguments);
+        }
+        List<String> keys = new ArrayList<>();
+        if (firstKey <= 0) {
+            return keys;
+        }
+        int last = lastKey < 0 ? arguments.size() + lastKey : lastKey;
+        for (int i = firstKey; i <= last && i < arguments.size(); i += keyStep) {
+            keys.add(arguments.get(i));
+        }
+        return keys;
+    }
+
+    public void forEachKey(List<String> arguments, Consumer<String> action) {
+        if (keyExtractor != null) {
+            keyExtractor.apply(arguments).forEach(action);
+            return;
+        }
+        if (firstKey <= 0) {
+            return;
+        }
+        int last = lastKey < 0 ? arguments.size() + lastKey : lastKey;
+        for (int i = firstKey; i <= last && i < arguments.size(); i += keyStep) {
+            action.accept(arguments.get(i));
+        }
+    }
+
+    public boolean hasFlag(Flag flag) {
+        return flags.contains(flag);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getArity() {
+        return arity;
+    }
+
+    public Set<Flag> getFlags() {
+        return flags;
+    }
+
+    public int getFirstKey() {
+        return firstKey;
+    }
+
+    public int getLastKey() {
+        return lastKey;
+    }
+
+    public int getKeyStep() {
+        return keyStep;
+    }
+
+    public CommandHandler getHandler() {
+        return handler;
+    }
+
+    public CommandStats getStats() {
+        return stats;
+    }
+}
@@ -0,0 +1,63 @@
+package Service;
+
+import Models.LatencyHistogram;
+
+import java.util.concurrent.atomic.LongAdder;
+
+// What INFO commandstats and latencystats report for one command. Counters are LongAdders and the
+// histogram is lock-free, so recording from every connection thread at once never contends on a lock.
+public class CommandStats {
+
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder nanos = new LongAdder();
+    private final LongAdder failedCalls = new LongAdder();
+    private final LongAdder rejectedCalls = new LongAdder();
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    // A call that ran, successfully or with an error reply.
+    public void record(long elapsedNanos, boolean failed) {
+        calls.increment();
+        nanos.add(elapsedNanos);
+        latency.record(elapsedNanos);
+        if (failed) {
+            failedCalls.increment();
+        }
+    }
+
+    // Refused before running: wrong arity, read-only replica, out of memory, subscribed client.
+    public void reject() {
+        rejectedCalls.increment();
+    }
+
+    public long getCalls() {
+        return calls.sum();
+    }
+
+    public long getNanos() {
+        return nanos.sum();
+    }
+
+    public long getFailedCalls() {
+        return failedCalls.sum();
+    }
+
+    public long getRejectedCalls() {
+        return rejectedCalls.sum();
+    }
+
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    public boolean isEmpty() {
+        return getCalls() == 0 && getRejectedCalls() == 0;
+    }
+
+    public void reset() {
+        calls.reset();
+        nanos.reset();
+        failedCalls.reset();
+        rejectedCalls.reset();
+        latency.reset();
+    }
+}
@@ -0,0 +1,291 @@
+package Service;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class Connection {
+
+    private static final LogService log = LogService.getInstance();
+
+    private final EventLoop eventLoop;
+    private final SocketChannel channel;
+    private final SelectionKey key;
+    private final RespParser respParser = new RespParser();
+    private final Deque<ByteBuffer> writeQueue = new ArrayDeque<>();
+    private final CommandProcessor commandProcessor = new CommandProcessor();
+    private final AofService aofService = AofService.getInstance();
+    private final StatsService statsService = StatsService.getInstance();
+    private boolean blocked;
+    private boolean closed;
+    // Replies are held until the AOF has the writes they acknowledge; reading stops meanwhile.
+    private boolean awaitingLog;
+    // A blocking command read while earlier replies were still waiting for the AOF.
+    private List<String> parked;
+    // Published messages, queued by publishers' threads and written by this connection's event loop.
+    private final ConcurrentLinkedQueue<byte[]> pushed = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean pushScheduled = new AtomicBoolean();
+    // Bytes in the write queue, which a subscriber that stops reading lets grow.
+    private long queuedBytes;
+    // A malformed request: answered after the replies before it, then the connection is closed.
+    private String protocolError;
+    private boolean closeAfterReply;
+
+    public Connection(EventLoop eventLoop, SocketChannel channel, SelectionKey key) {
+        this.eventLoop = eventLoop;
+        this.channel = channel;
+        this.key = key;
+        statsService.clientConnected();
+        commandProcessor.setRawOutput(channel);
+        try {
+            commandProcessor.setPeer((InetSocketAddress) channel.getRemoteAddress());
+        } catch (IOException e) {
+            log.verbose("IOException: " + e.getMessage());
+        }
+    }
+
+    // Called by the event loop once the connection is constructed, so the listeners never see it half-built.
+    void start() {
+        commandProcessor.setResumeListener(() -> eventLoop.execute(this::resume));
+        commandProcessor.setPushListener(this::push);
+    }
+
+    void handleRead(ByteBuffer readBuffer) throws IOException {
+        readBuffer.clear();
+        int num = channel.read(readBuffer);
+        if (num < 0) {
+            close();
+            return;
+        }
+        if (num == 0) {
+            return;
+        }
+        respParser.feed(readBuffer.array(), 0, num);
+        processInput();
+    }
+
+    // Executes every complete frame in order and flushes their replies with one write.
+    private void processInput() {
+        while (!blocked && !awaitingLog) {
+            List<String> arguments = nextCommand();
+            if (arguments == null) {
+                if (protocolError != null && !closeAfterReply) {
+                    commandProcessor.getOutput().encodeSimpleError(protocolError);
+                    closeAfterReply = true;
+                    key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+                }
+                break;
+            }
+            if (commandProcessor.isBlocking(arguments)) {
+                // Its reply may come from another thread, so everything before it must be sent first.
+                if (!aofService.isDurable(commandProcessor.getLogOffset())) {
+                    parked = arguments;
+                    awaitLog();
+                    break;
+                }
+                runBlocking(arguments);
+            } else {
+                commandProcessor.respond(arguments);
+            }
+        }
+        // While blocked the output buffer belongs to the blocked command.
+        if (!blocked) {
+            flush();
+            writePushed();
+            closeIfReplied();
+        }
+    }
+
+    // The error is only recorded here; processInput writes it after the replies to the commands before it.
+    private List<String> nextCommand() {
+        if (protocolError != null) {
+            return null;
+        }
+        try {
+            return respParser.next();
+        } catch (RuntimeException e) {
+            protocolError = e.getMessage();
+            return null;
+        }
+    }
+
+    private void closeIfReplied() {
+        if (closeAfterReply && !awaitingLog && writeQueue.isEmpty()) {
+            close();
+        }
+    }
+
+    private void runBlocking(List<String> arguments) {
+        // Hand the output buffer over empty; a parked command writes its reply into it once served.
+        flush();
+        commandProcessor.respond(arguments);
+        if (commandProcessor.isBlocked()) {
+            // Stop reading until the blocked command replies so replies stay in request order.
+            blocked = true;
+            key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+        }
+    }
+
+    private void resume() {
+        if (closed || !blocked || commandProcessor.isBlocked()) {
+            return;
+        }
+        blocked = false;
+        key.interestOps(key.interestOps() | SelectionKey.OP_READ);
+        try {
+            processInput();
+        } catch (RuntimeException e) {
+            close();
+        }
+    }
+
+    private void awaitLog() {
+        awaitingLog = true;
+        key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+        aofService.whenDurable(commandProcessor.getLogOffset(), () -> eventLoop.execute(this::logWritten));
+    }
+
+    private void logWritten() {
+        if (closed || !awaitingLog) {
+            return;
+        }
+        awaitingLog = false;
+        key.interestOps(key.interestOps() | SelectionKey.OP_READ);
+        try {
+            flush();
+            List<String> next = parked;
+            parked = null;
+            if (next != null) {
+                runBlocking(next);
+            }
+            processInput();
+        } catch (RuntimeException e) {
+            close();
+        }
+    }
+
+    // Any thread. One wakeup of the event loop covers however many messages arrive before it runs.
+    private void push(byte[] message) {
+        pushed.add(message);
+        if (pushScheduled.compareAndSet(false, true)) {
+            eventLoop.execute(this::deliver);
+        }
+    }
+
+    private void deliver() {
+        pushScheduled.set(false);
+        // Otherwise replies still being produced or held must go first; they are followed by writePushed().
+        if (!blocked) {
+            writePushed();
+        }
+    }
+
+    // Writes every queued message with one gathering write, straight from the buffers the publisher
+    // encoded; nothing is copied per subscriber.
+    private void writePushed() {
+        if (pushed.isEmpty() || closed || awaitingLog) {
+            return;
+        }
+        List<ByteBuffer> buffers = new ArrayList<>();
+        byte[] message;
+        while ((message = pushed.poll()) != null) {
+            buffers.add(ByteBuffer.wrap(message));
+        }
+        try {
+            if (writeQueue.isEmpty()) {
+                ByteBuffer[] batch = buffers.toArray(new ByteBuffer[0]);
+                channel.write(batch);
+                for (ByteBuffer buffer : batch) {
+                    if (buffer.hasRemaining()) {
+                        enqueue(buffer);
+                    }
+                }
+            } else {
+                buffers.forEach(this::enqueue);
+            }
+        } catch (IOException e) {
+            close();
+            return;
+        }
+        if (queuedBytes > PubSubService.OUTPUT_LIMIT) {
+            log.warning("Client " + commandProcessor.getPeer() + " closed for overcoming of output buffer limits.");
+            close();
+        }
+    }
+
+    private void enqueue(ByteBuffer buffer) {
+        writeQueue.addLast(buffer);
+        queuedBytes += buffer.remaining();
+        key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+    }
+
+    void handleWrite() throws IOException {
+        while (!writeQueue.isEmpty()) {
+            ByteBuffer buffer = writeQueue.peekFirst();
+            queuedBytes -= channel.write(buffer);
+            if (buffer.hasRemaining()) {
+                key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+                return;
+            }
+            writeQueue.pollFirst();
+        }
+        key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+        closeIfReplied();
+    }
+
+    private void flush() {
+        OutputEncoderService output = commandProcessor.getOutput();
+        if (output.isEmpty() || closed || awaitingLog) {
+            return;
+        }
+        // A replica's connection is written by its sender thread only.
+        if (commandProcessor.isReplica()) {
+            output.reset();
+            return;
+        }
+        if (!aofService.isDurable(commandProcessor.getLogOffset())) {
+            awaitLog();
+            return;
+        }
+        try {
+            if (writeQueue.isEmpty()) {
+                ByteBuffer buffer = ByteBuffer.wrap(output.getBuffer(), 0, output.size());
+                channel.write(buffer);
+                if (buffer.hasRemaining()) {
+                    enqueue(copyOf(buffer));
+                }
+            } else {
+                enqueue(copyOf(ByteBuffer.wrap(output.getBuffer(), 0, output.size())));
+            }
+        } catch (IOException e) {
+            close();
+        } finally {
+            output.reset();
+        }
+    }
+
+    private static ByteBuffer copyOf(ByteBuffer buffer) {
+        ByteBuffer copy = ByteBuffer.allocate(buffer.remaining());
+        copy.put(buffer);
+        return copy.flip();
+    }
+
+    void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        statsService.clientDisconnected();
+        commandProcessor.disconnect();
+        key.cancel();
+        EventLoop.closeQuietly(channel);
+    }
+}
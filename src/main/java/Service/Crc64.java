@@ -0,0 +1,55 @@
+package Service;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+// CRC-64/Jones (reflected, poly 0xad93d23594c935a9), the checksum Redis appends to RDB files.
+// Slicing-by-8: eight tables let each step fold in a whole little-endian long instead of one byte.
+final class Crc64 {
+
+    private static final long POLY = 0x95AC9329AC4BC9B5L;
+    private static final long[][] TABLES = new long[8][256];
+
+    static {
+        for (int i = 0; i < 256; i++) {
+            long crc = i;
+            for (int j = 0; j < 8; j++) {
+                crc = (crc & 1) != 0 ? (crc >>> 1) ^ POLY : crc >>> 1;
+            }
+            TABLES[0][i] = crc;
+        }
+        for (int k = 1; k < 8; k++) {
+            for (int i = 0; i < 256; i++) {
+                long previous = TABLES[k - 1][i];
+                TABLES[k][i] = (previous >>> 8) ^ TABLES[0][(int) (previous & 0xff)];
+            }
+        }
+    }
+
+    private Crc64() {
+    }
+
+    static long update(long crc, byte[] bytes, int offset, int length) {
+        return update(crc, ByteBuffer.wrap(bytes, offset, length));
+    }
+
+    // Consumes the buffer's remaining bytes.
+    static long update(long crc, ByteBuffer buffer) {
+        ByteOrder order = buffer.order();
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        long[] t0 = TABLES[0], t1 = TABLES[1], t2 = TABLES[2], t3 = TABLES[3];
+        long[] t4 = TABLES[4], t5 = TABLES[5], t6 = TABLES[6], t7 = TABLES[7];
+        while (buffer.remaining() >= 8) {
+            crc ^= buffer.getLong();
+            crc = t7[(int) (crc & 0xff)] ^ t6[(int) ((crc >>> 8) & 0xff)]
+                    ^ t5[(int) ((crc >>> 16) & 0xff)] ^ t4[(int) ((crc >>> 24) & 0xff)]
+                    ^ t3[(int) ((crc >>> 32) & 0xff)] ^ t2[(int) ((crc >>> 40) & 0xff)]
+                    ^ t1[(int) ((crc >>> 48) & 0xff)] ^ t0[(int) (crc >>> 56)];
+        }
+        while (buffer.hasRemaining()) {
+            crc = t0[(int) ((crc ^ buffer.get()) & 0xff)] ^ (crc >>> 8);
+        }
+        buffer.order(order);
+        return crc;
+    }
+}
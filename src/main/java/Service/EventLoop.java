@@ -0,0 +1,98 @@
+package Service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+public class EventLoop implements Runnable {
+
+    private static final LogService log = LogService.getInstance();
+
+    private final Selector selector;
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private final ByteBuffer readBuffer = ByteBuffer.allocate(64 * 1024);
+
+    public EventLoop() throws IOException {
+        this.selector = Selector.open();
+    }
+
+    public void register(SocketChannel channel) {
+        execute(() -> {
+            try {
+                channel.configureBlocking(false);
+                channel.setOption(java.net.StandardSocketOptions.TCP_NODELAY, true);
+                SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+                Connection connection = new Connection(this, channel, key);
+                connection.start();
+                key.attach(connection);
+            } catch (IOException e) {
+                log.verbose("IOException: " + e.getMessage());
+                closeQuietly(channel);
+            }
+        });
+    }
+
+    public void execute(Runnable task) {
+        tasks.add(task);
+        selector.wakeup();
+    }
+
+    public void run() {
+        while (true) {
+            try {
+                selector.select();
+                runTasks();
+                Iterator<SelectionKey> iterator = selector.selectedKeys().iterator();
+                while (iterator.hasNext()) {
+                    SelectionKey key = iterator.next();
+                    iterator.remove();
+                    Connection connection = (Connection) key.attachment();
+                    if (!key.isValid() || connection == null) {
+                        continue;
+                    }
+                    try {
+                        if (key.isReadable()) {
+                            connection.handleRead(readBuffer);
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            connection.handleWrite();
+                        }
+                    } catch (IOException | RuntimeException e) {
+                        connection.close();
+                    } catch (Error e) {
+                        // A StackOverflowError or the like is this connection's to pay for, not the loop's.
+                        log.warning("Closing a connection after " + e);
+                        connection.close();
+                    }
+                }
+            } catch (IOException e) {
+                log.warning("IOException: " + e.getMessage());
+            }
+        }
+    }
+
+    // One failing task must not take the loop, and every connection on it, down with it.
+    private void runTasks() {
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+            try {
+                task.run();
+            } catch (RuntimeException | Error e) {
+                log.warning("Event loop task failed: " + e);
+            }
+        }
+    }
+
+    static void closeQuietly(SocketChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            log.verbose("IOException: " + e.getMessage());
+        }
+    }
+}
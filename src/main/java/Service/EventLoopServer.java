@@ -0,0 +1,39 @@
+package Service;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+
+public class EventLoopServer {
+
+    private final int port;
+    private final EventLoop[] eventLoops;
+
+    public EventLoopServer(int port, int ioThreads) throws IOException {
+        this.port = port;
+        this.eventLoops = new EventLoop[ioThreads];
+        for (int i = 0; i < ioThreads; i++) {
+            eventLoops[i] = new EventLoop();
+        }
+    }
+
+    public void start() throws IOException {
+        try (ServerSocketChannel serverChannel = ServerSocketChannel.open()) {
+            serverChannel.socket().setReuseAddress(true);
+            // Bound before the loops start, so a port already in use fails startup instead of leaving them running.
+            serverChannel.bind(new InetSocketAddress(port), 1024);
+            for (int i = 0; i < eventLoops.length; i++) {
+                Thread t = new Thread(eventLoops[i], "event-loop-" + i);
+                t.start();
+            }
+            int next = 0;
+            while (true) {
+                SocketChannel clientChannel = serverChannel.accept();
+                EventLoop eventLoop = eventLoops[next];
+                next = (next + 1) % eventLoops.length;
+                eventLoop.register(clientChannel);
+            }
+        }
+    }
+}
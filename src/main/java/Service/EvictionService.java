@@ -0,0 +1,196 @@
+package Service;
+
+import Models.AccessClock;
+import Models.DataStore;
+import Models.ExpiryIndex;
+import Models.KeyLocks;
+import Models.KeyVersions;
+import Models.RedisObject;
+import Models.ServerConfig;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Keeps the dataset under maxmemory. Runs on the write path before commands that can grow memory,
+// evicting keys until usage is back under the limit. Candidates come from a few keys sampled at a
+// time off a cursor that walks the keyspace across calls, kept in a small pool of the best seen so
+// far, so each step costs O(samples) and nothing ever scans the whole map (Redis's approximated LRU).
+public class EvictionService {
+
+    private static final int POOL_SIZE = 16;
+    // A volatile-* policy skips keys without a TTL, but never reads more than this many per sample.
+    private static final int MAX_SCAN_PER_SAMPLE = 100;
+    // One call evicts for at most this long; if it made progress the command goes ahead anyway.
+    private static final long EVICTION_TIME_LIMIT_NANOS = 500_000;
+
+    private static EvictionService instance;
+
+    private final DataStore dataStore = DataStore.getInstance();
+    private final ServerConfig config = ServerConfig.getInstance();
+    private final KeyLocks keyLocks = dataStore.getKeyLocks();
+    private final KeyVersions keyVersions = dataStore.getKeyVersions();
+    private final PropagationService propagationService = PropagationService.getInstance();
+    private final ReplicationService replicationService = ReplicationService.getInstance();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final AtomicLong evictedKeys = new AtomicLong();
+    private final AtomicLong peakMemory = new AtomicLong();
+    // Guarded by lock. Sorted by ascending score, so the best candidate is last.
+    private final String[] poolKeys = new String[POOL_SIZE];
+    private final long[] poolScores = new long[POOL_SIZE];
+    private int poolSize;
+    private Iterator<Map.Entry<String, RedisObject>> cursor;
+
+    private EvictionService() {
+    }
+
+    public static synchronized EvictionService getInstance() {
+        if(instance == null) {
+            instance = new EvictionService();
+        }
+        return instance;
+    }
+
+    public long getEvictedKeys() {
+        return evictedKeys.get();
+    }
+
+    public long getPeakMemory() {
+        return Math.max(peakMemory.get(), dataStore.getUsedMemory());
+    }
+
+    // False when the command must be refused because memory cannot be brought under the limit.
+    public boolean makeRoom() {
+        long used = dataStore.getUsedMemory();
+        peakMemory.accumulateAndGet(used, Math::max);
+        long maxmemory = config.getMaxmemory();
+        // A replica holds what its master holds; the master's evictions arrive as DELs.
+        if (maxmemory <= 0 || used <= maxmemory || replicationService.isReplica()) {
+            return true;
+        }
+        if ("noeviction".equals(config.getMaxmemoryPolicy())) {
+            return false;
+        }
+        // Another thread is already evicting; let this command through rather than queue behind it.
+        if (!lock.tryLock()) {
+            return true;
+        }
+        try {
+            long deadline = System.nanoTime() + EVICTION_TIME_LIMIT_NANOS;
+            boolean progress = false;
+            while (dataStore.getUsedMemory() > maxmemory) {
+                String victim = nextVictim();
+                if (victim == null) {
+                    return false;
+                }
+                if (evict(victim)) {
+                    evictedKeys.incrementAndGet();
+                    progress = true;
+                }
+                if (progress && System.nanoTime() > deadline) {
+                    break;
+                }
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Eviction is a write like any other as far as the AOF and replicas are concerned: a DEL.
+    private boolean evict(String key) {
+        List<String> keys = List.of(key);
+        keyLocks.lock(key);
+        try {
+            propagationService.beforeWrite(keys);
+            if (!dataStore.remove(key)) {
+                return false;
+            }
+            propagationService.propagate(keys, List.of("DEL", key));
+            keyVersions.touch(key);
+            return true;
+        } finally {
+            keyLocks.unlock(key);
+        }
+    }
+
+    private String nextVictim() {
+        String policy = config.getMaxmemoryPolicy();
+        if ("volatile-ttl".equals(policy)) {
+            return dataStore.getExpiryIndex().soonestKey();
+        }
+        boolean volatileOnly = policy.startsWith("volatile-");
+        // Pool entries may be stale: keys deleted or given a TTL-less value since they were sampled.
+        while (true) {
+            samplePool(volatileOnly);
+            if (poolSize == 0) {
+                return null;
+            }
+            String key = poolKeys[--poolSize];
+            poolKeys[poolSize] = null;
+            RedisObject value = dataStore.get(key);
+            if (value != null && (!volatileOnly || value.getExpiryTime() != ExpiryIndex.NO_EXPIRY)) {
+                return key;
+            }
+        }
+    }
+
+    private void samplePool(boolean volatileOnly) {
+        int samples = config.getMaxmemorySamples();
+        int scanned = 0;
+        boolean wrapped = false;
+        while (samples > 0 && scanned < MAX_SCAN_PER_SAMPLE * config.getMaxmemorySamples()) {
+            if (cursor == null || !cursor.hasNext()) {
+                // One full lap without a candidate means there is nothing to evict.
+                if (wrapped) {
+                    return;
+                }
+                cursor = dataStore.keyspaceIterator();
+                wrapped = true;
+                if (!cursor.hasNext()) {
+                    return;
+                }
+            }
+            Map.Entry<String, RedisObject> entry = cursor.next();
+            scanned++;
+            RedisObject value = entry.getValue();
+            if (volatileOnly && value.getExpiryTime() == ExpiryIndex.NO_EXPIRY) {
+                continue;
+            }
+            offer(entry.getKey(), AccessClock.evictionScore(value.getAccessClock()));
+            samples--;
+        }
+    }
+
+    private void offer(String key, long score) {
+        for (int i = 0; i < poolSize; i++) {
+            if (poolKeys[i].equals(key)) {
+                removeAt(i);
+                break;
+            }
+        }
+        if (poolSize == POOL_SIZE) {
+            if (score <= poolScores[0]) {
+                return;
+            }
+            removeAt(0);
+        }
+        int position = poolSize;
+        while (position > 0 && poolScores[position - 1] > score) {
+            poolKeys[position] = poolKeys[position - 1];
+            poolScores[position] = poolScores[position - 1];
+            position--;
+        }
+        poolKeys[position] = key;
+        poolScores[position] = score;
+        poolSize++;
+    }
+
+    private void removeAt(int index) {
+        System.arraycopy(poolKeys, index + 1, poolKeys, index, poolSize - index - 1);
+        System.arraycopy(poolScores, index + 1, poolScores, index, poolSize - index - 1);
+        poolKeys[--poolSize] = null;
+    }
+}
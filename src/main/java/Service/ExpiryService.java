@@ -0,0 +1,61 @@
+package Service;
+
+import Models.DataStore;
+import Models.ExpiryIndex;
+import Models.KeyLocks;
+import Models.ServerConfig;
+
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Active expiry: every 1/hz seconds delete keys whose deadline has passed, taking them from the
+// deadline-ordered index in batches so the work is proportional to the number of keys due. A cycle
+// never runs for more than a quarter of its period, leftovers are picked up by the next one. Each key
+// is deleted under its lock, like any write, so it cannot vanish in the middle of a command or an EXEC.
+public class ExpiryService {
+
+    private static final LogService log = LogService.getInstance();
+
+    private static final int KEYS_PER_LOOP = 20;
+    private static final int CYCLE_TIME_PERCENT = 25;
+
+    private final DataStore dataStore = DataStore.getInstance();
+    private final ExpiryIndex expiryIndex = dataStore.getExpiryIndex();
+    private final KeyLocks keyLocks = dataStore.getKeyLocks();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "active-expire");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public void start() {
+        long periodMicros = 1_000_000L / ServerConfig.getInstance().getHz();
+        scheduler.scheduleAtFixedRate(this::activeExpireCycle, periodMicros, periodMicros, TimeUnit.MICROSECONDS);
+    }
+
+    void activeExpireCycle() {
+        long start = System.nanoTime();
+        try {
+            long periodNanos = 1_000_000_000L / ServerConfig.getInstance().getHz();
+            long deadline = start + periodNanos * CYCLE_TIME_PERCENT / 100;
+            List<String> due;
+            do {
+                due = expiryIndex.dueKeys(System.currentTimeMillis(), KEYS_PER_LOOP);
+                for (String key : due) {
+                    // The deadline is checked again under the lock: a command may have just given it a new one.
+                    keyLocks.lock(key);
+                    try {
+                        dataStore.expireIfNeeded(key);
+                    } finally {
+                        keyLocks.unlock(key);
+                    }
+                }
+            } while (due.size() == KEYS_PER_LOOP && System.nanoTime() < deadline);
+        } catch (RuntimeException e) {
+            log.warning("Active expire cycle failed: " + e.getMessage());
+        }
+        LatencyMonitor.getInstance().record(LatencyMonitor.EXPIRE_CYCLE, System.nanoTime() - start);
+    }
+}
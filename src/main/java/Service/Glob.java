@@ -0,0 +1,75 @@
+package Service;
+
+// Redis glob patterns: * and ? wildcards, [abc], [^abc] and [a-z] classes, and \ to escape any of them.
+final class Glob {
+
+    private Glob() {
+    }
+
+    static boolean matches(String pattern, String string) {
+        int p = 0;
+        int s = 0;
+        int star = -1;
+        int starMatch = 0;
+        while (s < string.length()) {
+            if (p < pattern.length() && pattern.charAt(p) == '*') {
+                star = p++;
+                starMatch = s;
+                continue;
+            }
+            int next = p < pattern.length() ? matchOne(pattern, p, string.charAt(s)) : -1;
+            if (next >= 0) {
+                p = next;
+                s++;
+            } else if (star != -1) {
+                // Let the last * swallow one more character and try again from there.
+                p = star + 1;
+                s = ++starMatch;
+            } else {
+                return false;
+            }
+        }
+        while (p < pattern.length() && pattern.charAt(p) == '*') {
+            p++;
+        }
+        return p == pattern.length();
+    }
+
+    // Matches the pattern element at p against c: the index after the element, or -1.
+    private static int matchOne(String pattern, int p, char c) {
+        char first = pattern.charAt(p);
+        if (first == '?') {
+            return p + 1;
+        }
+        if (first == '\\' && p + 1 < pattern.length()) {
+            return pattern.charAt(p + 1) == c ? p + 2 : -1;
+        }
+        if (first != '[') {
+            return first == c ? p + 1 : -1;
+        }
+        int i = p + 1;
+        boolean negate = i < pattern.length() && pattern.charAt(i) == '^';
+        if (negate) {
+            i++;
+        }
+        boolean matched = false;
+        while (i < pattern.length() && pattern.charAt(i) != ']') {
+            char x = pattern.charAt(i);
+            if (x == '\\' && i + 1 < pattern.length()) {
+                matched |= pattern.charAt(i + 1) == c;
+                i += 2;
+            } else if (i + 2 < pattern.length() && pattern.charAt(i + 1) == '-' && pattern.charAt(i + 2) != ']') {
+                char low = (char) Math.min(x, pattern.charAt(i + 2));
+                char high = (char) Math.max(x, pattern.charAt(i + 2));
+                matched |= c >= low && c <= high;
+                i += 3;
+            } else {
+                matched |= x == c;
+                i++;
+            }
+        }
+        // As in Redis, a class left open runs to the end of the pattern.
+        int end = i < pattern.length() ? i + 1 : i;
+        return matched != negate ? end : -1;
+    }
+}
@@ -0,0 +1,189 @@
+package Service;
+
+import Models.AccessClock;
+import Models.DataStore;
+import Models.ExpiryIndex;
+import Models.RedisObject;
+import Models.ServerConfig;
+import Service.CommandSpec.Flag;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Locale;
+
+public class KeyCommands {
+
+    private final DataStore dataStore = DataStore.getInstance();
+    private final ListCommands listCommands;
+    private final StreamCommands streamCommands;
+
+    public KeyCommands(ListCommands listCommands, StreamCommands streamCommands) {
+        this.listCommands = listCommands;
+        this.streamCommands = streamCommands;
+    }
+
+    public void register(CommandRegistry registry) {
+        registry.register(new CommandSpec("type", 2, EnumSet.of(Flag.READONLY, Flag.FAST), 1, 1, 1, this::type));
+        registry.register(new CommandSpec("del", -2, EnumSet.of(Flag.WRITE), 1, -1, 1, this::del));
+        registry.register(new CommandSpec("exists", -2, EnumSet.of(Flag.READONLY, Flag.FAST), 1, -1, 1, this::exists));
+        registry.register(new CommandSpec("rename", 3, EnumSet.of(Flag.WRITE), 1, 2, 1,
+                (client, arguments) -> rename(client, arguments, false)));
+        registry.register(new CommandSpec("renamenx", 3, EnumSet.of(Flag.WRITE, Flag.FAST), 1, 2, 1,
+                (client, arguments) -> rename(client, arguments, true)));
+        registry.register(new CommandSpec("object", -2, EnumSet.of(Flag.READONLY), 2, 2, 1, this::object));
+        registry.register(new CommandSpec("expire", -3, EnumSet.of(Flag.WRITE, Flag.FAST), 1, 1, 1,
+                (client, arguments) -> expire(client, arguments, 1000, false)));
+        registry.register(new CommandSpec("pexpire", -3, EnumSet.of(Flag.WRITE, Flag.FAST), 1, 1, 1,
+                (client, arguments) -> expire(client, arguments, 1, false)));
+        registry.register(new CommandSpec("expireat", -3, EnumSet.of(Flag.WRITE, Flag.FAST), 1, 1, 1,
+                (client, arguments) -> expire(client, arguments, 1000, true)));
+        registry.register(new CommandSpec("pexpireat", -3, EnumSet.of(Flag.WRITE, Flag.FAST), 1, 1, 1,
+                (client, arguments) -> expire(client, arguments, 1, true)));
+        registry.register(new CommandSpec("ttl", 2, EnumSet.of(Flag.READONLY, Flag.FAST), 1, 1, 1,
+                (client, arguments) -> ttl(client, arguments, 1000, false)));
+        registry.register(new CommandSpec("pttl", 2, EnumSet.of(Flag.READONLY, Flag.FAST), 1, 1, 1,
+                (client, arguments) -> ttl(client, arguments, 1, false)));
+        registry.register(new CommandSpec("expiretime", 2, EnumSet.of(Flag.READONLY, Flag.FAST), 1, 1, 1,
+                (client, arguments) -> ttl(client, arguments, 1000, true)));
+        registry.register(new CommandSpec("pexpiretime", 2, EnumSet.of(Flag.READONLY, Flag.FAST), 1, 1, 1,
+                (client, arguments) -> ttl(client, arguments, 1, true)));
+        registry.register(new CommandSpec("persist", 2, EnumSet.of(Flag.WRITE, Flag.FAST), 1, 1, 1, this::persist));
+    }
+
+    private void type(CommandProcessor client, List<String> arguments) {
+        RedisObject value = dataStore.get(arguments.get(1));
+        client.getOutput().encodeSimpleString(value == null ? "none" : value.getType().getName());
+    }
+
+    private void del(CommandProcessor client, List<String> arguments) {
+        int removed = 0;
+        for (int i = 1; i < arguments.size(); i++) {
+            if (dataStore.remove(arguments.get(i))) {
+                removed++;
+            }
+        }
+        client.getOutput().encodeInteger(removed);
+    }
+
+    private void exists(CommandProcessor client, List<String> arguments) {
+        int found = 0;
+        for (int i = 1; i < arguments.size(); i++) {
+            if (dataStore.exists(arguments.get(i))) {
+                found++;
+            }
+        }
+        client.getOutput().encodeInteger(found);
+    }
+
+    private void rename(CommandProcessor client, List<String> arguments, boolean onlyIfAbsent) {
+        String destination = arguments.get(2);
+        boolean renamed = dataStore.rename(arguments.get(1), destination, onlyIfAbsent);
+        if (onlyIfAbsent) {
+            client.getOutput().encodeInteger(renamed ? 1 : 0);
+        } else {
+            client.getOutput().writeRaw(OutputEncoderService.OK);
+        }
+        // Clients blocked on the destination may now be served.
+        if (renamed) {
+            listCommands.signalKeyReady(destination);
+            streamCommands.signalKeyReady(destination);
+        }
+    }
+
+    private void object(CommandProcessor client, List<String> arguments) {
+        String subcommand = arguments.get(1).toUpperCase(Locale.ROOT);
+        if (arguments.size() != 3 || !List.of("ENCODING", "IDLETIME", "FREQ").contains(subcommand)) {
+            throw new RuntimeException("unknown subcommand or wrong number of arguments for 'object' command");
+        }
+        OutputEncoderService output = client.getOutput();
+        RedisObject value = dataStore.get(arguments.get(2));
+        if (value == null) {
+            output.writeRaw(OutputEncoderService.NULL_BULK_STRING);
+            return;
+        }
+        boolean lfu = ServerConfig.getInstance().isLfuPolicy();
+        switch (subcommand) {
+            case "ENCODING" -> output.encodeBulkString(value.getEncoding());
+            case "IDLETIME" -> {
+                if (lfu) {
+                    throw new RuntimeException("An LFU maxmemory policy is selected, idle time not tracked.");
+                }
+                output.encodeInteger(AccessClock.idleSeconds(value.getAccessClock()));
+            }
+            default -> {
+                if (!lfu) {
+                    throw new RuntimeException("An LFU maxmemory policy is not selected, access frequency not tracked.");
+                }
+                output.encodeInteger(AccessClock.frequency(value.getAccessClock()));
+            }
+        }
+    }
+
+    private void expire(CommandProcessor client, List<String> arguments, long unitMillis, boolean absolute) {
+        String key = arguments.get(1);
+        long time = Long.parseLong(arguments.get(2));
+        if (Math.abs(time) > Long.MAX_VALUE / 1000 / unitMillis) {
+            throw new RuntimeException("invalid expire time in '" + arguments.get(0).toLowerCase() + "' command");
+        }
+        long expiryTime = absolute ? time * unitMillis : System.currentTimeMillis() + time * unitMillis;
+        String condition = arguments.size() > 3 ? arguments.get(3).toUpperCase() : "";
+        OutputEncoderService output = client.getOutput();
+        RedisObject value = dataStore.get(key);
+        if (value == null) {
+            client.propagateAs(List.of());
+            output.encodeInteger(0);
+            return;
+        }
+        long current = value.getExpiryTime();
+        boolean allowed = switch (condition) {
+            case "" -> true;
+            case "NX" -> current == ExpiryIndex.NO_EXPIRY;
+            case "XX" -> current != ExpiryIndex.NO_EXPIRY;
+            case "GT" -> current != ExpiryIndex.NO_EXPIRY && expiryTime > current;
+            case "LT" -> current == ExpiryIndex.NO_EXPIRY || expiryTime < current;
+            default -> throw new RuntimeException("Unsupported option " + arguments.get(3));
+        };
+        if (!allowed) {
+            client.propagateAs(List.of());
+            output.encodeInteger(0);
+            return;
+        }
+        boolean updated;
+        // Logged as the absolute deadline, or as the delete that a deadline in the past amounts to.
+        if (expiryTime <= System.currentTimeMillis()) {
+            updated = dataStore.remove(key);
+            client.propagateAs(updated ? List.of("DEL", key) : List.of());
+        } else {
+            updated = dataStore.setExpiry(key, expiryTime);
+            client.propagateAs(updated ? List.of("PEXPIREAT", key, Long.toString(expiryTime)) : List.of());
+        }
+        output.encodeInteger(updated ? 1 : 0);
+    }
+
+    private void ttl(CommandProcessor client, List<String> arguments, long unitMillis, boolean absolute) {
+        String key = arguments.get(1);
+        OutputEncoderService output = client.getOutput();
+        RedisObject value = dataStore.get(key);
+        if (value == null) {
+            output.encodeInteger(-2);
+            return;
+        }
+        long expiryTime = value.getExpiryTime();
+        if (expiryTime == ExpiryIndex.NO_EXPIRY) {
+            output.encodeInteger(-1);
+            return;
+        }
+        if (absolute) {
+            output.encodeInteger(expiryTime / unitMillis);
+            return;
+        }
+        long remaining = Math.max(0, expiryTime - System.currentTimeMillis());
+        output.encodeInteger((remaining + unitMillis / 2) / unitMillis);
+    }
+
+    private void persist(CommandProcessor client, List<String> arguments) {
+        String key = arguments.get(1);
+        boolean persisted = dataStore.persist(key);
+        client.getOutput().encodeInteger(persisted ? 1 : 0);
+    }
+}
@@ -0,0 +1,197 @@
+package Service;
+
+import Models.DataStore;
+import Models.KeyLocks;
+import Models.RedisObject;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// The dataset written to a file while commands keep running, in place of a fork: an RDB of every key as
+// saved under its lock, followed by the write commands logged since it started. Before a write touches
+// a key the walk has not reached yet, the key's current value is saved first, so every record kept
+// applies on top of exactly the state the RDB holds for its keys and the file as a whole replays to the
+// dataset as it was when finish() was called. Writers only save values aside in memory; the capturing
+// thread alone writes the file, so no command waits on the disk. Used by AOF rewrites and full resyncs.
+// SAVE and BGSAVE use one without records, made visible to writers with every key locked: the RDB
+// alone is then the dataset as it was at that instant.
+class KeyspaceCapture {
+
+    private static final LogService log = LogService.getInstance();
+
+    private final DataStore dataStore = DataStore.getInstance();
+    private final KeyLocks keyLocks = dataStore.getKeyLocks();
+    private final Path path;
+    private final FileChannel file;
+    private final RdbWriter base;
+    private final Set<String> captured = ConcurrentHashMap.newKeySet();
+    // Guarded by the owner's lock, the one its record() calls are made under.
+    private final OutputEncoderService records = new OutputEncoderService();
+    private final long startTime = System.currentTimeMillis();
+    private volatile boolean walkDone;
+    private volatile boolean aborted;
+    // Keys saved by writers and not yet written. Guarded by this capture's monitor, as is closed.
+    private final Deque<RdbWriter.SavedKey> saved = new ArrayDeque<>();
+    private boolean closed;
+
+    KeyspaceCapture(Path path) throws IOException {
+        this(path, true);
+    }
+
+    // The header goes out before the capture is handed to anyone, ahead of any key a write captures.
+    // Without aofBase it is the header of a plain RDB snapshot.
+    KeyspaceCapture(Path path, boolean aofBase) throws IOException {
+        this.path = path;
+        this.file = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        this.base = new RdbWriter(file);
+        base.writeHeader();
+        base.writeAux("redis-ver", "7.2.0");
+        base.writeAux("redis-bits", "64");
+        base.writeAux("ctime", String.valueOf(System.currentTimeMillis() / 1000));
+        if (aofBase) {
+            base.writeAux("aof-base", "1");
+        } else {
+            base.writeAux("used-mem", String.valueOf(dataStore.getUsedMemory()));
+        }
+        base.writeDatabase(0, dataStore.size(), dataStore.getExpiryIndex().size());
+    }
+
+    Path getPath() {
+        return path;
+    }
+
+    FileChannel getFile() {
+        return file;
+    }
+
+    long getStartTime() {
+        return startTime;
+    }
+
+    // Called by a write command with its keys locked, before it changes them.
+    void beforeWrite(List<String> keys) {
+        if (walkDone) {
+            return;
+        }
+        for (String key : keys) {
+            capture(key);
+        }
+    }
+
+    // Called with the command's keys still locked, after it was applied, under the owner's lock.
+    void record(List<String> keys, List<String> command) {
+        if (!walkDone) {
+            // A command that began before the capture did: its keys were not captured ahead of the
+            // change, so capture them now that it is applied and leave the record out.
+            boolean before = true;
+            for (String key : keys) {
+                if (!captured.contains(key)) {
+                    capture(key);
+                    before = false;
+                }
+            }
+            if (!before) {
+                return;
+            }
+        }
+        records.encodeList(command);
+    }
+
+    // Writes every key not captured yet, and those writers saved meanwhile. Runs on the capturing thread.
+    void walk() throws IOException {
+        for (Iterator<Map.Entry<String, RedisObject>> it = dataStore.keyspaceIterator(); it.hasNext(); ) {
+            String key = it.next().getKey();
+            keyLocks.lock(key);
+            try {
+                capture(key);
+            } finally {
+                keyLocks.unlock(key);
+            }
+            writeSaved();
+            if (aborted) {
+                throw new IOException("aborted");
+            }
+        }
+        walkDone = true;
+    }
+
+    // Called with the key's lock held: saves its current value once, before anything changes it. Only
+    // memory is touched here; writeSaved() puts it in the file.
+    private void capture(String key) {
+        if (!captured.add(key)) {
+            return;
+        }
+        RedisObject value = dataStore.get(key);
+        if (value == null || value.isExpiredAt(System.currentTimeMillis())) {
+            return;
+        }
+        RdbWriter.SavedKey copy = RdbWriter.SavedKey.of(key, value);
+        synchronized (this) {
+            if (!closed) {
+                saved.addLast(copy);
+            }
+        }
+    }
+
+    // Runs on the capturing thread, the only one that writes the base.
+    private void writeSaved() throws IOException {
+        RdbWriter.SavedKey next;
+        while ((next = pollSaved()) != null) {
+            base.writeKey(next);
+        }
+    }
+
+    private synchronized RdbWriter.SavedKey pollSaved() {
+        return saved.pollFirst();
+    }
+
+    void abort() {
+        aborted = true;
+    }
+
+    boolean isAborted() {
+        return aborted;
+    }
+
+    // Called under the owner's lock, so no record is added meanwhile: writes the keys still saved aside,
+    // ends the RDB, appends the records and forces the file to disk. Returns the length of the RDB part.
+    long finish() throws IOException {
+        synchronized (this) {
+            if (aborted) {
+                throw new IOException("aborted");
+            }
+            closed = true;
+        }
+        writeSaved();
+        base.finish();
+        long preamble = file.size();
+        ByteBuffer tail = ByteBuffer.wrap(records.getBuffer(), 0, records.size());
+        while (tail.hasRemaining()) {
+            file.write(tail);
+        }
+        file.force(true);
+        return preamble;
+    }
+
+    // Closes and deletes the file, after a failure or once it has been sent.
+    void discard() {
+        try {
+            file.close();
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warning("IOException: " + e.getMessage());
+        }
+    }
+}
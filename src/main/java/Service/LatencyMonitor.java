@@ -0,0 +1,123 @@
+package Service;
+
+import Models.ServerConfig;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+// LATENCY: for each internal event (a slow command, an expiry cycle, serving woken clients, a SAVE, an
+// AOF fsync or rewrite switch-over) the last 160 times it took latency-monitor-threshold ms or more, one
+// sample per second keeping the worst. With the threshold at 0, the default, nothing is recorded.
+public class LatencyMonitor {
+
+    public static final String COMMAND = "command";
+    public static final String FAST_COMMAND = "fast-command";
+    public static final String EXPIRE_CYCLE = "expire-cycle";
+    public static final String BLOCKED_WAKEUP = "blocked-wakeup";
+    public static final String SAVE = "save";
+    public static final String AOF_FSYNC = "aof-fsync";
+    public static final String AOF_REWRITE_SWITCH = "aof-rewrite-switch";
+
+    private static final int HISTORY_LENGTH = 160;
+
+    private static LatencyMonitor instance;
+
+    public record Sample(long timestamp, long millis) {
+    }
+
+    // Guarded by its own monitor; samples are rare, they only come in past the threshold.
+    private static class History {
+        private final Sample[] samples = new Sample[HISTORY_LENGTH];
+        private int next;
+        private long max;
+
+        synchronized void add(long timestamp, long millis) {
+            int last = (next + HISTORY_LENGTH - 1) % HISTORY_LENGTH;
+            if (samples[last] != null && samples[last].timestamp() == timestamp) {
+                samples[last] = new Sample(timestamp, Math.max(millis, samples[last].millis()));
+            } else {
+                samples[next] = new Sample(timestamp, millis);
+                next = (next + 1) % HISTORY_LENGTH;
+            }
+            max = Math.max(max, millis);
+        }
+
+        synchronized List<Sample> samples() {
+            List<Sample> ordered = new ArrayList<>();
+            for (int i = 0; i < HISTORY_LENGTH; i++) {
+                Sample sample = samples[(next + i) % HISTORY_LENGTH];
+                if (sample != null) {
+                    ordered.add(sample);
+                }
+            }
+            return ordered;
+        }
+
+        synchronized Sample latest() {
+            return samples[(next + HISTORY_LENGTH - 1) % HISTORY_LENGTH];
+        }
+
+        synchronized long max() {
+            return max;
+        }
+    }
+
+    private final ServerConfig config = ServerConfig.getInstance();
+    private final Map<String, History> events = new ConcurrentHashMap<>();
+
+    private LatencyMonitor() {
+    }
+
+    public static synchronized LatencyMonitor getInstance() {
+        if(instance == null) {
+            instance = new LatencyMonitor();
+        }
+        return instance;
+    }
+
+    public void record(String event, long elapsedNanos) {
+        long threshold = config.getLatencyMonitorThreshold();
+        long millis = elapsedNanos / 1_000_000;
+        if (threshold == 0 || millis < threshold) {
+            return;
+        }
+        events.computeIfAbsent(event, name -> new History()).add(System.currentTimeMillis() / 1000, millis);
+    }
+
+    // LATENCY LATEST: event -> {timestamp, latest ms, max ms}, by event name.
+    public Map<String, long[]> latest() {
+        Map<String, long[]> latest = new TreeMap<>();
+        events.forEach((event, history) -> {
+            Sample sample = history.latest();
+            if (sample != null) {
+                latest.put(event, new long[]{sample.timestamp(), sample.millis(), history.max()});
+            }
+        });
+        return latest;
+    }
+
+    // LATENCY HISTORY: oldest first, empty for an event never recorded.
+    public List<Sample> history(String event) {
+        History history = events.get(event);
+        return history == null ? List.of() : history.samples();
+    }
+
+    // LATENCY RESET: the given events, or all of them; returns how many were dropped.
+    public int reset(List<String> names) {
+        if (names.isEmpty()) {
+            int count = events.size();
+            events.clear();
+            return count;
+        }
+        int count = 0;
+        for (String name : names) {
+            if (events.remove(name) != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
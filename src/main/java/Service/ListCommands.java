@@ -0,0 +1,385 @@
+package Service;
+
+import Models.Bytes;
+import Models.DataStore;
+import Models.KeyLocks;
+import Models.RedisObject;
+import Models.RingList;
+import Service.CommandSpec.Flag;
+
+import java.util.EnumSet;
+import java.util.List;
+
+public final class ListCommands {
+
+    private final DataStore dataStore = DataStore.getInstance();
+    private final KeyLocks keyLocks = DataStore.getInstance().getKeyLocks();
+    private final ListWaiterRegistry listWaiters = new ListWaiterRegistry(this);
+
+    public void register(CommandRegistry registry) {
+        registry.register(new CommandSpec("rpush", -3, EnumSet.of(Flag.WRITE, Flag.DENYOOM, Flag.FAST), 1, 1, 1, this::rpush));
+        registry.register(new CommandSpec("lpush", -3, EnumSet.of(Flag.WRITE, Flag.DENYOOM, Flag.FAST), 1, 1, 1, this::lpush));
+        registry.register(new CommandSpec("lrange", 4, EnumSet.of(Flag.READONLY), 1, 1, 1, this::lrange));
+        registry.register(new CommandSpec("llen", 2, EnumSet.of(Flag.READONLY, Flag.FAST), 1, 1, 1, this::llen));
+        registry.register(new CommandSpec("lpop", -2, EnumSet.of(Flag.WRITE, Flag.FAST), 1, 1, 1, this::lpop));
+        registry.register(new CommandSpec("rpop", -2, EnumSet.of(Flag.WRITE, Flag.FAST), 1, 1, 1, this::rpop));
+        registry.register(new CommandSpec("lindex", 3, EnumSet.of(Flag.READONLY), 1, 1, 1, this::lindex));
+        registry.register(new CommandSpec("lset", 4, EnumSet.of(Flag.WRITE, Flag.DENYOOM), 1, 1, 1, this::lset));
+        registry.register(new CommandSpec("ltrim", 4, EnumSet.of(Flag.WRITE), 1, 1, 1, this::ltrim));
+        registry.register(new CommandSpec("lmove", 5, EnumSet.of(Flag.WRITE, Flag.DENYOOM), 1, 2, 1, this::lmove));
+        registry.register(new CommandSpec("blpop", -3, EnumSet.of(Flag.WRITE, Flag.BLOCKING), 1, -2, 1, this::blpop));
+        registry.register(new CommandSpec("brpop", -3, EnumSet.of(Flag.WRITE, Flag.BLOCKING), 1, -2, 1, this::brpop));
+        registry.register(new CommandSpec("blmove", 6, EnumSet.of(Flag.WRITE, Flag.DENYOOM, Flag.BLOCKING), 1, 2, 1, this::blmove));
+    }
+
+    private void rpush(CommandProcessor client, List<String> arguments) {
+        String key = arguments.get(1);
+        keyLocks.lock(key);
+        try {
+            for (int i = 2; i < arguments.size(); i++) {
+                appendRightToList(key, Bytes.of(arguments.get(i)));
+            }
+            client.getOutput().encodeInteger(sizeOfList(key));
+        }
+        finally {
+            keyLocks.unlock(key);
+        }
+        listWaiters.signal(key);
+    }
+
+    private void lpush(CommandProcessor client, List<String> arguments) {
+        String key = arguments.get(1);
+        keyLocks.lock(key);
+        try {
+            for (int i = 2; i < arguments.size(); i++) {
+                appendLeftToList(key, Bytes.of(arguments.get(i)));
+            }
+            client.getOutput().encodeInteger(sizeOfList(key));
+        }
+        finally {
+            keyLocks.unlock(key);
+        }
+        listWaiters.signal(key);
+    }
+
+    private void lrange(CommandProcessor client, List<String> arguments) {
+        String key = arguments.get(1);
+        keyLocks.lock(key);
+        try {
+            Integer startIndex = Integer.parseInt(arguments.get(2));
+            Integer endIndex = Integer.parseInt(arguments.get(3));
+            listElementsInRange(client.getOutput(), key, startIndex, endIndex);
+        }
+        finally {
+            keyLocks.unlock(key);
+        }
+    }
+
+    private void llen(CommandProcessor client, List<String> arguments) {
+        String key = arguments.get(1);
+        keyLocks.lock(key);
+        try {
+            RingList list = getList(key);
+            client.getOutput().encodeInteger(list == null ? 0 : list.size());
+        }
+        finally {
+            keyLocks.unlock(key);
+        }
+    }
+
+    private void lpop(CommandProcessor client, List<String> arguments) {
+        pop(client, arguments, true);
+    }
+
+    private void rpop(CommandProcessor client, List<String> arguments) {
+        pop(client, arguments, false);
+    }
+
+    private void pop(CommandProcessor client, List<String> arguments, boolean fromLeft) {
+        String key = arguments.get(1);
+        keyLocks.lock(key);
+        try {
+            if (arguments.size() < 3) {
+                client.getOutput().encodeBulkString(removeElement(key, fromLeft));
+                return;
+            }
+            int count = Integer.parseInt(arguments.get(2));
+            if (count < 0) {
+                throw new RuntimeException("value is out of range, must be positive");
+            }
+            if (getList(key) == null) {
+                client.getOutput().writeRaw(OutputEncoderService.NULL_ARRAY);
+                return;
+            }
+            int popped = Math.min(count, sizeOfList(key));
+            client.getOutput().encodeArrayHeader(popped);
+            for (int i = 0; i < popped; i++) {
+                client.getOutput().encodeBulkString(removeElement(key, fromLeft));
+            }
+        }
+        finally {
+            keyLocks.unlock(key);
+        }
+    }
+
+    private void lindex(CommandProcessor client, List<String> arguments) {
+        String key = arguments.get(1);
+        int index = Integer.parseInt(arguments.get(2));
+        keyLocks.lock(key);
+        try {
+            RingList list = getList(key);
+            int size = list == null ? 0 : list.size();
+            if (index < 0) index += size;
+            client.getOutput().encodeBulkString(index < 0 || index >= size ? null : list.get(index));
+        }
+        finally {
+            keyLocks.unlock(key);
+        }
+    }
+
+    private void lset(CommandProcessor client, List<String> arguments) {
+        String key = arguments.get(1);
+        int index = Integer.parseInt(arguments.get(2));
+        keyLocks.lock(key);
+        try {
+            RingList list = getList(key);
+            if (list == null) {
+                throw new RuntimeException("no such key");
+            }
+            if (index < 0) index += list.size();
+            if (index < 0 || index >= list.size()) {
+                throw new RuntimeException("index out of range");
+            }
+            long before = list.memoryUsage();
+            list.set(index, Bytes.of(arguments.get(3)));
+            dataStore.adjustMemory(list.memoryUsage() - before);
+            client.getOutput().writeRaw(OutputEncoderService.OK);
+        }
+        finally {
+            keyLocks.unlock(key);
+        }
+    }
+
+    private void ltrim(CommandProcessor client, List<String> arguments) {
+        String key = arguments.get(1);
+        int start = Integer.parseInt(arguments.get(2));
+        int end = Integer.parseInt(arguments.get(3));
+        keyLocks.lock(key);
+        try {
+            RingList list = getList(key);
+            if (list != null) {
+                int len = list.size();
+                if (start < 0) start += len;
+                if (end < 0) end += len;
+                if (start < 0) start = 0;
+                end = Math.min(end, len - 1);
+                long before = list.memoryUsage();
+                list.trim(start, end);
+                dataStore.adjustMemory(list.memoryUsage() - before);
+                deleteIfEmpty(key);
+            }
+            client.getOutput().writeRaw(OutputEncoderService.OK);
+        }
+        finally {
+            keyLocks.unlock(key);
+        }
+    }
+
+    private void lmove(CommandProcessor client, List<String> arguments) {
+        String source = arguments.get(1);
+        String destination = arguments.get(2);
+        boolean fromLeft = parseDirection(arguments.get(3));
+        boolean toLeft = parseDirection(arguments.get(4));
+        client.getOutput().encodeBulkString(move(source, destination, fromLeft, toLeft));
+    }
+
+    private void blpop(CommandProcessor client, List<String> arguments) {
+        blockingPop(client, arguments, true);
+    }
+
+    private void brpop(CommandProcessor client, List<String> arguments) {
+        blockingPop(client, arguments, false);
+    }
+
+    private void blockingPop(CommandProcessor client, List<String> arguments, boolean fromLeft) {
+        long timeoutMillis = parseTimeout(arguments.get(arguments.size() - 1));
+        List<String> keys = arguments.subList(1, arguments.size() - 1);
+        for (String key : keys) {
+            byte[] element;
+            keyLocks.lock(key);
+            try {
+                element = removeElement(key, fromLeft);
+            }
+            finally {
+                keyLocks.unlock(key);
+            }
+            if (element != null) {
+                client.propagateAs(List.of(fromLeft ? "LPOP" : "RPOP", key));
+                client.getOutput().encodeArrayHeader(2);
+                client.getOutput().encodeBulkString(key);
+                client.getOutput().encodeBulkString(element);
+                return;
+            }
+        }
+        // Whoever serves the client later logs the pop it makes; parking changes nothing.
+        client.propagateAs(List.of());
+        listWaiters.block(client, keys, fromLeft, null, false, timeoutMillis);
+    }
+
+    private void blmove(CommandProcessor client, List<String> arguments) {
+        String source = arguments.get(1);
+        String destination = arguments.get(2);
+        boolean fromLeft = parseDirection(arguments.get(3));
+        boolean toLeft = parseDirection(arguments.get(4));
+        long timeoutMillis = parseTimeout(arguments.get(5));
+        byte[] element = move(source, destination, fromLeft, toLeft);
+        if (element != null) {
+            client.propagateAs(List.of("LMOVE", source, destination, arguments.get(3), arguments.get(4)));
+            client.getOutput().encodeBulkString(element);
+            return;
+        }
+        client.propagateAs(List.of());
+        listWaiters.block(client, List.of(source), fromLeft, destination, toLeft, timeoutMillis);
+    }
+
+    private byte[] move(String source, String destination, boolean fromLeft, boolean toLeft) {
+        List<String> keys = List.of(source, destination);
+        byte[] element;
+        keyLocks.lockAll(keys);
+        try {
+            // Both types are checked before anything is popped.
+            if (getList(source) == null) {
+                return null;
+            }
+            getList(destination);
+            element = removeElement(source, fromLeft);
+            if (element != null) {
+                if (toLeft) appendLeftToList(destination, element);
+                else appendRightToList(destination, element);
+            }
+        }
+        finally {
+            keyLocks.unlockAll(keys);
+        }
+        if (element != null) {
+            listWaiters.signal(destination);
+        }
+        return element;
+    }
+
+    void signalKeyReady(String key) {
+        listWaiters.signal(key);
+    }
+
+    // Pushes one element and serves anyone blocked on the key; used to complete a BLMOVE handoff.
+    public void push(String key, byte[] element, boolean toLeft) {
+        keyLocks.lock(key);
+        try {
+            if (toLeft) appendLeftToList(key, element);
+            else appendRightToList(key, element);
+        }
+        finally {
+            keyLocks.unlock(key);
+        }
+        listWaiters.signal(key);
+    }
+
+    private static boolean parseDirection(String direction) {
+        if (direction.equalsIgnoreCase("left")) return true;
+        if (direction.equalsIgnoreCase("right")) return false;
+        throw new RuntimeException("syntax error");
+    }
+
+    private static long parseTimeout(String argument) {
+        double timeout;
+        try {
+            timeout = Double.parseDouble(argument);
+        } catch (NumberFormatException e) {
+            throw new RuntimeException("timeout is not a float or out of range");
+        }
+        if (Double.isNaN(timeout) || Double.isInfinite(timeout)) {
+            throw new RuntimeException("timeout is not a float or out of range");
+        }
+        if (timeout < 0) {
+            throw new RuntimeException("timeout is negative");
+        }
+        return timeout == 0 ? 0 : Math.max(1, (long) (timeout * 1000));
+    }
+
+    public void appendRightToList(String key, byte[] value) {
+        RingList list = createList(key);
+        long before = list.memoryUsage();
+        list.pushLast(value);
+        dataStore.adjustMemory(list.memoryUsage() - before);
+    }
+
+    public void appendLeftToList(String key, byte[] value) {
+        RingList list = createList(key);
+        long before = list.memoryUsage();
+        list.pushFirst(value);
+        dataStore.adjustMemory(list.memoryUsage() - before);
+    }
+
+    // Pops one element and deletes the key once the list is empty, as Redis does.
+    public byte[] removeElement(String key, boolean fromLeft) {
+        RingList list = getList(key);
+        if (list == null || list.isEmpty()) {
+            return null;
+        }
+        long before = list.memoryUsage();
+        byte[] element = fromLeft ? list.popFirst() : list.popLast();
+        dataStore.adjustMemory(list.memoryUsage() - before);
+        deleteIfEmpty(key);
+        return element;
+    }
+
+    // Zero for a missing key or one of another type, so waiters are never served from a non-list.
+    public int sizeOfList(String key) {
+        RedisObject value = dataStore.get(key);
+        return value == null || value.getType() != RedisObject.Type.LIST ? 0 : value.getList().size();
+    }
+
+    public boolean isListOrMissing(String key) {
+        RedisObject value = dataStore.get(key);
+        return value == null || value.getType() == RedisObject.Type.LIST;
+    }
+
+    private RingList getList(String key) {
+        RedisObject value = dataStore.get(key, RedisObject.Type.LIST);
+        return value == null ? null : value.getList();
+    }
+
+    private RingList createList(String key) {
+        return dataStore.getOrCreate(key, RedisObject.Type.LIST, () -> RedisObject.ofList(new RingList())).getList();
+    }
+
+    private void deleteIfEmpty(String key) {
+        RedisObject value = dataStore.get(key);
+        if (value != null && value.getType() == RedisObject.Type.LIST && value.getList().isEmpty()) {
+            dataStore.remove(key, value);
+        }
+    }
+
+    public void listElementsInRange(OutputEncoderService output, String key, Integer startIndex, Integer endIndex) {
+        RingList list = getList(key);
+        if (list == null || list.isEmpty()) {
+            output.writeRaw(OutputEncoderService.EMPTY_ARRAY);
+            return;
+        }
+        int len = list.size();
+        if (startIndex < 0) startIndex += len;
+        if (endIndex < 0) endIndex += len;
+
+        if (startIndex < 0) startIndex = 0;
+        if (startIndex >= len || startIndex > endIndex) {
+            output.writeRaw(OutputEncoderService.EMPTY_ARRAY);
+            return;
+        }
+        endIndex = Math.min(endIndex, len - 1);
+
+        output.encodeArrayHeader(endIndex - startIndex + 1);
+        for (int i = startIndex; i <= endIndex; i++) {
+            output.encodeBulkString(list.get(i));
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package Service;
+
+import Models.DataStore;
+import Models.KeyLocks;
+import Models.KeyVersions;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Clients blocked in BLPOP/BRPOP/BLMOVE, queued FIFO per key. A push hands each new element straight to
+// the oldest waiter on that key, so one element wakes exactly one client however many are waiting.
+public class ListWaiterRegistry {
+
+    private class Waiter {
+        final List<String> keys;
+        final boolean fromLeft;
+        final String destination;
+        final boolean toLeft;
+        BlockedClient blockedClient;
+
+        Waiter(List<String> keys, boolean fromLeft, String destination, boolean toLeft) {
+            this.keys = keys;
+            this.fromLeft = fromLeft;
+            this.destination = destination;
+            this.toLeft = toLeft;
+        }
+
+        void unregister() {
+            for (String key : keys) {
+                keyLocks.lock(key);
+                try {
+                    LinkedHashSet<Waiter> queue = waiters.get(key);
+                    if (queue != null && queue.remove(this) && queue.isEmpty()) {
+                        waiters.remove(key, queue);
+                    }
+                } finally {
+                    keyLocks.unlock(key);
+                }
+            }
+        }
+
+        // Runs with no locks held, after the element was popped (and moved) on this waiter's behalf.
+        // A null element means the BLMOVE destination held another type and nothing was popped.
+        void complete(String key, byte[] element) {
+            blockedClient.unregister();
+            OutputEncoderService output = blockedClient.getOutput();
+            if (element == null) {
+                output.encodeSimpleError(DataStore.WRONGTYPE);
+            } else {
+                if (destination == null) {
+                    output.encodeArrayHeader(2);
+                    output.encodeBulkString(key);
+                }
+                output.encodeBulkString(element);
+            }
+            blockedClient.resume();
+        }
+
+        // What the AOF and replicas get for this waiter being served: the non-blocking form of its command.
+        List<String> loggedAs(String key) {
+            if (destination == null) {
+                return List.of(fromLeft ? "LPOP" : "RPOP", key);
+            }
+            return List.of("LMOVE", key, destination, fromLeft ? "LEFT" : "RIGHT", toLeft ? "LEFT" : "RIGHT");
+        }
+    }
+
+    private final ListCommands lists;
+    private final KeyLocks keyLocks = DataStore.getInstance().getKeyLocks();
+    private final KeyVersions keyVersions = DataStore.getInstance().getKeyVersions();
+    private final PropagationService propagation = PropagationService.getInstance();
+    private final LatencyMonitor latencyMonitor = LatencyMonitor.getInstance();
+    // Each key's queue is only read or modified under that key's stripe lock.
+    private final ConcurrentHashMap<String, LinkedHashSet<Waiter>> waiters = new ConcurrentHashMap<>();
+
+    public ListWaiterRegistry(ListCommands lists) {
+        this.lists = lists;
+    }
+
+    public void block(CommandProcessor client, List<String> keys, boolean fromLeft, String destination, boolean toLeft,
+                      long timeoutMillis) {
+        byte[] timeoutReply = destination == null ? OutputEncoderService.NULL_ARRAY : OutputEncoderService.NULL_BULK_STRING;
+        // Inside EXEC nothing else can push meanwhile, so the command times out at once, as in Redis.
+        if (client.isExecuting()) {
+            client.getOutput().writeRaw(timeoutReply);
+            return;
+        }
+        Waiter waiter = new Waiter(List.copyOf(keys), fromLeft, destination, toLeft);
+        waiter.blockedClient = new BlockedClient(client, waiter::unregister);
+        for (String key : waiter.keys) {
+            keyLocks.lock(key);
+            try {
+                waiters.computeIfAbsent(key, k -> new LinkedHashSet<>()).add(waiter);
+            } finally {
+                keyLocks.unlock(key);
+            }
+        }
+        waiter.blockedClient.startTimeout(timeoutMillis, () -> waiter.blockedClient.getOutput().writeRaw(timeoutReply));
+        // An element may have been pushed between the caller's check and our registration.
+        for (String key : waiter.keys) {
+            signal(key);
+        }
+    }
+
+    // Called after elements were pushed to key. During a command the waiters are served once it is done.
+    public void signal(String key) {
+        if (waiters.containsKey(key)) {
+            ReadyKeys.signal(() -> {
+                long start = System.nanoTime();
+                serve(key);
+                latencyMonitor.record(LatencyMonitor.BLOCKED_WAKEUP, System.nanoTime() - start);
+            });
+        }
+    }
+
+    // Serves waiters oldest first while the list has elements. Each one is popped under the locks of the
+    // key and its BLMOVE destination, so the pop, the push and their propagation form one step.
+    private void serve(String key) {
+        while (true) {
+            Waiter waiter = firstWaiter(key);
+            if (waiter == null) {
+                return;
+            }
+            List<String> locked = waiter.destination == null ? List.of(key) : List.of(key, waiter.destination);
+            byte[] element;
+            keyLocks.lockAll(locked);
+            try {
+                LinkedHashSet<Waiter> queue = waiters.get(key);
+                if (queue == null || queue.isEmpty() || queue.getFirst() != waiter) {
+                    // The queue changed while we were not holding the destination's lock: look again.
+                    continue;
+                }
+                if (lists.sizeOfList(key) == 0) {
+                    return;
+                }
+                queue.removeFirst();
+                if (queue.isEmpty()) {
+                    waiters.remove(key, queue);
+                }
+                if (!waiter.blockedClient.tryClaim()) {
+                    continue;
+                }
+                if (waiter.destination != null && !lists.isListOrMissing(waiter.destination)) {
+                    element = null;
+                } else {
+                    propagation.beforeWrite(locked);
+                    element = lists.removeElement(key, waiter.fromLeft);
+                    if (waiter.destination != null) {
+                        lists.push(waiter.destination, element, waiter.toLeft);
+                    }
+                    waiter.blockedClient.loggedAt(propagation.propagate(locked, waiter.loggedAs(key)));
+                    locked.forEach(keyVersions::touch);
+                }
+            } finally {
+                keyLocks.unlockAll(locked);
+            }
+            waiter.complete(key, element);
+        }
+    }
+
+    private Waiter firstWaiter(String key) {
+        keyLocks.lock(key);
+        try {
+            LinkedHashSet<Waiter> queue = waiters.get(key);
+            return queue == null || queue.isEmpty() ? null : queue.getFirst();
+        } finally {
+            keyLocks.unlock(key);
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package Service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+// The server log, written by a thread of its own. A line is put in a bounded ring and the caller moves
+// on; it never waits on stdout, or on another thread's line. When the writer falls behind and the ring
+// is full the line is dropped and counted, and the count is logged once the writer catches up.
+public class LogService {
+
+    public enum Level {
+        DEBUG('.'), VERBOSE('-'), NOTICE('*'), WARNING('#');
+
+        private final char mark;
+
+        Level(char mark) {
+            this.mark = mark;
+        }
+
+        public static Level parse(String name) {
+            for (Level level : values()) {
+                if (level.name().equalsIgnoreCase(name)) {
+                    return level;
+                }
+            }
+            throw new IllegalArgumentException("argument(s) must be one of the following: debug, verbose, notice, warning");
+        }
+    }
+
+    private record Line(long millis, Level level, String message) {
+    }
+
+    private static final int CAPACITY = 1 << 14;
+    private static final int MASK = CAPACITY - 1;
+    // Sampled lines (per-command tracing) allowed per second; the rest are only counted.
+    private static final int SAMPLES_PER_SECOND = 100;
+    private static final DateTimeFormatter TIME = DateTimeFormatter.ofPattern("dd MMM yyyy HH:mm:ss.SSS", Locale.ROOT)
+            .withZone(ZoneId.systemDefault());
+
+    private static LogService instance;
+
+    // Bounded multi-producer ring (Vyukov): a slot's sequence says whether it is free for the producer
+    // at a given position or holds a line for the consumer at it.
+    private final AtomicReferenceArray<Line> slots = new AtomicReferenceArray<>(CAPACITY);
+    private final AtomicLongArray sequences = new AtomicLongArray(CAPACITY);
+    private final AtomicLong tail = new AtomicLong();
+    private long head;
+    private final LongAdder dropped = new LongAdder();
+    private final AtomicLong sampleWindow = new AtomicLong();
+    private final AtomicLong sampled = new AtomicLong();
+    private final AtomicLong unsampled = new AtomicLong();
+    private final String prefix = ProcessHandle.current().pid() + ":M ";
+    private volatile Level level = Level.NOTICE;
+    private volatile boolean parked;
+    private final Thread writer;
+
+    private LogService() {
+        for (int i = 0; i < CAPACITY; i++) {
+            sequences.set(i, i);
+        }
+        writer = new Thread(this::drain, "log-writer");
+        writer.setDaemon(true);
+        writer.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(this::flushRemaining, "log-flush"));
+    }
+
+    public static synchronized LogService getInstance() {
+        if(instance == null) {
+            instance = new LogService();
+        }
+        return instance;
+    }
+
+    public void setLevel(Level level) {
+        this.level = level;
+    }
+
+    public boolean isEnabled(Level level) {
+        return level.compareTo(this.level) >= 0;
+    }
+
+    public void debug(String message) {
+        log(Level.DEBUG, message);
+    }
+
+    public void verbose(String message) {
+        log(Level.VERBOSE, message);
+    }
+
+    public void notice(String message) {
+        log(Level.NOTICE, message);
+    }
+
+    public void warning(String message) {
+        log(Level.WARNING, message);
+    }
+
+    public void log(Level level, String message) {
+        if (isEnabled(level)) {
+            append(new Line(System.currentTimeMillis(), level, message));
+        }
+    }
+
+    // For lines that could come once per request: at most SAMPLES_PER_SECOND a second make it to the
+    // log, and the message is only built for those.
+    public void sampled(Level level, Supplier<String> message) {
+        if (!isEnabled(level)) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        long second = now / 1000;
+        long window = sampleWindow.get();
+        if (window != second && sampleWindow.compareAndSet(window, second)) {
+            sampled.set(0);
+            long skipped = unsampled.getAndSet(0);
+            if (skipped > 0) {
+                append(new Line(now, level, skipped + " more lines not sampled in the last second"));
+            }
+        }
+        if (sampled.incrementAndGet() <= SAMPLES_PER_SECOND) {
+            append(new Line(now, level, message.get()));
+        } else {
+            unsampled.incrementAndGet();
+        }
+    }
+
+    private void append(Line line) {
+        while (true) {
+            long position = tail.get();
+            int index = (int) (position & MASK);
+            long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    slots.set(index, line);
+                    sequences.set(index, position + 1);
+                    break;
+                }
+            } else if (difference < 0) {
+                dropped.increment();
+                return;
+            }
+        }
+        if (parked) {
+            parked = false;
+            LockSupport.unpark(writer);
+        }
+    }
+
+    // The single consumer: called with this object's monitor held, by the writer or the shutdown hook.
+    private Line poll() {
+        int index = (int) (head & MASK);
+        if (sequences.get(index) != head + 1) {
+            return null;
+        }
+        Line line = slots.get(index);
+        slots.set(index, null);
+        sequences.set(index, head + CAPACITY);
+        head++;
+        return line;
+    }
+
+    private void drain() {
+        Writer out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), 64 * 1024);
+        while (true) {
+            try {
+                if (!writeAvailable(out)) {
+                    parked = true;
+                    // A line appended just before parked was set would otherwise wait for the next one.
+                    if (!writeAvailable(out)) {
+                        LockSupport.parkNanos(this, 100_000_000L);
+                    }
+                    parked = false;
+                }
+            } catch (IOException e) {
+                // Nowhere left to report it; lines keep being taken so callers are never held up.
+            }
+        }
+    }
+
+    private synchronized boolean writeAvailable(Writer out) throws IOException {
+        Line line = poll();
+        if (line == null) {
+            return false;
+        }
+        do {
+            write(out, line);
+        } while ((line = poll()) != null);
+        long lost = dropped.sumThenReset();
+        if (lost > 0) {
+            write(out, new Line(System.currentTimeMillis(), Level.WARNING, lost + " log lines dropped, the log writer fell behind"));
+        }
+        out.flush();
+        return true;
+    }
+
+    private void write(Writer out, Line line) throws IOException {
+        out.write(prefix);
+        out.write(TIME.format(Instant.ofEpochMilli(line.millis())));
+        out.write(' ');
+        out.write(line.level().mark);
+        out.write(' ');
+        out.write(line.message());
+        out.write('\n');
+    }
+
+    private void flushRemaining() {
+        try {
+            writeAvailable(new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8)));
+        } catch (IOException e) {
+            // Shutting down anyway.
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package Service;
+
+import java.io.IOException;
+
+// LZF decompression, for strings Redis compressed when it wrote the snapshot (rdbcompression yes).
+final class Lzf {
+
+    private Lzf() {
+    }
+
+    static byte[] decompress(byte[] input, int length) throws IOException {
+        byte[] output = new byte[length];
+        int in = 0;
+        int out = 0;
+        try {
+            while (in < input.length) {
+                int control = input[in++] & 0xFF;
+                if (control < 1 << 5) {
+                    // Literal run of control + 1 bytes.
+                    int run = control + 1;
+                    System.arraycopy(input, in, output, out, run);
+                    in += run;
+                    out += run;
+                    continue;
+                }
+                // Back reference: copy from earlier output, byte by byte since the ranges may overlap.
+                int run = control >> 5;
+                if (run == 7) {
+                    run += input[in++] & 0xFF;
+                }
+                int reference = out - ((control & 0x1F) << 8) - 1 - (input[in++] & 0xFF);
+                if (reference < 0) {
+                    throw new IOException("Invalid LZF back reference");
+                }
+                for (int i = 0; i < run + 2; i++) {
+                    output[out++] = output[reference++];
+                }
+            }
+        } catch (IndexOutOfBoundsException e) {
+            throw new IOException("Corrupt LZF data");
+        }
+        if (out != length) {
+            throw new IOException("Corrupt LZF data");
+        }
+        return output;
+    }
+}
@@ -0,0 +1,262 @@
+package Service;
+
+import Models.ServerConfig;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+// The replica side of replication: one thread that connects to the master, handshakes, syncs, then
+// applies the stream through a CommandProcessor of its own, reconnecting with a partial resync
+// whenever the connection drops. The stream is acknowledged once a second and on REPLCONF GETACK.
+class MasterLink {
+
+    private static final LogService log = LogService.getInstance();
+
+    private static final int CONNECT_TIMEOUT_MILLIS = 5000;
+    private static final int HANDSHAKE_TIMEOUT_MILLIS = 60_000;
+    private static final int ACK_INTERVAL_MILLIS = 1000;
+    private static final int RETRY_DELAY_MILLIS = 1000;
+
+    private final ReplicationService replication;
+    private final ServerConfig config = ServerConfig.getInstance();
+    private final String host;
+    private final int port;
+    private volatile boolean stopped;
+    private volatile Socket socket;
+    private volatile String state = "connect";
+    private volatile long lastIoMillis = System.currentTimeMillis();
+
+    MasterLink(ReplicationService replication, String host, int port) {
+        this.replication = replication;
+        this.host = host;
+        this.port = port;
+    }
+
+    String getHost() {
+        return host;
+    }
+
+    int getPort() {
+        return port;
+    }
+
+    // ROLE's names for the link's progress: connect, connecting, sync, connected.
+    String getState() {
+        return state;
+    }
+
+    boolean isUp() {
+        return "connected".equals(state);
+    }
+
+    boolean isSyncing() {
+        return "sync".equals(state);
+    }
+
+    long getLastIoSecondsAgo() {
+        return (System.currentTimeMillis() - lastIoMillis) / 1000;
+    }
+
+    boolean isFor(String host, int port) {
+        return this.host.equalsIgnoreCase(host) && this.port == port;
+    }
+
+    void start() {
+        Thread thread = new Thread(this::run, "replication-link");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    void stop() {
+        stopped = true;
+        Socket current = socket;
+        if (current != null) {
+            try {
+                current.close();
+            } catch (IOException e) {
+                log.verbose("IOException: " + e.getMessage());
+            }
+        }
+    }
+
+    private void run() {
+        while (!stopped) {
+            try (Socket connection = new Socket()) {
+                socket = connection;
+                if (stopped) {
+                    return;
+                }
+                state = "connecting";
+                connection.connect(new InetSocketAddress(host, port), CONNECT_TIMEOUT_MILLIS);
+                connection.setTcpNoDelay(true);
+                connection.setSoTimeout(HANDSHAKE_TIMEOUT_MILLIS);
+                InputStream input = new BufferedInputStream(connection.getInputStream());
+                OutputStream output = connection.getOutputStream();
+                log.notice("MASTER <-> REPLICA sync started");
+                handshake(input, output);
+                state = "connected";
+                stream(connection, input, output);
+            } catch (IOException | RuntimeException e) {
+                if (!stopped) {
+                    log.warning("Error condition on socket for SYNC with " + host + ":" + port + ": " + e.getMessage());
+                }
+            } finally {
+                socket = null;
+                state = "connect";
+            }
+            try {
+                Thread.sleep(RETRY_DELAY_MILLIS);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private void handshake(InputStream input, OutputStream output) throws IOException {
+        expectReply("PING", command(input, output, List.of("PING")), "+PONG");
+        expectReply("REPLCONF", command(input, output, List.of("REPLCONF", "listening-port", String.valueOf(config.getPort()))), "+OK");
+        expectReply("REPLCONF", command(input, output, List.of("REPLCONF", "capa", "psync2")), "+OK");
+        String[] resync = replication.resyncArguments();
+        String reply = command(input, output, List.of("PSYNC", resync[0], resync[1]));
+        String[] parts = reply.split(" ");
+        if (reply.startsWith("+FULLRESYNC") && parts.length == 3) {
+            log.notice("Full resync from master: " + parts[1] + ":" + parts[2]);
+            state = "sync";
+            receiveSnapshot(input, parts[1], Long.parseLong(parts[2]));
+            log.notice("MASTER <-> REPLICA sync: Finished with success");
+        } else if (reply.startsWith("+CONTINUE")) {
+            replication.continueWith(parts.length > 1 ? parts[1] : null);
+            log.notice("MASTER <-> REPLICA sync: Master accepted a Partial Resynchronization.");
+        } else {
+            throw new IOException("unexpected reply to PSYNC: " + reply);
+        }
+    }
+
+    private static void expectReply(String command, String reply, String expected) throws IOException {
+        if (!reply.equalsIgnoreCase(expected)) {
+            throw new IOException("unexpected reply to " + command + ": " + reply);
+        }
+    }
+
+    // The payload is spooled to a temp file first, so a connection lost halfway leaves the dataset alone.
+    private void receiveSnapshot(InputStream input, String masterId, long masterOffset) throws IOException {
+        String header = readLine(input);
+        if (!header.startsWith("$")) {
+            throw new IOException("bad sync payload header: " + header);
+        }
+        long length = Long.parseLong(header.substring(1));
+        Path temp = Path.of(config.getDir(), "temp-" + System.currentTimeMillis() + "." + ProcessHandle.current().pid() + ".rdb");
+        try {
+            try (OutputStream file = Files.newOutputStream(temp)) {
+                byte[] chunk = new byte[64 * 1024];
+                for (long received = 0; received < length; ) {
+                    int read = input.read(chunk, 0, (int) Math.min(chunk.length, length - received));
+                    if (read < 0) {
+                        throw new IOException("connection lost during the sync payload");
+                    }
+                    file.write(chunk, 0, read);
+                    received += read;
+                    lastIoMillis = System.currentTimeMillis();
+                }
+            }
+            replication.loadFullSync(temp, masterId, masterOffset);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    // Applies the stream. GETACK is answered with the offset before it, as Redis does; everything else
+    // runs as the master client, whose writes feed our own stream verbatim. Commands that change
+    // nothing here (PING, a failed write) are passed on as well, so the offsets keep matching.
+    private void stream(Socket connection, InputStream input, OutputStream output) throws IOException {
+        connection.setSoTimeout(ACK_INTERVAL_MILLIS);
+        CommandProcessor master = new CommandProcessor();
+        master.setMaster(true);
+        master.setPeer((InetSocketAddress) connection.getRemoteSocketAddress());
+        RespParser respParser = new RespParser();
+        byte[] chunk = new byte[16 * 1024];
+        sendAck(output);
+        long lastAck = System.currentTimeMillis();
+        while (!stopped) {
+            int num;
+            try {
+                num = input.read(chunk);
+            } catch (SocketTimeoutException e) {
+                num = 0;
+            }
+            if (num < 0) {
+                throw new IOException("connection lost");
+            }
+            if (num > 0) {
+                lastIoMillis = System.currentTimeMillis();
+                respParser.feed(chunk, 0, num);
+                List<String> arguments;
+                while ((arguments = respParser.next()) != null) {
+                    if (arguments.size() == 3 && "REPLCONF".equalsIgnoreCase(arguments.get(0))
+                            && "GETACK".equalsIgnoreCase(arguments.get(1))) {
+                        sendAck(output);
+                        lastAck = System.currentTimeMillis();
+                        replication.feedStream(arguments);
+                        continue;
+                    }
+                    long before = replication.getOffset();
+                    master.respond(arguments);
+                    master.getOutput().reset();
+                    if (replication.getOffset() == before) {
+                        replication.feedStream(arguments);
+                    }
+                }
+            }
+            if (System.currentTimeMillis() - lastAck >= ACK_INTERVAL_MILLIS) {
+                sendAck(output);
+                lastAck = System.currentTimeMillis();
+            }
+        }
+    }
+
+    private void sendAck(OutputStream output) throws IOException {
+        write(output, List.of("REPLCONF", "ACK", String.valueOf(replication.getOffset())));
+    }
+
+    private static String command(InputStream input, OutputStream output, List<String> command) throws IOException {
+        write(output, command);
+        return readLine(input);
+    }
+
+    private static void write(OutputStream output, List<String> command) throws IOException {
+        OutputEncoderService encoder = new OutputEncoderService();
+        encoder.encodeList(command);
+        encoder.writeTo(output);
+        output.flush();
+    }
+
+    // One reply line without its CRLF; a master keeping the link alive while busy sends bare newlines.
+    private static String readLine(InputStream input) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        while (true) {
+            int b = input.read();
+            if (b < 0) {
+                throw new IOException("connection lost");
+            }
+            if (b == '\n') {
+                if (line.size() == 0) {
+                    continue;
+                }
+                return line.toString(StandardCharsets.ISO_8859_1);
+            }
+            if (b != '\r') {
+                line.write(b);
+            }
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package Service;
+
+import Models.DataStore;
+import Models.LatencyHistogram;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.function.ToLongFunction;
+
+// GET /metrics on --metrics-port: the INFO counters and per-command latency in the Prometheus text
+// format, for scraping. Served by one thread of its own, away from the connections' threads.
+public class MetricsServer {
+
+    private static final LogService log = LogService.getInstance();
+
+    private static final double[] QUANTILES = {0.5, 0.99, 0.999};
+
+    private final int port;
+
+    public MetricsServer(int port) {
+        this.port = port;
+    }
+
+    public void start() {
+        try {
+            HttpServer server = HttpServer.create(new InetSocketAddress(port), 0);
+            server.createContext("/metrics", this::handle);
+            server.setExecutor(Executors.newSingleThreadExecutor(r -> {
+                Thread t = new Thread(r, "metrics");
+                t.setDaemon(true);
+                return t;
+            }));
+            server.start();
+            log.notice("Metrics available on port " + port + " at /metrics");
+        } catch (IOException e) {
+            log.warning("Could not start the metrics endpoint on port " + port + ": " + e.getMessage());
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            byte[] body = render().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream output = exchange.getResponseBody()) {
+                output.write(body);
+            }
+        }
+    }
+
+    private String render() {
+        StatsService stats = StatsService.getInstance();
+        DataStore dataStore = DataStore.getInstance();
+        StringBuilder out = new StringBuilder();
+        metric(out, "redis_uptime_seconds", "gauge", "Seconds since the server started.", stats.getUptimeSeconds());
+        metric(out, "redis_connected_clients", "gauge", "Client connections open.", stats.getConnectedClients());
+        metric(out, "redis_blocked_clients", "gauge", "Clients waiting in a blocking command.", stats.getBlockedClients());
+        metric(out, "redis_connections_received_total", "counter", "Client connections accepted.", stats.getConnectionsReceived());
+        metric(out, "redis_used_memory_bytes", "gauge", "Estimated size of the dataset.", dataStore.getUsedMemory());
+        metric(out, "redis_keys", "gauge", "Keys in the keyspace.", dataStore.size());
+        metric(out, "redis_expiring_keys", "gauge", "Keys with a TTL.", dataStore.getExpiryIndex().size());
+        metric(out, "redis_expired_keys_total", "counter", "Keys removed on expiry.", dataStore.getExpiredKeys());
+        metric(out, "redis_evicted_keys_total", "counter", "Keys evicted for maxmemory.", EvictionService.getInstance().getEvictedKeys());
+        perCommand(out, "redis_commands_total", "Calls per command.", CommandStats::getCalls);
+        perCommand(out, "redis_commands_failed_total", "Calls that replied with an error.", CommandStats::getFailedCalls);
+        perCommand(out, "redis_commands_rejected_total", "Calls refused before running.", CommandStats::getRejectedCalls);
+        out.append("# HELP redis_command_duration_seconds Time spent executing each command.\n");
+        out.append("# TYPE redis_command_duration_seconds summary\n");
+        for (CommandSpec spec : CommandRegistry.getInstance().getCommands()) {
+            CommandStats commandStats = spec.getStats();
+            if (commandStats.getCalls() == 0) {
+                continue;
+            }
+            LatencyHistogram latency = commandStats.getLatency();
+            for (double quantile : QUANTILES) {
+                out.append("redis_command_duration_seconds{cmd=\"").append(spec.getName()).append("\",quantile=\"")
+                        .append(quantile).append("\"} ").append(seconds(latency.percentile(quantile))).append('\n');
+            }
+            out.append("redis_command_duration_seconds_sum{cmd=\"").append(spec.getName()).append("\"} ")
+                    .append(seconds(commandStats.getNanos())).append('\n');
+            out.append("redis_command_duration_seconds_count{cmd=\"").append(spec.getName()).append("\"} ")
+                    .append(commandStats.getCalls()).append('\n');
+        }
+        return out.toString();
+    }
+
+    private static void metric(StringBuilder out, String name, String type, String help, long value) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+        out.append(name).append(' ').append(value).append('\n');
+    }
+
+    private static void perCommand(StringBuilder out, String name, String help, ToLongFunction<CommandStats> value) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(" counter\n");
+        for (CommandSpec spec : CommandRegistry.getInstance().getCommands()) {
+            if (!spec.getStats().isEmpty()) {
+                out.append(name).append("{cmd=\"").append(spec.getName()).append("\"} ")
+                        .append(value.applyAsLong(spec.getStats())).append('\n');
+            }
+        }
+    }
+
+    private static String seconds(long nanos) {
+        return String.format(Locale.ROOT, "%.9f", nanos / 1e9);
+    }
+}
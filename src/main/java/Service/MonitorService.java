@@ -0,0 +1,83 @@
+package Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+
+// MONITOR: every command run, as it starts, sent to the clients that asked. With nobody attached it
+// costs a command one read of an empty set; the line is only built when there is someone to send it to,
+// once for all of them, and goes out through the same push path and output limit as Pub/Sub messages.
+public class MonitorService {
+
+    private static MonitorService instance;
+
+    private final Set<CommandProcessor> monitors = new CopyOnWriteArraySet<>();
+
+    private MonitorService() {
+    }
+
+    public static synchronized MonitorService getInstance() {
+        if(instance == null) {
+            instance = new MonitorService();
+        }
+        return instance;
+    }
+
+    void add(CommandProcessor client) {
+        monitors.add(client);
+    }
+
+    void remove(CommandProcessor client) {
+        monitors.remove(client);
+    }
+
+    public boolean isActive() {
+        return !monitors.isEmpty();
+    }
+
+    // +1339518083.107412 [0 127.0.0.1:60866] "set" "key" "value"
+    void feed(CommandProcessor client, List<String> arguments) {
+        Instant now = Instant.now();
+        StringBuilder line = new StringBuilder(64);
+        line.append('+').append(now.getEpochSecond()).append('.');
+        String micros = String.valueOf(now.getNano() / 1000);
+        line.append("000000", micros.length(), 6).append(micros);
+        line.append(" [0 ").append(client.describePeer()).append(']');
+        for (String argument : arguments) {
+            line.append(' ');
+            quote(line, argument);
+        }
+        line.append("\r\n");
+        byte[] encoded = line.toString().getBytes(StandardCharsets.ISO_8859_1);
+        for (CommandProcessor monitor : monitors) {
+            monitor.push(encoded);
+        }
+    }
+
+    // Printable bytes as they are, the rest escaped, the way redis-cli would have to type them.
+    private static void quote(StringBuilder line, String argument) {
+        line.append('"');
+        for (int i = 0; i < argument.length(); i++) {
+            char c = argument.charAt(i);
+            switch (c) {
+                case '\\' -> line.append("\\\\");
+                case '"' -> line.append("\\\"");
+                case '\n' -> line.append("\\n");
+                case '\r' -> line.append("\\r");
+                case '\t' -> line.append("\\t");
+                case 7 -> line.append("\\a");
+                case '\b' -> line.append("\\b");
+                default -> {
+                    if (c >= 32 && c < 127) {
+                        line.append(c);
+                    } else {
+                        line.append(String.format("\\x%02x", c & 0xff));
+                    }
+                }
+            }
+        }
+        line.append('"');
+    }
+}
@@ -2,69 +2,266 @@ package Service;
 
 import Models.Entry;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.List;
 
 public class OutputEncoderService {
 
+    public static final byte[] OK = ascii("+OK\r\n");
+    public static final byte[] PONG = ascii("+PONG\r\n");
+    public static final byte[] QUEUED = ascii("+QUEUED\r\n");
+    public static final byte[] NULL_BULK_STRING = ascii("$-1\r\n");
+    public static final byte[] NULL_ARRAY = ascii("*-1\r\n");
+    public static final byte[] EMPTY_ARRAY = ascii("*0\r\n");
+
+    private static final byte[] CRLF = ascii("\r\n");
+    private static final int CACHED_HEADERS = 1024;
+    private static final int CACHED_INTEGERS = 10000;
+    private static final byte[][] bulkHeaders = new byte[CACHED_HEADERS][];
+    private static final byte[][] arrayHeaders = new byte[CACHED_HEADERS][];
+    private static final byte[][] integers = new byte[CACHED_INTEGERS][];
+
+    static {
+        for (int i = 0; i < CACHED_HEADERS; i++) {
+            bulkHeaders[i] = ascii("$" + i + "\r\n");
+            arrayHeaders[i] = ascii("*" + i + "\r\n");
+        }
+        for (int i = 0; i < CACHED_INTEGERS; i++) {
+            integers[i] = ascii(":" + i + "\r\n");
+        }
+    }
+
+    private static final int INITIAL_CAPACITY = 4096;
+
+    private byte[] buffer = new byte[INITIAL_CAPACITY];
+    private int size;
+
     @SuppressWarnings("unchecked")
-    public String encodeObject(Object input) {
+    public void encodeObject(Object input) {
         if(input instanceof String) {
-            return encodeBulkString((String)input);
+            encodeBulkString((String)input);
         }
-        if(input instanceof Integer) {
-            return encodeInteger((Integer) input);
+        else if(input instanceof Integer) {
+            encodeInteger((Integer) input);
         }
-        if(input instanceof List<?>) {
-            return encodeList((List<String>) input);
+        else if(input instanceof List<?>) {
+            encodeList((List<String>) input);
         }
         else {
             throw new RuntimeException("Unknown data type found");
         }
     }
 
-    public String encodeBulkString(String input) {
-        return "$" + input.length() + "\r\n" + input + "\r\n";
+    public void encodeBulkString(String input) {
+        if (input == null) {
+            writeRaw(NULL_BULK_STRING);
+            return;
+        }
+        int length = input.length();
+        writeHeader(bulkHeaders, '$', length);
+        ensureCapacity(length + 2);
+        // Arguments are decoded as ISO-8859-1, so every char maps back to exactly one byte.
+        for (int i = 0; i < length; i++) {
+            buffer[size++] = (byte) input.charAt(i);
+        }
+        buffer[size++] = '\r';
+        buffer[size++] = '\n';
+    }
+
+    public void encodeBulkString(byte[] input) {
+        if (input == null) {
+            writeRaw(NULL_BULK_STRING);
+            return;
+        }
+        writeHeader(bulkHeaders, '$', input.length);
+        ensureCapacity(input.length + 2);
+        System.arraycopy(input, 0, buffer, size, input.length);
+        size += input.length;
+        buffer[size++] = '\r';
+        buffer[size++] = '\n';
+    }
+
+    // An int-encoded value is written straight from the long, without materializing its bytes.
+    public void encodeBulkLong(long number) {
+        int length = number == Long.MIN_VALUE ? 20 : (number < 0 ? 1 : 0) + digits(Math.abs(number));
+        writeHeader(bulkHeaders, '$', length);
+        writeLong(number);
+        writeRaw(CRLF);
     }
 
-    public String encodeSimpleString(String input) {
-        return "+" + input + "\r\n";
+    public void encodeSimpleString(String input) {
+        writeByte('+');
+        writeAscii(input);
+        writeRaw(CRLF);
     }
 
-    public String encodeInteger(Integer number) {
-        return ":"+number.toString()+"\r\n";
+    public void encodeInteger(long number) {
+        if (number >= 0 && number < CACHED_INTEGERS) {
+            writeRaw(integers[(int) number]);
+            return;
+        }
+        writeByte(':');
+        writeLong(number);
+        writeRaw(CRLF);
+    }
+
+    public void encodeArrayHeader(int length) {
+        writeHeader(arrayHeaders, '*', length);
     }
 
-    public String encodeList(List<String> list) {
-        StringBuilder ans = new StringBuilder("*" + list.size()+"\r\n");
+    public void encodeList(List<String> list) {
+        encodeArrayHeader(list.size());
         for (String s : list) {
-            ans.append(encodeBulkString(s));
+            encodeBulkString(s);
         }
-        return ans.toString();
     }
 
-    public String encodeSimpleError(String errorMessage) {
-        return "-ERR " + errorMessage + "\r\n";
+    // Messages that already start with "-" carry their own error code (e.g. -WRONGTYPE), as in Redis.
+    public void encodeSimpleError(String errorMessage) {
+        if (!errorMessage.startsWith("-")) {
+            writeAscii("-ERR ");
+        }
+        writeAscii(errorMessage.replace('\r', ' ').replace('\n', ' '));
+        writeRaw(CRLF);
     }
 
-    public String encodeEntryList(List<Entry> entries) {
-        StringBuilder ans = new StringBuilder("*" + entries.size()+"\r\n");
+    public void encodeEntryList(List<Entry> entries) {
+        encodeArrayHeader(entries.size());
         for (Entry entry : entries) {
-            ans.append(encodeEntry(entry));
+            encodeEntry(entry);
         }
-        return ans.toString();
     }
 
-    public String encodeEntry(Entry entry) {
-        StringBuilder ans = new StringBuilder("*" +"2\r\n");
-        ans.append(encodeBulkString(getId(entry.getMilliseconds(), entry.getSequenceNumber())));
-        ans.append("*").append(entry.getKeyValueMap().size()*2).append("\r\n");
-        entry.getKeyValueMap().forEach((key, value) ->
-                ans.append(encodeBulkString(key)).append(encodeBulkString(value)));
-        return ans.toString();
+    public void encodeEntry(Entry entry) {
+        encodeArrayHeader(2);
+        encodeEntryId(entry.getMilliseconds(), entry.getSequenceNumber());
+        byte[][] fields = entry.getFields();
+        encodeArrayHeader(fields.length);
+        for (byte[] field : fields) {
+            encodeBulkString(field);
+        }
+    }
+
+    public void encodeEntryId(long milliseconds, long sequenceNumber) {
+        if (milliseconds < 0 || sequenceNumber < 0) {
+            // Past Long.MAX_VALUE the unsigned parts need their full textual form.
+            encodeBulkString(Long.toUnsignedString(milliseconds) + "-" + Long.toUnsignedString(sequenceNumber));
+            return;
+        }
+        int length = digits(milliseconds) + 1 + digits(sequenceNumber);
+        writeHeader(bulkHeaders, '$', length);
+        writeLong(milliseconds);
+        writeByte('-');
+        writeLong(sequenceNumber);
+        writeRaw(CRLF);
     }
 
-    public String getId(Long milliseconds, Long sequenceNumber) {
-        return milliseconds.toString() + "-" + sequenceNumber.toString();
+    public void writeRaw(byte[] bytes) {
+        ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, buffer, size, bytes.length);
+        size += bytes.length;
     }
 
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public byte[] getBuffer() {
+        return buffer;
+    }
+
+    public byte[] toByteArray() {
+        return Arrays.copyOf(buffer, size);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void writeTo(OutputStream outputStream) throws IOException {
+        outputStream.write(buffer, 0, size);
+        reset();
+    }
+
+    public void truncate(int mark) {
+        size = mark;
+    }
+
+    public void reset() {
+        size = 0;
+        // Drop a buffer grown for one large reply so idle connections stay small.
+        if (buffer.length > INITIAL_CAPACITY * 16) {
+            buffer = new byte[INITIAL_CAPACITY];
+        }
+    }
+
+    private void writeHeader(byte[][] cache, char prefix, int length) {
+        if (length >= 0 && length < CACHED_HEADERS) {
+            writeRaw(cache[length]);
+            return;
+        }
+        writeByte(prefix);
+        writeLong(length);
+        writeRaw(CRLF);
+    }
+
+    private void writeAscii(String input) {
+        int length = input.length();
+        ensureCapacity(length);
+        for (int i = 0; i < length; i++) {
+            buffer[size++] = (byte) input.charAt(i);
+        }
+    }
+
+    private void writeByte(char b) {
+        ensureCapacity(1);
+        buffer[size++] = (byte) b;
+    }
+
+    private void writeLong(long number) {
+        if (number == Long.MIN_VALUE) {
+            writeAscii(Long.toString(number));
+            return;
+        }
+        if (number < 0) {
+            writeByte('-');
+            number = -number;
+        }
+        int length = digits(number);
+        ensureCapacity(length);
+        for (int i = size + length - 1; i >= size; i--) {
+            buffer[i] = (byte) ('0' + number % 10);
+            number /= 10;
+        }
+        size += length;
+    }
+
+    private static int digits(long number) {
+        int length = 1;
+        while (number >= 10) {
+            number /= 10;
+            length++;
+        }
+        return length;
+    }
+
+    private void ensureCapacity(int length) {
+        if (buffer.length - size >= length) {
+            return;
+        }
+        int capacity = buffer.length;
+        while (capacity - size < length) {
+            capacity *= 2;
+        }
+        byte[] grown = new byte[capacity];
+        System.arraycopy(buffer, 0, grown, 0, size);
+        buffer = grown;
+    }
+
+    private static byte[] ascii(String input) {
+        return input.getBytes(StandardCharsets.US_ASCII);
+    }
 }
@@ -0,0 +1,44 @@
+package Service;
+
+import java.util.List;
+
+// Where a write goes once it is applied: the append-only file and the replication stream. Both are fed
+// with the command's keys still locked, so each sees the changes to a key in the order they were made.
+// A snapshot being written only needs to hear about a write before it happens.
+public class PropagationService {
+
+    private static PropagationService instance;
+
+    private final AofService aofService = AofService.getInstance();
+    private final ReplicationService replicationService = ReplicationService.getInstance();
+    private final SnapshotService snapshotService = SnapshotService.getInstance();
+
+    private PropagationService() {
+    }
+
+    public static synchronized PropagationService getInstance() {
+        if(instance == null) {
+            instance = new PropagationService();
+        }
+        return instance;
+    }
+
+    // False while none is on, when writes can skip the encoding altogether.
+    public boolean isActive() {
+        return aofService.isLogging() || replicationService.isActive() || snapshotService.isCapturing();
+    }
+
+    // Called by a write command with its keys locked, before it changes them.
+    public void beforeWrite(List<String> keys) {
+        aofService.beforeWrite(keys);
+        replicationService.beforeWrite(keys);
+        snapshotService.beforeWrite(keys);
+    }
+
+    // Called with the keys still locked. Returns the AOF offset the client's reply waits for.
+    public long propagate(List<String> keys, List<String> command) {
+        long logOffset = aofService.feed(keys, command);
+        replicationService.feed(keys, command);
+        return logOffset;
+    }
+}
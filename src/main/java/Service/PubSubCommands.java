@@ -0,0 +1,117 @@
+package Service;
+
+import Service.CommandSpec.Flag;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Locale;
+
+public class PubSubCommands {
+
+    private final PubSubService pubSub = PubSubService.getInstance();
+    private final ReplicationService replication = ReplicationService.getInstance();
+
+    public void register(CommandRegistry registry) {
+        registry.register(new CommandSpec("subscribe", -2, EnumSet.of(Flag.PUBSUB), 0, 0, 0, this::subscribe));
+        registry.register(new CommandSpec("unsubscribe", -1, EnumSet.of(Flag.PUBSUB), 0, 0, 0, this::unsubscribe));
+        registry.register(new CommandSpec("psubscribe", -2, EnumSet.of(Flag.PUBSUB), 0, 0, 0, this::psubscribe));
+        registry.register(new CommandSpec("punsubscribe", -1, EnumSet.of(Flag.PUBSUB), 0, 0, 0, this::punsubscribe));
+        registry.register(new CommandSpec("publish", 3, EnumSet.of(Flag.PUBSUB, Flag.FAST), 0, 0, 0, this::publish));
+        registry.register(new CommandSpec("pubsub", -2, EnumSet.of(Flag.PUBSUB), 0, 0, 0, this::pubsub));
+    }
+
+    private void subscribe(CommandProcessor client, List<String> arguments) {
+        for (int i = 1; i < arguments.size(); i++) {
+            String channel = arguments.get(i);
+            if (client.getChannels().add(channel)) {
+                pubSub.subscribe(client, channel);
+            }
+            reply(client, "subscribe", channel);
+        }
+    }
+
+    // Without arguments, from every channel; a client subscribed to none still gets one reply.
+    private void unsubscribe(CommandProcessor client, List<String> arguments) {
+        List<String> channels = arguments.size() > 1 ? arguments.subList(1, arguments.size()) : new ArrayList<>(client.getChannels());
+        if (channels.isEmpty()) {
+            reply(client, "unsubscribe", null);
+        }
+        for (String channel : channels) {
+            if (client.getChannels().remove(channel)) {
+                pubSub.unsubscribe(client, channel);
+            }
+            reply(client, "unsubscribe", channel);
+        }
+    }
+
+    private void psubscribe(CommandProcessor client, List<String> arguments) {
+        for (int i = 1; i < arguments.size(); i++) {
+            String pattern = arguments.get(i);
+            if (client.getPatterns().add(pattern)) {
+                pubSub.psubscribe(client, pattern);
+            }
+            reply(client, "psubscribe", pattern);
+        }
+    }
+
+    private void punsubscribe(CommandProcessor client, List<String> arguments) {
+        List<String> patterns = arguments.size() > 1 ? arguments.subList(1, arguments.size()) : new ArrayList<>(client.getPatterns());
+        if (patterns.isEmpty()) {
+            reply(client, "punsubscribe", null);
+        }
+        for (String pattern : patterns) {
+            if (client.getPatterns().remove(pattern)) {
+                pubSub.punsubscribe(client, pattern);
+            }
+            reply(client, "punsubscribe", pattern);
+        }
+    }
+
+    private static void reply(CommandProcessor client, String kind, String name) {
+        OutputEncoderService output = client.getOutput();
+        output.encodeArrayHeader(3);
+        output.encodeBulkString(kind);
+        output.encodeBulkString(name);
+        output.encodeInteger(client.getChannels().size() + client.getPatterns().size());
+    }
+
+    // Messages reach a replica's subscribers too, as in Redis. A replica passes on its master's
+    // stream as received and never adds publishes of its own clients to it.
+    private void publish(CommandProcessor client, List<String> arguments) {
+        int receivers = pubSub.publish(arguments.get(1), arguments.get(2));
+        if (!replication.isReplica()) {
+            replication.feedStream(arguments);
+        }
+        client.getOutput().encodeInteger(receivers);
+    }
+
+    private void pubsub(CommandProcessor client, List<String> arguments) {
+        OutputEncoderService output = client.getOutput();
+        String subcommand = arguments.get(1).toLowerCase(Locale.ROOT);
+        switch (subcommand) {
+            case "channels" -> {
+                if (arguments.size() > 3) {
+                    throw new RuntimeException("wrong number of arguments for 'pubsub|channels' command");
+                }
+                List<String> channels = pubSub.activeChannels(arguments.size() == 3 ? arguments.get(2) : null);
+                output.encodeArrayHeader(channels.size());
+                channels.forEach(output::encodeBulkString);
+            }
+            case "numsub" -> {
+                output.encodeArrayHeader((arguments.size() - 2) * 2);
+                for (int i = 2; i < arguments.size(); i++) {
+                    output.encodeBulkString(arguments.get(i));
+                    output.encodeInteger(pubSub.subscriberCount(arguments.get(i)));
+                }
+            }
+            case "numpat" -> {
+                if (arguments.size() != 2) {
+                    throw new RuntimeException("wrong number of arguments for 'pubsub|numpat' command");
+                }
+                output.encodeInteger(pubSub.patternCount());
+            }
+            default -> throw new RuntimeException("unknown subcommand '" + arguments.get(1) + "'. Try PUBSUB HELP.");
+        }
+    }
+}
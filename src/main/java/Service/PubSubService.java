@@ -0,0 +1,126 @@
+package Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Channel and pattern subscriptions. PUBLISH encodes a message once and hands that same buffer to
+// every subscriber, whose connection queues it for its own thread to write. Per subscriber the
+// publisher only adds a reference to a queue, so no encoding, copying or socket write happens on
+// its thread however many clients listen.
+public class PubSubService {
+
+    // A subscriber this far behind is disconnected, as with Redis's default hard limit for Pub/Sub clients.
+    public static final long OUTPUT_LIMIT = 32L * 1024 * 1024;
+
+    private static PubSubService instance;
+
+    private final ConcurrentHashMap<String, Set<CommandProcessor>> channels = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Set<CommandProcessor>> patterns = new ConcurrentHashMap<>();
+
+    private PubSubService() {
+    }
+
+    public static synchronized PubSubService getInstance() {
+        if(instance == null) {
+            instance = new PubSubService();
+        }
+        return instance;
+    }
+
+    public void subscribe(CommandProcessor client, String channel) {
+        add(channels, channel, client);
+    }
+
+    public void unsubscribe(CommandProcessor client, String channel) {
+        remove(channels, channel, client);
+    }
+
+    public void psubscribe(CommandProcessor client, String pattern) {
+        add(patterns, pattern, client);
+    }
+
+    public void punsubscribe(CommandProcessor client, String pattern) {
+        remove(patterns, pattern, client);
+    }
+
+    // Both are done inside compute, so a subscriber never lands in a set that is being dropped.
+    private static void add(ConcurrentHashMap<String, Set<CommandProcessor>> index, String name, CommandProcessor client) {
+        index.compute(name, (k, subscribers) -> {
+            if (subscribers == null) {
+                subscribers = ConcurrentHashMap.newKeySet();
+            }
+            subscribers.add(client);
+            return subscribers;
+        });
+    }
+
+    private static void remove(ConcurrentHashMap<String, Set<CommandProcessor>> index, String name, CommandProcessor client) {
+        index.computeIfPresent(name, (k, subscribers) -> {
+            subscribers.remove(client);
+            return subscribers.isEmpty() ? null : subscribers;
+        });
+    }
+
+    // Returns how many clients the message was handed to.
+    public int publish(String channel, String message) {
+        int receivers = 0;
+        Set<CommandProcessor> subscribers = channels.get(channel);
+        if (subscribers != null) {
+            byte[] encoded = encode("message", null, channel, message);
+            for (CommandProcessor subscriber : subscribers) {
+                subscriber.push(encoded);
+                receivers++;
+            }
+        }
+        for (Map.Entry<String, Set<CommandProcessor>> entry : patterns.entrySet()) {
+            if (!Glob.matches(entry.getKey(), channel)) {
+                continue;
+            }
+            byte[] encoded = encode("pmessage", entry.getKey(), channel, message);
+            for (CommandProcessor subscriber : entry.getValue()) {
+                subscriber.push(encoded);
+                receivers++;
+            }
+        }
+        return receivers;
+    }
+
+    private static byte[] encode(String kind, String pattern, String channel, String message) {
+        OutputEncoderService encoder = new OutputEncoderService();
+        encoder.encodeArrayHeader(pattern == null ? 3 : 4);
+        encoder.encodeBulkString(kind);
+        if (pattern != null) {
+            encoder.encodeBulkString(pattern);
+        }
+        encoder.encodeBulkString(channel);
+        encoder.encodeBulkString(message);
+        return encoder.toByteArray();
+    }
+
+    // PUBSUB CHANNELS: channels with at least one subscriber, optionally matching a pattern.
+    public List<String> activeChannels(String pattern) {
+        List<String> active = new ArrayList<>();
+        for (String channel : channels.keySet()) {
+            if (pattern == null || Glob.matches(pattern, channel)) {
+                active.add(channel);
+            }
+        }
+        return active;
+    }
+
+    public int subscriberCount(String channel) {
+        Set<CommandProcessor> subscribers = channels.get(channel);
+        return subscribers == null ? 0 : subscribers.size();
+    }
+
+    public int patternCount() {
+        return patterns.size();
+    }
+
+    public int channelCount() {
+        return channels.size();
+    }
+}
@@ -0,0 +1,40 @@
+package Service;
+
+// Opcodes and encodings of the RDB snapshot format, shared by RdbWriter and RdbLoader.
+final class Rdb {
+
+    static final String MAGIC = "REDIS";
+    static final int VERSION = 11;
+
+    static final int OPCODE_FUNCTION = 0xF5;
+    static final int OPCODE_IDLE = 0xF8;
+    static final int OPCODE_FREQ = 0xF9;
+    static final int OPCODE_AUX = 0xFA;
+    static final int OPCODE_RESIZEDB = 0xFB;
+    static final int OPCODE_EXPIRETIME_MS = 0xFC;
+    static final int OPCODE_EXPIRETIME = 0xFD;
+    static final int OPCODE_SELECTDB = 0xFE;
+    static final int OPCODE_EOF = 0xFF;
+
+    static final int TYPE_STRING = 0;
+    static final int TYPE_LIST = 1;
+    // Not a Redis type: Redis stores streams as listpacks in a radix tree, this is a flat list of
+    // entries (ID, then fields) in ID order. Files with streams can only be read back by this server.
+    static final int TYPE_STREAM_ENTRIES = 100;
+
+    // Length prefixes: the top two bits of the first byte say how the length is stored.
+    static final int LENGTH_6BIT = 0;
+    static final int LENGTH_14BIT = 1;
+    static final int LENGTH_32BIT = 0x80;
+    static final int LENGTH_64BIT = 0x81;
+    static final int LENGTH_ENCODED = 3;
+
+    // Special string encodings, after a LENGTH_ENCODED prefix.
+    static final int ENCODING_INT8 = 0;
+    static final int ENCODING_INT16 = 1;
+    static final int ENCODING_INT32 = 2;
+    static final int ENCODING_LZF = 3;
+
+    private Rdb() {
+    }
+}
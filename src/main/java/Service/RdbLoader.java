@@ -0,0 +1,307 @@
+package Service;
+
+import Models.DataStore;
+import Models.ExpiryIndex;
+import Models.RedisObject;
+import Models.RingList;
+import Models.Stream;
+import Models.StreamId;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+// Decodes a snapshot straight out of the page cache: the file is memory-mapped a window at a time
+// and parsed in one forward pass, so loading costs no read() copies and the heap only ever holds
+// the decoded values. The checksum is computed over its own mapping on a second thread while the
+// keys are decoded. Keys already expired by the time they are read are skipped.
+class RdbLoader {
+
+    private static final long WINDOW_SIZE = 256L * 1024 * 1024;
+
+    private final FileChannel channel;
+    private final long fileSize;
+    private MappedByteBuffer window;
+    private long windowStart;
+    private long keysLoaded;
+    private long keysExpired;
+
+    RdbLoader(FileChannel channel) throws IOException {
+        this.channel = channel;
+        this.fileSize = channel.size();
+    }
+
+    long getKeysLoaded() {
+        return keysLoaded;
+    }
+
+    long getKeysExpired() {
+        return keysExpired;
+    }
+
+    // Where the snapshot ended: past its checksum, or just past the EOF opcode for versions without one.
+    long getPosition() {
+        return window == null ? 0 : windowStart + window.position();
+    }
+
+    void load(DataStore dataStore) throws IOException {
+        byte[] header = readBytes(9);
+        String magic = new String(header, 0, 5, StandardCharsets.US_ASCII);
+        if (!Rdb.MAGIC.equals(magic)) {
+            throw new IOException("Wrong signature trying to load DB from file");
+        }
+        int version = Integer.parseInt(new String(header, 5, 4, StandardCharsets.US_ASCII));
+        if (version < 1 || version > Rdb.VERSION + 1) {
+            throw new IOException("Can't handle RDB format version " + version);
+        }
+        // A well-formed file ends with the checksum of everything before its last 8 bytes.
+        FutureTask<Long> checksum = null;
+        if (version >= 5 && fileSize >= 8) {
+            checksum = new FutureTask<>(() -> checksumOf(fileSize - 8));
+            Thread thread = new Thread(checksum, "rdb-checksum");
+            thread.setDaemon(true);
+            thread.start();
+        }
+        long now = System.currentTimeMillis();
+        long expiryTime = ExpiryIndex.NO_EXPIRY;
+        while (true) {
+            int type = readByte();
+            switch (type) {
+                case Rdb.OPCODE_EXPIRETIME_MS -> {
+                    expiryTime = readLongLittleEndian();
+                    continue;
+                }
+                case Rdb.OPCODE_EXPIRETIME -> {
+                    expiryTime = (readIntLittleEndian() & 0xFFFFFFFFL) * 1000;
+                    continue;
+                }
+                case Rdb.OPCODE_IDLE -> {
+                    readLength();
+                    continue;
+                }
+                case Rdb.OPCODE_FREQ -> {
+                    readByte();
+                    continue;
+                }
+                case Rdb.OPCODE_AUX -> {
+                    readString();
+                    readString();
+                    continue;
+                }
+                case Rdb.OPCODE_SELECTDB -> {
+                    readLength();
+                    continue;
+                }
+                case Rdb.OPCODE_RESIZEDB -> {
+                    readLength();
+                    readLength();
+                    continue;
+                }
+                case Rdb.OPCODE_FUNCTION -> throw new IOException("Functions in RDB files are not supported");
+                case Rdb.OPCODE_EOF -> {
+                    verifyChecksum(checksum);
+                    return;
+                }
+                default -> {
+                }
+            }
+            String key = new String(readString(), StandardCharsets.ISO_8859_1);
+            RedisObject value = readValue(type);
+            if (expiryTime != ExpiryIndex.NO_EXPIRY && expiryTime <= now) {
+                keysExpired++;
+            } else {
+                dataStore.set(key, value, expiryTime);
+                keysLoaded++;
+            }
+            expiryTime = ExpiryIndex.NO_EXPIRY;
+        }
+    }
+
+    private RedisObject readValue(int type) throws IOException {
+        switch (type) {
+            case Rdb.TYPE_STRING -> {
+                return readStringObject();
+            }
+            case Rdb.TYPE_LIST -> {
+                long length = readLength();
+                RingList list = new RingList();
+                for (long i = 0; i < length; i++) {
+                    list.pushLast(readString());
+                }
+                return RedisObject.ofList(list);
+            }
+            case Rdb.TYPE_STREAM_ENTRIES -> {
+                long entries = readLength();
+                Stream stream = new Stream();
+                for (long i = 0; i < entries; i++) {
+                    StreamId id = new StreamId(readLongLittleEndian(), readLongLittleEndian());
+                    byte[][] fields = new byte[toIntLength(readLength())][];
+                    for (int j = 0; j < fields.length; j++) {
+                        fields[j] = readString();
+                    }
+                    stream.append(id, fields);
+                }
+                return RedisObject.ofStream(stream);
+            }
+            default -> throw new IOException("Unknown RDB value type " + type);
+        }
+    }
+
+    // Integer-encoded strings go straight to the int encoding without a round trip through digits.
+    private RedisObject readStringObject() throws IOException {
+        int first = peekByte();
+        if ((first >> 6) == Rdb.LENGTH_ENCODED && (first & 0x3F) != Rdb.ENCODING_LZF) {
+            readByte();
+            return RedisObject.ofLong(readEncodedInteger(first & 0x3F));
+        }
+        return RedisObject.ofBytes(readString());
+    }
+
+    private byte[] readString() throws IOException {
+        int first = readByte();
+        if ((first >> 6) != Rdb.LENGTH_ENCODED) {
+            return readBytes(toIntLength(readLength(first)));
+        }
+        int encoding = first & 0x3F;
+        if (encoding == Rdb.ENCODING_LZF) {
+            int compressedLength = toIntLength(readLength());
+            int length = toIntLength(readLength());
+            return Lzf.decompress(readBytes(compressedLength), length);
+        }
+        return Long.toString(readEncodedInteger(encoding)).getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private long readEncodedInteger(int encoding) throws IOException {
+        return switch (encoding) {
+            case Rdb.ENCODING_INT8 -> (byte) readByte();
+            case Rdb.ENCODING_INT16 -> (short) (readByte() | readByte() << 8);
+            case Rdb.ENCODING_INT32 -> readIntLittleEndian();
+            default -> throw new IOException("Unknown RDB string encoding " + encoding);
+        };
+    }
+
+    private long readLength() throws IOException {
+        return readLength(readByte());
+    }
+
+    private long readLength(int first) throws IOException {
+        switch (first >> 6) {
+            case Rdb.LENGTH_6BIT -> {
+                return first & 0x3F;
+            }
+            case Rdb.LENGTH_14BIT -> {
+                return (first & 0x3F) << 8 | readByte();
+            }
+            default -> {
+                int bytes;
+                if (first == Rdb.LENGTH_32BIT) {
+                    bytes = 4;
+                } else if (first == Rdb.LENGTH_64BIT) {
+                    bytes = 8;
+                } else {
+                    throw new IOException("Unknown RDB length encoding " + first);
+                }
+                long length = 0;
+                for (int i = 0; i < bytes; i++) {
+                    length = length << 8 | readByte();
+                }
+                return length;
+            }
+        }
+    }
+
+    private static int toIntLength(long length) throws IOException {
+        if (length < 0 || length > Integer.MAX_VALUE - 8) {
+            throw new IOException("RDB length out of range: " + length);
+        }
+        return (int) length;
+    }
+
+    // Versions before 5 carry no checksum, and a zero checksum means the writer did not compute one.
+    private void verifyChecksum(FutureTask<Long> checksum) throws IOException {
+        if (checksum == null) {
+            return;
+        }
+        long end = windowStart + window.position();
+        long stored = readLongLittleEndian();
+        if (stored == 0) {
+            return;
+        }
+        long expected;
+        if (end == fileSize - 8) {
+            try {
+                expected = checksum.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while verifying the RDB checksum");
+            } catch (ExecutionException e) {
+                throw new IOException("Failed to checksum the RDB file", e.getCause());
+            }
+        } else {
+            // Trailing bytes after the checksum: the background sum covered the wrong range.
+            expected = checksumOf(end);
+        }
+        if (stored != expected) {
+            throw new IOException("Wrong RDB checksum");
+        }
+    }
+
+    private long checksumOf(long end) throws IOException {
+        long crc = 0;
+        for (long position = 0; position < end; position += WINDOW_SIZE) {
+            crc = Crc64.update(crc, channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(WINDOW_SIZE, end - position)));
+        }
+        return crc;
+    }
+
+    private int readIntLittleEndian() throws IOException {
+        return readByte() | readByte() << 8 | readByte() << 16 | readByte() << 24;
+    }
+
+    private long readLongLittleEndian() throws IOException {
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value |= (long) readByte() << (8 * i);
+        }
+        return value;
+    }
+
+    private int peekByte() throws IOException {
+        ensureAvailable(1);
+        return window.get(window.position()) & 0xFF;
+    }
+
+    private int readByte() throws IOException {
+        ensureAvailable(1);
+        return window.get() & 0xFF;
+    }
+
+    private byte[] readBytes(int length) throws IOException {
+        byte[] bytes = new byte[length];
+        int copied = 0;
+        while (copied < length) {
+            ensureAvailable(1);
+            int chunk = Math.min(length - copied, window.remaining());
+            window.get(bytes, copied, chunk);
+            copied += chunk;
+        }
+        return bytes;
+    }
+
+    // Maps the next window once the current one is used up; old windows are left to the GC to unmap.
+    private void ensureAvailable(int bytes) throws IOException {
+        if (window != null && window.remaining() >= bytes) {
+            return;
+        }
+        long position = window == null ? 0 : windowStart + window.position();
+        if (position + bytes > fileSize) {
+            throw new EOFException("Unexpected EOF reading RDB file");
+        }
+        windowStart = position;
+        window = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(WINDOW_SIZE, fileSize - position));
+    }
+}
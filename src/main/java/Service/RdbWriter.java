@@ -0,0 +1,230 @@
+package Service;
+
+import Models.Entry;
+import Models.RedisObject;
+import Models.RingList;
+import Models.Stream;
+import Models.StreamId;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+// Encodes a snapshot into a file channel through one reusable buffer, checksumming each buffer as it
+// is flushed for the CRC64 that ends the file. Callers write records in file order: header, database,
+// keys, then finish().
+class RdbWriter implements Closeable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final FileChannel channel;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int position;
+    private long checksum;
+
+    RdbWriter(FileChannel channel) {
+        this.channel = channel;
+    }
+
+    void writeHeader() throws IOException {
+        writeBytes(String.format("%s%04d", Rdb.MAGIC, Rdb.VERSION).getBytes(StandardCharsets.US_ASCII));
+    }
+
+    void writeAux(String name, String value) throws IOException {
+        writeByte(Rdb.OPCODE_AUX);
+        writeString(name.getBytes(StandardCharsets.US_ASCII));
+        writeString(value.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    // Sizes are only hints for the reader; the keyspace may change while it is written.
+    void writeDatabase(int index, long keys, long volatileKeys) throws IOException {
+        writeByte(Rdb.OPCODE_SELECTDB);
+        writeLength(index);
+        writeByte(Rdb.OPCODE_RESIZEDB);
+        writeLength(keys);
+        writeLength(volatileKeys);
+    }
+
+    void writeKeyHeader(String key, int type, long expiryTime) throws IOException {
+        if (expiryTime >= 0) {
+            writeByte(Rdb.OPCODE_EXPIRETIME_MS);
+            writeLongLittleEndian(expiryTime);
+        }
+        writeByte(type);
+        writeString(key.getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    // A key as it was when saved, taken with the key's lock held so it can be written out later without
+    // it: the TTL is read then, a list's element references are copied (the elements are immutable
+    // arrays) and a stream, which is append-only, is cut at its size. Strings are immutable already.
+    record SavedKey(String key, RedisObject value, long expiryTime, byte[][] elements, int streamSize) {
+
+        static SavedKey of(String key, RedisObject value) {
+            byte[][] elements = null;
+            int streamSize = 0;
+            if (value.getType() == RedisObject.Type.LIST) {
+                RingList list = value.getList();
+                elements = new byte[list.size()][];
+                for (int i = 0; i < elements.length; i++) {
+                    elements[i] = list.get(i);
+                }
+            } else if (value.getType() == RedisObject.Type.STREAM) {
+                streamSize = value.getStream().size();
+            }
+            return new SavedKey(key, value, value.getExpiryTime(), elements, streamSize);
+        }
+    }
+
+    // One key with its TTL, as it was saved.
+    void writeKey(SavedKey saved) throws IOException {
+        RedisObject value = saved.value();
+        switch (value.getType()) {
+            case STRING -> {
+                writeKeyHeader(saved.key(), Rdb.TYPE_STRING, saved.expiryTime());
+                if (value.isInteger()) {
+                    writeIntegerValue(value.getLong());
+                } else {
+                    writeStringValue(value.getBytes());
+                }
+            }
+            case LIST -> {
+                writeKeyHeader(saved.key(), Rdb.TYPE_LIST, saved.expiryTime());
+                writeListValue(saved.elements());
+            }
+            case STREAM -> {
+                Stream stream = value.getStream();
+                writeKeyHeader(saved.key(), Rdb.TYPE_STREAM_ENTRIES, saved.expiryTime());
+                writeStreamHeader(saved.streamSize());
+                for (int i = 0; i < saved.streamSize(); i++) {
+                    writeStreamEntry(stream.get(i));
+                }
+            }
+        }
+    }
+
+    void writeStringValue(byte[] value) throws IOException {
+        writeString(value);
+    }
+
+    // Small numbers take the compact integer encodings; anything wider than 32 bits goes as digits.
+    void writeIntegerValue(long value) throws IOException {
+        if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+            writeByte((Rdb.LENGTH_ENCODED << 6) | Rdb.ENCODING_INT8);
+            writeByte((int) value);
+        } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+            writeByte((Rdb.LENGTH_ENCODED << 6) | Rdb.ENCODING_INT16);
+            writeByte((int) value);
+            writeByte((int) (value >> 8));
+        } else if (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE) {
+            writeByte((Rdb.LENGTH_ENCODED << 6) | Rdb.ENCODING_INT32);
+            for (int i = 0; i < 4; i++) {
+                writeByte((int) (value >> (8 * i)));
+            }
+        } else {
+            writeString(Long.toString(value).getBytes(StandardCharsets.US_ASCII));
+        }
+    }
+
+    void writeListValue(byte[][] elements) throws IOException {
+        writeLength(elements.length);
+        for (byte[] element : elements) {
+            writeString(element);
+        }
+    }
+
+    void writeStreamHeader(int entries) throws IOException {
+        writeLength(entries);
+    }
+
+    void writeStreamEntry(Entry entry) throws IOException {
+        StreamId id = entry.getStreamId();
+        writeLongLittleEndian(id.milliseconds());
+        writeLongLittleEndian(id.sequenceNumber());
+        byte[][] fields = entry.getFields();
+        writeLength(fields.length);
+        for (byte[] field : fields) {
+            writeString(field);
+        }
+    }
+
+    // EOF opcode then the checksum of everything before it, flushed and forced to disk.
+    void finish() throws IOException {
+        writeByte(Rdb.OPCODE_EOF);
+        flush();
+        ByteBuffer trailer = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN).putLong(0, checksum);
+        writeFully(trailer);
+        channel.force(true);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private void writeString(byte[] value) throws IOException {
+        writeLength(value.length);
+        writeBytes(value);
+    }
+
+    private void writeLength(long length) throws IOException {
+        if (length < 1 << 6) {
+            writeByte((Rdb.LENGTH_6BIT << 6) | (int) length);
+        } else if (length < 1 << 14) {
+            writeByte((Rdb.LENGTH_14BIT << 6) | (int) (length >> 8));
+            writeByte((int) length);
+        } else if (length <= 0xFFFFFFFFL) {
+            writeByte(Rdb.LENGTH_32BIT);
+            for (int i = 3; i >= 0; i--) {
+                writeByte((int) (length >> (8 * i)));
+            }
+        } else {
+            writeByte(Rdb.LENGTH_64BIT);
+            for (int i = 7; i >= 0; i--) {
+                writeByte((int) (length >> (8 * i)));
+            }
+        }
+    }
+
+    private void writeLongLittleEndian(long value) throws IOException {
+        for (int i = 0; i < 8; i++) {
+            writeByte((int) (value >>> (8 * i)));
+        }
+    }
+
+    private void writeByte(int b) throws IOException {
+        if (position == buffer.length) {
+            flush();
+        }
+        buffer[position++] = (byte) b;
+    }
+
+    private void writeBytes(byte[] bytes) throws IOException {
+        if (bytes.length > buffer.length - position) {
+            flush();
+            // Large values skip the buffer rather than being copied through it in pieces.
+            if (bytes.length >= buffer.length) {
+                checksum = Crc64.update(checksum, bytes, 0, bytes.length);
+                writeFully(ByteBuffer.wrap(bytes));
+                return;
+            }
+        }
+        System.arraycopy(bytes, 0, buffer, position, bytes.length);
+        position += bytes.length;
+    }
+
+    // Everything but the trailer reaches the file through here or the large-value path above.
+    private void flush() throws IOException {
+        checksum = Crc64.update(checksum, buffer, 0, position);
+        writeFully(ByteBuffer.wrap(buffer, 0, position));
+        position = 0;
+    }
+
+    private void writeFully(ByteBuffer bytes) throws IOException {
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package Service;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+// Wake-ups raised while a command runs. Blocked clients are served only after the command has released
+// its key locks and been logged (Redis's ready_keys), so a pop made for a blocked client never reaches
+// the AOF ahead of the push that fed it, and serving never takes locks while the command holds others.
+final class ReadyKeys {
+
+    // One per thread, reused by every command that runs on it, so opening a batch allocates nothing.
+    private static final class Batch {
+        private final Deque<Runnable> queue = new ArrayDeque<>();
+        private boolean open;
+    }
+
+    private static final ThreadLocal<Batch> batches = ThreadLocal.withInitial(Batch::new);
+
+    private ReadyKeys() {
+    }
+
+    // Opens a batch on this thread; false if one is already open (a nested command joins the outer batch).
+    static boolean begin() {
+        Batch batch = batches.get();
+        if (batch.open) {
+            return false;
+        }
+        batch.open = true;
+        return true;
+    }
+
+    // Runs the deferred wake-ups in order, including any raised by serving them, and closes the batch.
+    static void end() {
+        Batch batch = batches.get();
+        try {
+            Runnable signal;
+            while ((signal = batch.queue.poll()) != null) {
+                signal.run();
+            }
+        } finally {
+            batch.queue.clear();
+            batch.open = false;
+        }
+    }
+
+    // Queues the wake-up, in a batch of its own when called outside of a command.
+    static void signal(Runnable wakeUp) {
+        Batch batch = batches.get();
+        if (batch.open) {
+            batch.queue.add(wakeUp);
+            return;
+        }
+        begin();
+        batch.queue.add(wakeUp);
+        end();
+    }
+}
@@ -0,0 +1,195 @@
+package Service;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.channels.WritableByteChannel;
+
+// A replica connected to this server, seen from the master side. Once it has been given its starting
+// point, a sender thread of its own writes straight to the connection: first the sync reply and any
+// snapshot, then the stream out of the backlog from the offset it was synced to. The connection's
+// event loop or client thread keeps reading the replica's REPLCONF ACKs, and its replies are dropped.
+class ReplicaLink {
+
+    private static final LogService log = LogService.getInstance();
+
+    enum State {
+        HANDSHAKE("handshake"), WAIT_BGSAVE("wait_bgsave"), SEND_BULK("send_bulk"), ONLINE("online");
+
+        private final String infoName;
+
+        State(String infoName) {
+            this.infoName = infoName;
+        }
+
+        String infoName() {
+            return infoName;
+        }
+    }
+
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    private final ReplicationService replication;
+    private final CommandProcessor client;
+    private final WritableByteChannel output;
+    private final InetSocketAddress peer;
+    private volatile State state = State.HANDSHAKE;
+    private volatile int listeningPort;
+    // The next stream byte to send, touched only by the sender thread once it runs.
+    private long sentOffset;
+    private volatile long ackOffset;
+    private volatile long lastAckMillis = System.currentTimeMillis();
+    private volatile boolean closed;
+    private Selector writeSelector;
+
+    ReplicaLink(ReplicationService replication, CommandProcessor client, WritableByteChannel output, InetSocketAddress peer) {
+        this.replication = replication;
+        this.client = client;
+        this.output = output;
+        this.peer = peer;
+    }
+
+    CommandProcessor getClient() {
+        return client;
+    }
+
+    State getState() {
+        return state;
+    }
+
+    void setState(State state) {
+        this.state = state;
+    }
+
+    String getHost() {
+        return peer == null ? "?" : peer.getAddress().getHostAddress();
+    }
+
+    int getListeningPort() {
+        return listeningPort != 0 || peer == null ? listeningPort : peer.getPort();
+    }
+
+    void setListeningPort(int listeningPort) {
+        this.listeningPort = listeningPort;
+    }
+
+    long getAckOffset() {
+        return ackOffset;
+    }
+
+    long getLastAckMillis() {
+        return lastAckMillis;
+    }
+
+    void acknowledge(long offset) {
+        ackOffset = Math.max(ackOffset, offset);
+        lastAckMillis = System.currentTimeMillis();
+    }
+
+    boolean isClosed() {
+        return closed;
+    }
+
+    // Starts the sender: the reply line, then the snapshot if there is one, then the stream from offset
+    // on. The snapshot is discarded once sent.
+    void start(byte[] reply, KeyspaceCapture snapshot, long offset) {
+        sentOffset = offset;
+        ackOffset = Math.max(ackOffset, offset);
+        Thread sender = new Thread(() -> run(reply, snapshot), "replica-sender-" + getHost() + ":" + getListeningPort());
+        sender.setDaemon(true);
+        sender.start();
+    }
+
+    private void run(byte[] reply, KeyspaceCapture snapshot) {
+        try {
+            writeFully(ByteBuffer.wrap(reply));
+            if (snapshot != null) {
+                state = State.SEND_BULK;
+                sendFile(snapshot.getFile());
+                snapshot.discard();
+                snapshot = null;
+            }
+            state = State.ONLINE;
+            log.notice("Synchronization with replica " + getHost() + ":" + getListeningPort() + " succeeded");
+            byte[] chunk = new byte[CHUNK_SIZE];
+            while (!closed) {
+                int read = replication.readStream(this, sentOffset, chunk);
+                if (read < 0) {
+                    log.warning("Replica " + getHost() + ":" + getListeningPort()
+                            + " fell behind the replication backlog, disconnecting it");
+                    break;
+                }
+                writeFully(ByteBuffer.wrap(chunk, 0, read));
+                sentOffset += read;
+            }
+        } catch (IOException e) {
+            if (!closed) {
+                log.warning("Lost connection to replica " + getHost() + ":" + getListeningPort() + ": " + e.getMessage());
+            }
+        } finally {
+            if (snapshot != null) {
+                snapshot.discard();
+            }
+            close();
+            if (writeSelector != null) {
+                try {
+                    writeSelector.close();
+                } catch (IOException e) {
+                    log.verbose("IOException: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void sendFile(FileChannel file) throws IOException {
+        ByteBuffer chunk = ByteBuffer.allocate(CHUNK_SIZE);
+        long size = file.size();
+        for (long position = 0; position < size; ) {
+            chunk.clear();
+            int read = file.read(chunk, position);
+            if (read < 0) {
+                throw new IOException("snapshot file truncated");
+            }
+            position += read;
+            chunk.flip();
+            writeFully(chunk);
+        }
+    }
+
+    // An event-loop connection is non-blocking: a full socket buffer is waited out on a selector of
+    // the sender's own, leaving the event loop's registration alone.
+    private void writeFully(ByteBuffer bytes) throws IOException {
+        while (bytes.hasRemaining()) {
+            if (output.write(bytes) > 0 || !(output instanceof SocketChannel socket)) {
+                continue;
+            }
+            if (writeSelector == null) {
+                writeSelector = Selector.open();
+                socket.register(writeSelector, SelectionKey.OP_WRITE);
+            }
+            writeSelector.select(1000);
+            writeSelector.selectedKeys().clear();
+            if (closed) {
+                throw new IOException("link closed");
+            }
+        }
+    }
+
+    // Called by the sender when it stops, and by the connection when it goes away.
+    synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        replication.detach(this);
+        try {
+            output.close();
+        } catch (IOException e) {
+            log.verbose("IOException: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package Service;
+
+// The last bytes of the replication stream in a fixed-size ring, addressed by stream offset: what a
+// replica that reconnects within it can be sent instead of a full resync. Guarded by the owner's lock.
+class ReplicationBacklog {
+
+    private byte[] buffer;
+    // Offset of the byte after the newest one, and how many bytes before it the ring still holds.
+    private long endOffset;
+    private int length;
+
+    ReplicationBacklog(int capacity, long offset) {
+        this.buffer = new byte[capacity];
+        this.endOffset = offset;
+    }
+
+    long getStartOffset() {
+        return endOffset - length;
+    }
+
+    long getEndOffset() {
+        return endOffset;
+    }
+
+    int getLength() {
+        return length;
+    }
+
+    int getCapacity() {
+        return buffer.length;
+    }
+
+    void append(byte[] bytes, int offset, int count) {
+        // Only the tail of a record larger than the ring can survive in it.
+        if (count > buffer.length) {
+            offset += count - buffer.length;
+            endOffset += count - buffer.length;
+            count = buffer.length;
+        }
+        int at = (int) (endOffset % buffer.length);
+        int first = Math.min(count, buffer.length - at);
+        System.arraycopy(bytes, offset, buffer, at, first);
+        System.arraycopy(bytes, offset + first, buffer, 0, count - first);
+        endOffset += count;
+        length = Math.min(buffer.length, length + count);
+    }
+
+    // Copies up to into.length bytes starting at stream offset from, which must be within the ring.
+    int read(long from, byte[] into) {
+        int count = (int) Math.min(into.length, endOffset - from);
+        int at = (int) (from % buffer.length);
+        int first = Math.min(count, buffer.length - at);
+        System.arraycopy(buffer, at, into, 0, first);
+        System.arraycopy(buffer, 0, into, first, count - first);
+        return count;
+    }
+
+    // Keeps the newest bytes that still fit.
+    void resize(int capacity) {
+        if (capacity == buffer.length) {
+            return;
+        }
+        ReplicationBacklog resized = new ReplicationBacklog(capacity, getStartOffset());
+        byte[] chunk = new byte[Math.min(length, 64 * 1024)];
+        for (long from = getStartOffset(); from < endOffset; ) {
+            int read = read(from, chunk);
+            resized.append(chunk, 0, read);
+            from += read;
+        }
+        buffer = resized.buffer;
+        length = resized.length;
+    }
+}
@@ -0,0 +1,91 @@
+package Service;
+
+import Service.CommandSpec.Flag;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Locale;
+
+public class ReplicationCommands {
+
+    private final ReplicationService replication = ReplicationService.getInstance();
+
+    public void register(CommandRegistry registry) {
+        registry.register(new CommandSpec("replconf", -1, EnumSet.of(Flag.ADMIN), 0, 0, 0, this::replconf));
+        registry.register(new CommandSpec("psync", -3, EnumSet.of(Flag.ADMIN), 0, 0, 0, this::psync));
+        registry.register(new CommandSpec("wait", 3, EnumSet.of(Flag.BLOCKING), 0, 0, 0, this::waitCommand));
+        registry.register(new CommandSpec("replicaof", 3, EnumSet.of(Flag.ADMIN), 0, 0, 0, this::replicaof));
+        registry.register(new CommandSpec("slaveof", 3, EnumSet.of(Flag.ADMIN), 0, 0, 0, this::replicaof));
+        registry.register(new CommandSpec("role", 1, EnumSet.of(Flag.FAST), 0, 0, 0, this::role));
+    }
+
+    // Options come in pairs. ACK carries no reply, as the replica does not read any once synced.
+    private void replconf(CommandProcessor client, List<String> arguments) {
+        if (arguments.size() % 2 == 0) {
+            throw new RuntimeException("syntax error");
+        }
+        for (int i = 1; i < arguments.size(); i += 2) {
+            String option = arguments.get(i).toLowerCase(Locale.ROOT);
+            String value = arguments.get(i + 1);
+            switch (option) {
+                case "listening-port" -> replication.linkFor(client).setListeningPort(Integer.parseInt(value));
+                case "capa", "ip-address", "rdb-only", "rdb-filter-only" -> {
+                }
+                case "ack" -> {
+                    ReplicaLink link = client.getReplicaLink();
+                    if (link != null) {
+                        replication.acknowledge(link, Long.parseLong(value));
+                    }
+                    return;
+                }
+                case "getack" -> {
+                    return;
+                }
+                default -> throw new RuntimeException("Unrecognized REPLCONF option: " + arguments.get(i));
+            }
+        }
+        client.getOutput().writeRaw(OutputEncoderService.OK);
+    }
+
+    private void psync(CommandProcessor client, List<String> arguments) {
+        long offset = "?".equals(arguments.get(1)) ? -1 : Long.parseLong(arguments.get(2));
+        replication.sync(client, arguments.get(1), offset);
+    }
+
+    private void waitCommand(CommandProcessor client, List<String> arguments) {
+        int replicas = Integer.parseInt(arguments.get(1));
+        long timeoutMillis = Long.parseLong(arguments.get(2));
+        if (timeoutMillis < 0) {
+            throw new RuntimeException("timeout is negative");
+        }
+        replication.waitForReplicas(client, replicas, timeoutMillis);
+    }
+
+    private void replicaof(CommandProcessor client, List<String> arguments) {
+        String host = arguments.get(1);
+        String port = arguments.get(2);
+        if ("no".equalsIgnoreCase(host) && "one".equalsIgnoreCase(port)) {
+            replication.promote();
+            client.getOutput().writeRaw(OutputEncoderService.OK);
+            return;
+        }
+        int portNumber;
+        try {
+            portNumber = Integer.parseInt(port);
+        } catch (NumberFormatException e) {
+            throw new RuntimeException("Invalid master port");
+        }
+        if (client.isReplica()) {
+            throw new RuntimeException("Command is not valid when client is a replica.");
+        }
+        if (!replication.replicaOf(host, portNumber)) {
+            client.getOutput().encodeSimpleString("OK Already connected to specified master");
+            return;
+        }
+        client.getOutput().writeRaw(OutputEncoderService.OK);
+    }
+
+    private void role(CommandProcessor client, List<String> arguments) {
+        replication.encodeRole(client.getOutput());
+    }
+}
@@ -0,0 +1,525 @@
+package Service;
+
+import Models.DataStore;
+import Models.ServerConfig;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Master-replica replication. Every write is encoded once into the replication stream, whose last
+// repl-backlog-size bytes are kept in a ring; each replica's sender thread reads the stream out of the
+// ring at its own pace, so a write costs the same however many replicas are attached. A replica that
+// asks to continue from an offset still in the ring gets just the bytes after it; anything else is a
+// full resync: a KeyspaceCapture of the dataset (no fork) sent as one payload, followed by the stream
+// from the offset the capture ends at. Offsets count stream bytes, as in Redis: a replica's offset is
+// its master's once it has applied everything sent.
+public class ReplicationService {
+
+    private static final LogService log = LogService.getInstance();
+
+    private static final String NO_REPLICATION_ID = "0000000000000000000000000000000000000000";
+
+    private static ReplicationService instance;
+
+    private final DataStore dataStore = DataStore.getInstance();
+    private final ServerConfig config = ServerConfig.getInstance();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition fed = lock.newCondition();
+    // Guarded by lock.
+    private final OutputEncoderService encoder = new OutputEncoderService();
+    private ReplicationBacklog backlog;
+    private String replicationId = newReplicationId();
+    private String previousReplicationId = NO_REPLICATION_ID;
+    private long previousOffsetLimit = -1;
+    private final List<AckWaiter> ackWaiters = new ArrayList<>();
+    private volatile long offset;
+    private volatile boolean active;
+    private final List<ReplicaLink> replicas = new CopyOnWriteArrayList<>();
+    private final List<KeyspaceCapture> syncs = new CopyOnWriteArrayList<>();
+    private final AtomicInteger syncCount = new AtomicInteger();
+    private volatile MasterLink masterLink;
+
+    // A WAIT in progress: how many replicas must acknowledge the stream up to offset.
+    private static class AckWaiter {
+        final long offset;
+        final int replicas;
+        BlockedClient blockedClient;
+
+        AckWaiter(long offset, int replicas) {
+            this.offset = offset;
+            this.replicas = replicas;
+        }
+    }
+
+    private ReplicationService() {
+    }
+
+    public static synchronized ReplicationService getInstance() {
+        if(instance == null) {
+            instance = new ReplicationService();
+        }
+        return instance;
+    }
+
+    private static String newReplicationId() {
+        StringBuilder id = new StringBuilder(40);
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < 40; i++) {
+            id.append(Character.forDigit(random.nextInt(16), 16));
+        }
+        return id.toString();
+    }
+
+    // True once there is a stream to feed: since the first replica attached, or while this is a replica.
+    public boolean isActive() {
+        return active;
+    }
+
+    public boolean isReplica() {
+        return masterLink != null;
+    }
+
+    public long getOffset() {
+        return offset;
+    }
+
+    private void ensureBacklog() {
+        lock.lock();
+        try {
+            if (backlog == null) {
+                backlog = new ReplicationBacklog((int) config.getReplBacklogSize(), offset);
+                active = true;
+            } else {
+                backlog.resize((int) config.getReplBacklogSize());
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Called by a write command with its keys locked, before it changes them.
+    public void beforeWrite(List<String> keys) {
+        for (KeyspaceCapture sync : syncs) {
+            sync.beforeWrite(keys);
+        }
+    }
+
+    // Adds one applied write to the stream, called with its keys still locked.
+    public void feed(List<String> keys, List<String> command) {
+        lock.lock();
+        try {
+            if (backlog == null) {
+                return;
+            }
+            append(command);
+            for (KeyspaceCapture sync : syncs) {
+                sync.record(keys, command);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Stream items that are not writes to the dataset, like REPLCONF GETACK, which no snapshot needs.
+    public void feedStream(List<String> command) {
+        lock.lock();
+        try {
+            if (backlog != null) {
+                append(command);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Called with lock held.
+    private void append(List<String> command) {
+        encoder.reset();
+        encoder.encodeList(command);
+        backlog.append(encoder.getBuffer(), 0, encoder.size());
+        offset = backlog.getEndOffset();
+        fed.signalAll();
+    }
+
+    // For a replica's sender: copies stream bytes from offset from on, waiting up to a second for some.
+    // Returns 0 if there were none, -1 if from has already been overwritten in the backlog.
+    int readStream(ReplicaLink replica, long from, byte[] into) {
+        lock.lock();
+        try {
+            if (backlog == null || from < backlog.getStartOffset()) {
+                return -1;
+            }
+            if (from == backlog.getEndOffset() && !replica.isClosed()) {
+                fed.await(1, TimeUnit.SECONDS);
+            }
+            if (backlog == null || from < backlog.getStartOffset()) {
+                return -1;
+            }
+            return from == backlog.getEndOffset() ? 0 : backlog.read(from, into);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return -1;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // REPLCONF from a connection that is about to become a replica: the link it will be served through.
+    ReplicaLink linkFor(CommandProcessor client) {
+        ReplicaLink link = client.getReplicaLink();
+        if (link == null) {
+            link = new ReplicaLink(this, client, client.getRawOutput(), client.getPeer());
+            client.setReplicaLink(link);
+        }
+        return link;
+    }
+
+    // PSYNC: continues the replica from its offset if the backlog still has everything after it,
+    // otherwise starts a full resync. Either way the reply goes out on the link's sender, not the
+    // client's output. The offset requested is the replica's plus one, as Redis counts it.
+    void sync(CommandProcessor client, String requestedId, long requestedOffset) {
+        MasterLink master = masterLink;
+        if (master != null && !master.isUp()) {
+            throw new RuntimeException("-NOMASTERLINK Can't SYNC while not connected with my master");
+        }
+        if (client.getRawOutput() == null) {
+            throw new RuntimeException("PSYNC is not supported on this connection");
+        }
+        ensureBacklog();
+        ReplicaLink link = linkFor(client);
+        link.setState(ReplicaLink.State.WAIT_BGSAVE);
+        lock.lock();
+        try {
+            long from = requestedOffset - 1;
+            boolean sameHistory = replicationId.equals(requestedId)
+                    || (previousReplicationId.equals(requestedId) && requestedOffset <= previousOffsetLimit);
+            replicas.add(link);
+            if (sameHistory && from >= backlog.getStartOffset() && from <= backlog.getEndOffset()) {
+                log.notice(String.format("Partial resynchronization request from %s:%d accepted. Sending %d bytes of backlog "
+                        + "starting from offset %d.", link.getHost(), link.getListeningPort(), offset - from, requestedOffset));
+                link.start(("+CONTINUE " + replicationId + "\r\n").getBytes(StandardCharsets.US_ASCII), null, from);
+                return;
+            }
+        } finally {
+            lock.unlock();
+        }
+        log.notice(String.format("Replica %s:%d asks for synchronization, starting a full resync", link.getHost(),
+                link.getListeningPort()));
+        Thread thread = new Thread(() -> fullSync(link), "repl-sync");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void fullSync(ReplicaLink link) {
+        KeyspaceCapture capture = null;
+        try {
+            Path path = Path.of(config.getDir(), "temp-sync-" + ProcessHandle.current().pid() + "-"
+                    + syncCount.incrementAndGet() + ".rdb");
+            lock.lock();
+            try {
+                capture = new KeyspaceCapture(path);
+                syncs.add(capture);
+            } finally {
+                lock.unlock();
+            }
+            capture.walk();
+            long start;
+            String id;
+            lock.lock();
+            try {
+                capture.finish();
+                syncs.remove(capture);
+                start = offset;
+                id = replicationId;
+            } finally {
+                lock.unlock();
+            }
+            if (link.isClosed()) {
+                capture.discard();
+                return;
+            }
+            byte[] reply = ("+FULLRESYNC " + id + " " + start + "\r\n$" + capture.getFile().size() + "\r\n")
+                    .getBytes(StandardCharsets.US_ASCII);
+            link.start(reply, capture, start);
+        } catch (IOException | RuntimeException e) {
+            log.warning("Can't produce the snapshot for a replica sync: " + e.getMessage());
+            if (capture != null) {
+                syncs.remove(capture);
+                capture.discard();
+            }
+            link.close();
+        }
+    }
+
+    void detach(ReplicaLink link) {
+        replicas.remove(link);
+        lock.lock();
+        try {
+            fed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // REPLCONF ACK: the replica has applied the stream up to offset.
+    void acknowledge(ReplicaLink link, long ackOffset) {
+        link.acknowledge(ackOffset);
+        List<AckWaiter> satisfied = new ArrayList<>();
+        lock.lock();
+        try {
+            for (int i = 0; i < ackWaiters.size(); i++) {
+                AckWaiter waiter = ackWaiters.get(i);
+                if (countAcknowledged(waiter.offset) >= waiter.replicas && waiter.blockedClient.tryClaim()) {
+                    ackWaiters.remove(i--);
+                    satisfied.add(waiter);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        for (AckWaiter waiter : satisfied) {
+            waiter.blockedClient.getOutput().encodeInteger(countAcknowledged(waiter.offset));
+            waiter.blockedClient.resume();
+        }
+    }
+
+    private int countAcknowledged(long target) {
+        int count = 0;
+        for (ReplicaLink replica : replicas) {
+            if (replica.getState() == ReplicaLink.State.ONLINE && replica.getAckOffset() >= target) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    // WAIT: replies with how many replicas have acknowledged the client's writes, once enough have or
+    // the timeout passes. The replicas are asked for an acknowledgement right away.
+    void waitForReplicas(CommandProcessor client, int replicaCount, long timeoutMillis) {
+        if (isReplica()) {
+            throw new RuntimeException("WAIT cannot be used with replica instances.");
+        }
+        long target = client.getReplicationOffset();
+        int acknowledged = countAcknowledged(target);
+        if (acknowledged >= replicaCount || client.isExecuting()) {
+            client.getOutput().encodeInteger(acknowledged);
+            return;
+        }
+        AckWaiter waiter = new AckWaiter(target, replicaCount);
+        waiter.blockedClient = new BlockedClient(client, () -> {
+            lock.lock();
+            try {
+                ackWaiters.remove(waiter);
+            } finally {
+                lock.unlock();
+            }
+        });
+        lock.lock();
+        try {
+            ackWaiters.add(waiter);
+        } finally {
+            lock.unlock();
+        }
+        waiter.blockedClient.startTimeout(timeoutMillis,
+                () -> waiter.blockedClient.getOutput().encodeInteger(countAcknowledged(target)));
+        feedStream(List.of("REPLCONF", "GETACK", "*"));
+    }
+
+    // REPLICAOF host port. False if already replicating that master.
+    public synchronized boolean replicaOf(String host, int port) {
+        MasterLink current = masterLink;
+        if (current != null && current.isFor(host, port)) {
+            return false;
+        }
+        if (current != null) {
+            current.stop();
+        }
+        ensureBacklog();
+        config.setReplicaof(host + " " + port);
+        masterLink = new MasterLink(this, host, port);
+        masterLink.start();
+        log.notice("Connecting to MASTER " + host + ":" + port);
+        return true;
+    }
+
+    // REPLICAOF NO ONE. The history so far stays valid under the old id, so replicas of the old master
+    // that are at or behind this point can continue from this server without a full resync.
+    public synchronized void promote() {
+        MasterLink current = masterLink;
+        if (current == null) {
+            return;
+        }
+        current.stop();
+        masterLink = null;
+        config.setReplicaof("");
+        lock.lock();
+        try {
+            previousReplicationId = replicationId;
+            previousOffsetLimit = offset + 1;
+            replicationId = newReplicationId();
+        } finally {
+            lock.unlock();
+        }
+        log.notice("MASTER MODE enabled");
+    }
+
+    // What the master link asks PSYNC for: "? -1" until this server has any history.
+    String[] resyncArguments() {
+        lock.lock();
+        try {
+            if (offset == 0) {
+                return new String[]{"?", "-1"};
+            }
+            return new String[]{replicationId, String.valueOf(offset + 1)};
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // +CONTINUE with the master's id, which differs from ours after a failover on its side.
+    void continueWith(String masterId) {
+        lock.lock();
+        try {
+            if (masterId != null && !masterId.equals(replicationId)) {
+                previousReplicationId = replicationId;
+                previousOffsetLimit = offset + 1;
+                replicationId = masterId;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // +FULLRESYNC: replaces the dataset with the payload in file, after which this server's history is
+    // the master's from masterOffset. Our own replicas have the old dataset, so they must resync too.
+    void loadFullSync(Path file, String masterId, long masterOffset) throws IOException {
+        lock.lock();
+        try {
+            backlog = null;
+            active = false;
+        } finally {
+            lock.unlock();
+        }
+        for (KeyspaceCapture sync : syncs) {
+            sync.abort();
+        }
+        for (ReplicaLink replica : replicas) {
+            replica.close();
+        }
+        AofService aofService = AofService.getInstance();
+        boolean logging = aofService.isLogging();
+        if (logging) {
+            aofService.setEnabled(false);
+        }
+        long start = System.nanoTime();
+        dataStore.flushAll();
+        AofLoader loader = null;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            AofLoader reading = new AofLoader(channel);
+            reading.load(dataStore);
+            if (reading.getValidLength() != channel.size()) {
+                throw new IOException("truncated sync payload");
+            }
+            loader = reading;
+        } finally {
+            lock.lock();
+            try {
+                previousReplicationId = NO_REPLICATION_ID;
+                previousOffsetLimit = -1;
+                if (loader != null) {
+                    replicationId = masterId;
+                    offset = masterOffset;
+                } else {
+                    // Half a dataset matches no history: the next attempt must be a full resync again.
+                    replicationId = newReplicationId();
+                }
+                backlog = new ReplicationBacklog((int) config.getReplBacklogSize(), offset);
+                active = true;
+            } finally {
+                lock.unlock();
+            }
+            if (logging) {
+                aofService.setEnabled(true);
+            }
+        }
+        log.notice(String.format("MASTER <-> REPLICA sync: loaded %d keys and %d commands in %.3f seconds",
+                loader.getKeysLoaded(), loader.getCommands(), (System.nanoTime() - start) / 1e9));
+    }
+
+    public void appendInfo(StringBuilder info) {
+        info.append("# Replication\r\n");
+        MasterLink master = masterLink;
+        if (master == null) {
+            info.append("role:master\r\n");
+        } else {
+            info.append("role:slave\r\n");
+            info.append("master_host:").append(master.getHost()).append("\r\n");
+            info.append("master_port:").append(master.getPort()).append("\r\n");
+            info.append("master_link_status:").append(master.isUp() ? "up" : "down").append("\r\n");
+            info.append("master_last_io_seconds_ago:").append(master.getLastIoSecondsAgo()).append("\r\n");
+            info.append("master_sync_in_progress:").append(master.isSyncing() ? 1 : 0).append("\r\n");
+            info.append("slave_read_repl_offset:").append(offset).append("\r\n");
+            info.append("slave_repl_offset:").append(offset).append("\r\n");
+            info.append("slave_read_only:1\r\n");
+        }
+        info.append("connected_slaves:").append(replicas.size()).append("\r\n");
+        long now = System.currentTimeMillis();
+        int index = 0;
+        for (ReplicaLink replica : replicas) {
+            info.append("slave").append(index++).append(":ip=").append(replica.getHost())
+                    .append(",port=").append(replica.getListeningPort())
+                    .append(",state=").append(replica.getState().infoName())
+                    .append(",offset=").append(replica.getAckOffset())
+                    .append(",lag=").append((now - replica.getLastAckMillis()) / 1000).append("\r\n");
+        }
+        lock.lock();
+        try {
+            info.append("master_replid:").append(replicationId).append("\r\n");
+            info.append("master_replid2:").append(previousReplicationId).append("\r\n");
+            info.append("master_repl_offset:").append(offset).append("\r\n");
+            info.append("second_repl_offset:").append(previousOffsetLimit).append("\r\n");
+            info.append("repl_backlog_active:").append(backlog != null ? 1 : 0).append("\r\n");
+            info.append("repl_backlog_size:").append(config.getReplBacklogSize()).append("\r\n");
+            info.append("repl_backlog_first_byte_offset:").append(backlog == null ? 0 : backlog.getStartOffset() + 1).append("\r\n");
+            info.append("repl_backlog_histlen:").append(backlog == null ? 0 : backlog.getLength()).append("\r\n");
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // ROLE.
+    void encodeRole(OutputEncoderService output) {
+        MasterLink master = masterLink;
+        if (master == null) {
+            output.encodeArrayHeader(3);
+            output.encodeBulkString("master");
+            output.encodeInteger(offset);
+            List<ReplicaLink> online = replicas.stream().filter(r -> r.getState() == ReplicaLink.State.ONLINE).toList();
+            output.encodeArrayHeader(online.size());
+            for (ReplicaLink replica : online) {
+                output.encodeArrayHeader(3);
+                output.encodeBulkString(replica.getHost());
+                output.encodeBulkString(String.valueOf(replica.getListeningPort()));
+                output.encodeBulkString(String.valueOf(replica.getAckOffset()));
+            }
+        } else {
+            output.encodeArrayHeader(5);
+            output.encodeBulkString("slave");
+            output.encodeBulkString(master.getHost());
+            output.encodeInteger(master.getPort());
+            output.encodeBulkString(master.getState());
+            output.encodeInteger(offset);
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+public class RespParser {
+
+    private static final int INITIAL_CAPACITY = 4096;
+    private static final int MAX_BULK_LENGTH = 512 * 1024 * 1024;
+    private static final int MAX_INLINE_LENGTH = 64 * 1024;
+    private static final int MAX_ARGUMENTS = 1024 * 1024;
+
+    private byte[] buffer = new byte[INITIAL_CAPACITY];
+    private int start;
+    private int end;
+    // A multibulk command read in parts keeps what is parsed of it across calls: its argument count
+    // (-1 between commands), the arguments so far and the length of the next one (-1 until its
+    // header is read). Parsed bytes are dropped, so a large command arriving in chunks is read once.
+    private long multibulkLength = -1;
+    private List<String> arguments;
+    private long bulkLength = -1;
+    // Bytes of the command in progress already dropped from the buffer.
+    private int consumed;
+
+    public void feed(byte[] input, int offset, int length) {
+        ensureWritable(length);
+        System.arraycopy(input, offset, buffer, end, length);
+        end += length;
+    }
+
+    public boolean hasBufferedInput() {
+        return start < end || multibulkLength >= 0;
+    }
+
+    // Bytes fed but not yet returned as a command, i.e. a partial frame at the end of the input.
+    public int bufferedBytes() {
+        return consumed + end - start;
+    }
+
+    // Returns the next complete command, or null when the buffer holds only a partial frame. Empty
+    // frames ("*0", "*-1", a blank inline line) are skipped here, in a loop: a client pipelining
+    // any number of them costs time, never stack.
+    public List<String> next() {
+        while (true) {
+            if (multibulkLength < 0) {
+                while (start < end && (buffer[start] == '\r' || buffer[start] == '\n')) {
+                    start++;
+                }
+                if (start == end) {
+                    reset();
+                    return null;
+                }
+            }
+            List<String> command = multibulkLength >= 0 || buffer[start] == '*' ? parseMultiBulk() : parseInline();
+            if (start == end) {
+                reset();
+            }
+            if (command == null || !command.isEmpty()) {
+                return command;
+            }
+        }
+    }
+
+    private void reset() {
+        start = 0;
+        end = 0;
+        // Give back memory grown for a large frame so idle connections stay small.
+        if (buffer.length > INITIAL_CAPACITY * 16) {
+            buffer = new byte[INITIAL_CAPACITY];
+        }
+    }
+
+    private void consume(int to) {
+        consumed += to - start;
+        start = to;
+    }
+
+    private List<String> parseMultiBulk() {
+        if (multibulkLength < 0) {
+            int lineEnd = findLineEnd(start + 1);
+            if (lineEnd < 0) {
+                if (end - start > MAX_INLINE_LENGTH) {
+                    throw new RuntimeException("Protocol error: too big mbulk count string");
+                }
+                return null;
+            }
+            long count = parseNumber(start + 1, lineEnd, "Protocol error: invalid multibulk length");
+            if (count > MAX_ARGUMENTS) {
+                throw new RuntimeException("Protocol error: invalid multibulk length");
+            }
+            consume(lineEnd + 2);
+            if (count <= 0) {
+                consumed = 0;
+                return List.of();
+            }
+            multibulkLength = count;
+            arguments = new ArrayList<>((int) Math.min(count, 1024));
+        }
+        while (arguments.size() < multibulkLength) {
+            if (bulkLength < 0) {
+                if (start >= end) {
+                    return null;
+                }
+                if (buffer[start] != '$') {
+                    throw new RuntimeException("Protocol error: expected '$', got '" + (char) buffer[start] + "'");
+                }
+                int lineEnd = findLineEnd(start + 1);
+                if (lineEnd < 0) {
+                    if (end - start > MAX_INLINE_LENGTH) {
+                        throw new RuntimeException("Protocol error: too big bulk count string");
+                    }
+                    return null;
+                }
+                long length = parseNumber(start + 1, lineEnd, "Protocol error: invalid bulk length");
+                if (length < 0 || length > MAX_BULK_LENGTH) {
+                    throw new RuntimeException("Protocol error: invalid bulk length");
+                }
+                consume(lineEnd + 2);
+                bulkLength = length;
+            }
+            // The buffer grows with what arrives, not with the length the client announced.
+            if (end - start < bulkLength + 2) {
+                return null;
+            }
+            arguments.add(new String(buffer, start, (int) bulkLength, StandardCharsets.ISO_8859_1));
+            consume(start + (int) bulkLength + 2);
+            bulkLength = -1;
+        }
+        List<String> command = arguments;
+        arguments = null;
+        multibulkLength = -1;
+        consumed = 0;
+        return command;
+    }
+
+    private List<String> parseInline() {
+        int lineEnd = findLineEnd(start);
+        if (lineEnd < 0) {
+            if (end - start > MAX_INLINE_LENGTH) {
+                throw new RuntimeException("Protocol error: too big inline request");
+            }
+            return null;
+        }
+        String line = new String(buffer, start, lineEnd - start, StandardCharsets.ISO_8859_1);
+        start = lineEnd + 2;
+        List<String> arguments = new ArrayList<>();
+        for (String part : line.trim().split("\\s+")) {
+            if (!part.isEmpty()) {
+                arguments.add(part);
+            }
+        }
+        return arguments;
+    }
+
+    private int findLineEnd(int from) {
+        for (int i = from; i + 1 < end; i++) {
+            if (buffer[i] == '\r' && buffer[i + 1] == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private long parseNumber(int from, int to, String error) {
+        boolean negative = from < to && buffer[from] == '-';
+        int first = negative ? from + 1 : from;
+        if (first == to) {
+            throw new RuntimeException(error);
+        }
+        long number = 0;
+        for (int i = first; i < to; i++) {
+            byte digit = buffer[i];
+            if (digit < '0' || digit > '9' || number > (Long.MAX_VALUE - (digit - '0')) / 10) {
+                throw new RuntimeException(error);
+            }
+            number = number * 10 + (digit - '0');
+        }
+        return negative ? -number : number;
+    }
+
+    private void ensureWritable(int length) {
+        if (buffer.length - end >= length) {
+            return;
+        }
+        int used = end - start;
+        if (start > 0 && buffer.length - used >= length) {
+            System.arraycopy(buffer, start, buffer, 0, used);
+        } else {
+            int capacity = buffer.length;
+            while (capacity - used < length) {
+                capacity *= 2;
+            }
+            byte[] grown = new byte[capacity];
+            System.arraycopy(buffer, start, grown, 0, used);
+            buffer = grown;
+        }
+        start = 0;
+        end = used;
+    }
+}
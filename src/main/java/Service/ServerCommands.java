@@ -0,0 +1,335 @@
+package Service;
+
+import Models.DataStore;
+import Models.ExpiryIndex;
+import Models.ServerConfig;
+import Service.CommandSpec.Flag;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+public class ServerCommands {
+
+    private static final List<String> INFO_SECTIONS = List.of("server", "clients", "memory", "persistence", "stats",
+            "replication", "commandstats", "latencystats", "keyspace");
+    private static final List<String> DEFAULT_SECTIONS = List.of("server", "clients", "memory", "persistence", "stats",
+            "replication", "keyspace");
+
+    public void register(CommandRegistry registry) {
+        registry.register(new CommandSpec("ping", -1, EnumSet.of(Flag.FAST), 0, 0, 0, this::ping));
+        registry.register(new CommandSpec("echo", 2, EnumSet.of(Flag.FAST), 0, 0, 0, this::echo));
+        registry.register(new CommandSpec("command", -1, EnumSet.noneOf(Flag.class), 0, 0, 0, this::command));
+        registry.register(new CommandSpec("info", -1, EnumSet.noneOf(Flag.class), 0, 0, 0, this::info));
+        registry.register(new CommandSpec("save", 1, EnumSet.of(Flag.ADMIN), 0, 0, 0, this::save));
+        registry.register(new CommandSpec("bgsave", -1, EnumSet.of(Flag.ADMIN), 0, 0, 0, this::bgsave));
+        registry.register(new CommandSpec("bgrewriteaof", 1, EnumSet.of(Flag.ADMIN), 0, 0, 0, this::bgrewriteaof));
+        registry.register(new CommandSpec("lastsave", 1, EnumSet.of(Flag.FAST), 0, 0, 0, this::lastsave));
+        registry.register(new CommandSpec("config", -2, EnumSet.of(Flag.ADMIN), 0, 0, 0, this::config));
+        registry.register(new CommandSpec("slowlog", -2, EnumSet.of(Flag.ADMIN), 0, 0, 0, this::slowlog));
+        registry.register(new CommandSpec("latency", -2, EnumSet.of(Flag.ADMIN), 0, 0, 0, this::latency));
+        registry.register(new CommandSpec("monitor", 1, EnumSet.of(Flag.ADMIN), 0, 0, 0, this::monitor));
+    }
+
+    // A subscribed client gets its pong in the shape of a message, as Redis sends it.
+    private void ping(CommandProcessor client, List<String> arguments) {
+        if (client.isSubscribed()) {
+            client.getOutput().encodeArrayHeader(2);
+            client.getOutput().encodeBulkString("pong");
+            client.getOutput().encodeBulkString(arguments.size() > 1 ? arguments.get(1) : "");
+            return;
+        }
+        if (arguments.size() > 1) {
+            client.getOutput().encodeBulkString(arguments.get(1));
+            return;
+        }
+        client.getOutput().writeRaw(OutputEncoderService.PONG);
+    }
+
+    private void echo(CommandProcessor client, List<String> arguments) {
+        client.getOutput().encodeBulkString(arguments.get(1));
+    }
+
+    private void command(CommandProcessor client, List<String> arguments) {
+        OutputEncoderService output = client.getOutput();
+        CommandRegistry registry = CommandRegistry.getInstance();
+        if (arguments.size() == 1) {
+            output.encodeArrayHeader(registry.getCommands().size());
+            registry.getCommands().forEach(spec -> encodeCommandInfo(output, spec));
+            return;
+        }
+        String subcommand = arguments.get(1);
+        if ("COUNT".equalsIgnoreCase(subcommand)) {
+            output.encodeInteger(registry.getCommands().size());
+        } else if ("INFO".equalsIgnoreCase(subcommand)) {
+            output.encodeArrayHeader(arguments.size() - 2);
+            for (int i = 2; i < arguments.size(); i++) {
+                CommandSpec spec = registry.lookup(arguments.get(i));
+                if (spec == null) {
+                    output.writeRaw(OutputEncoderService.NULL_ARRAY);
+                } else {
+                    encodeCommandInfo(output, spec);
+                }
+            }
+        } else if ("DOCS".equalsIgnoreCase(subcommand)) {
+            output.writeRaw(OutputEncoderService.EMPTY_ARRAY);
+        } else {
+            throw new RuntimeException("unknown subcommand '" + subcommand + "'. Try COMMAND HELP.");
+        }
+    }
+
+    private void encodeCommandInfo(OutputEncoderService output, CommandSpec spec) {
+        output.encodeArrayHeader(6);
+        output.encodeBulkString(spec.getName());
+        output.encodeInteger(spec.getArity());
+        output.encodeArrayHeader(spec.getFlags().size());
+        spec.getFlags().forEach(flag -> output.encodeSimpleString(flag.replyName()));
+        output.encodeInteger(spec.getFirstKey());
+        output.encodeInteger(spec.getLastKey());
+        output.encodeInteger(spec.getKeyStep());
+    }
+
+    private void save(CommandProcessor client, List<String> arguments) {
+        // EXEC holds its keys' locks, and the snapshot has to take them all.
+        if (client.isExecuting()) {
+            throw new RuntimeException("Command not allowed inside a transaction");
+        }
+        try {
+            SnapshotService.getInstance().save();
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to save: " + e.getMessage());
+        }
+        client.getOutput().writeRaw(OutputEncoderService.OK);
+    }
+
+    private void bgsave(CommandProcessor client, List<String> arguments) {
+        if (!SnapshotService.getInstance().backgroundSave()) {
+            throw new RuntimeException("Background save already in progress");
+        }
+        client.getOutput().encodeSimpleString("Background saving started");
+    }
+
+    private void bgrewriteaof(CommandProcessor client, List<String> arguments) {
+        if (!AofService.getInstance().startRewrite()) {
+            throw new RuntimeException("Background append only file rewriting already in progress");
+        }
+        client.getOutput().encodeSimpleString("Background append only file rewriting started");
+    }
+
+    private void lastsave(CommandProcessor client, List<String> arguments) {
+        client.getOutput().encodeInteger(SnapshotService.getInstance().getLastSaveTime() / 1000);
+    }
+
+    private void config(CommandProcessor client, List<String> arguments) {
+        OutputEncoderService output = client.getOutput();
+        ServerConfig config = ServerConfig.getInstance();
+        String subcommand = arguments.get(1);
+        if ("GET".equalsIgnoreCase(subcommand) && arguments.size() >= 3) {
+            List<String> matches = new ArrayList<>();
+            config.toMap().forEach((name, value) -> {
+                for (int i = 2; i < arguments.size(); i++) {
+                    if (Glob.matches(arguments.get(i).toLowerCase(Locale.ROOT), name)) {
+                        matches.add(name);
+                        matches.add(value);
+                        break;
+                    }
+                }
+            });
+            output.encodeArrayHeader(matches.size());
+            matches.forEach(output::encodeBulkString);
+        } else if ("SET".equalsIgnoreCase(subcommand) && arguments.size() >= 4 && arguments.size() % 2 == 0) {
+            for (int i = 2; i < arguments.size(); i += 2) {
+                try {
+                    config.set(arguments.get(i), arguments.get(i + 1));
+                    if ("appendonly".equalsIgnoreCase(arguments.get(i))) {
+                        AofService.getInstance().setEnabled(config.isAppendonly());
+                    } else if ("loglevel".equalsIgnoreCase(arguments.get(i))) {
+                        LogService.getInstance().setLevel(LogService.Level.parse(config.getLoglevel()));
+                    }
+                } catch (IllegalArgumentException e) {
+                    throw new RuntimeException("CONFIG SET failed (possibly related to argument '" + arguments.get(i)
+                            + "') - " + e.getMessage());
+                }
+            }
+            output.writeRaw(OutputEncoderService.OK);
+        } else if ("RESETSTAT".equalsIgnoreCase(subcommand) && arguments.size() == 2) {
+            StatsService.getInstance().reset();
+            output.writeRaw(OutputEncoderService.OK);
+        } else if ("GET".equalsIgnoreCase(subcommand) || "SET".equalsIgnoreCase(subcommand)) {
+            throw new RuntimeException("wrong number of arguments for 'config|" + subcommand.toLowerCase(Locale.ROOT)
+                    + "' command");
+        } else {
+            throw new RuntimeException("unknown subcommand '" + subcommand + "'. Try CONFIG HELP.");
+        }
+    }
+
+    // Entries as Redis replies them: id, unix time, microseconds, arguments, client address, client name.
+    private void slowlog(CommandProcessor client, List<String> arguments) {
+        OutputEncoderService output = client.getOutput();
+        SlowLog slowLog = SlowLog.getInstance();
+        String subcommand = arguments.get(1);
+        if ("GET".equalsIgnoreCase(subcommand) && arguments.size() <= 3) {
+            int count = arguments.size() == 3 ? Integer.parseInt(arguments.get(2)) : 10;
+            if (count < -1) {
+                throw new RuntimeException("count should be greater than or equal to -1");
+            }
+            List<SlowLog.Entry> entries = slowLog.newest(count == -1 ? Integer.MAX_VALUE : count);
+            output.encodeArrayHeader(entries.size());
+            for (SlowLog.Entry entry : entries) {
+                output.encodeArrayHeader(6);
+                output.encodeInteger(entry.id());
+                output.encodeInteger(entry.timestamp());
+                output.encodeInteger(entry.micros());
+                output.encodeArrayHeader(entry.arguments().size());
+                entry.arguments().forEach(output::encodeBulkString);
+                output.encodeBulkString(entry.client());
+                output.encodeBulkString("");
+            }
+        } else if ("LEN".equalsIgnoreCase(subcommand) && arguments.size() == 2) {
+            output.encodeInteger(slowLog.size());
+        } else if ("RESET".equalsIgnoreCase(subcommand) && arguments.size() == 2) {
+            slowLog.reset();
+            output.writeRaw(OutputEncoderService.OK);
+        } else {
+            throw new RuntimeException("unknown subcommand or wrong number of arguments for '" + subcommand
+                    + "'. Try SLOWLOG HELP.");
+        }
+    }
+
+    private void latency(CommandProcessor client, List<String> arguments) {
+        OutputEncoderService output = client.getOutput();
+        LatencyMonitor monitor = LatencyMonitor.getInstance();
+        String subcommand = arguments.get(1);
+        if ("LATEST".equalsIgnoreCase(subcommand) && arguments.size() == 2) {
+            Map<String, long[]> latest = monitor.latest();
+            output.encodeArrayHeader(latest.size());
+            latest.forEach((event, values) -> {
+                output.encodeArrayHeader(4);
+                output.encodeBulkString(event);
+                for (long value : values) {
+                    output.encodeInteger(value);
+                }
+            });
+        } else if ("HISTORY".equalsIgnoreCase(subcommand) && arguments.size() == 3) {
+            List<LatencyMonitor.Sample> samples = monitor.history(arguments.get(2).toLowerCase(Locale.ROOT));
+            output.encodeArrayHeader(samples.size());
+            for (LatencyMonitor.Sample sample : samples) {
+                output.encodeArrayHeader(2);
+                output.encodeInteger(sample.timestamp());
+                output.encodeInteger(sample.millis());
+            }
+        } else if ("RESET".equalsIgnoreCase(subcommand)) {
+            List<String> events = new ArrayList<>();
+            for (String event : arguments.subList(2, arguments.size())) {
+                events.add(event.toLowerCase(Locale.ROOT));
+            }
+            output.encodeInteger(monitor.reset(events));
+        } else {
+            throw new RuntimeException("unknown subcommand or wrong number of arguments for '" + subcommand
+                    + "'. Try LATENCY HELP.");
+        }
+    }
+
+    // From the next command on, every command run by any client is pushed to this one.
+    private void monitor(CommandProcessor client, List<String> arguments) {
+        client.getOutput().writeRaw(OutputEncoderService.OK);
+        client.startMonitoring();
+    }
+
+    // With no argument or "default", the sections below minus commandstats and latencystats; "all" or
+    // "everything" for every one; otherwise just those named.
+    private void info(CommandProcessor client, List<String> arguments) {
+        Set<String> requested = new HashSet<>();
+        if (arguments.size() == 1) {
+            requested.addAll(DEFAULT_SECTIONS);
+        }
+        for (int i = 1; i < arguments.size(); i++) {
+            String section = arguments.get(i).toLowerCase(Locale.ROOT);
+            switch (section) {
+                case "all", "everything" -> requested.addAll(INFO_SECTIONS);
+                case "default" -> requested.addAll(DEFAULT_SECTIONS);
+                default -> requested.add(section);
+            }
+        }
+        StringBuilder info = new StringBuilder();
+        for (String section : INFO_SECTIONS) {
+            if (!requested.contains(section)) {
+                continue;
+            }
+            if (!info.isEmpty()) {
+                info.append("\r\n");
+            }
+            appendSection(section, info);
+        }
+        client.getOutput().encodeBulkString(info.toString());
+    }
+
+    private void appendSection(String section, StringBuilder info) {
+        StatsService stats = StatsService.getInstance();
+        switch (section) {
+            case "server" -> stats.appendServer(info);
+            case "clients" -> stats.appendClients(info);
+            case "memory" -> appendMemory(info);
+            case "persistence" -> {
+                SnapshotService.getInstance().appendInfo(info);
+                AofService.getInstance().appendInfo(info);
+            }
+            case "stats" -> stats.appendStats(info);
+            case "replication" -> ReplicationService.getInstance().appendInfo(info);
+            case "commandstats" -> stats.appendCommandStats(info);
+            case "latencystats" -> stats.appendLatencyStats(info);
+            case "keyspace" -> appendKeyspace(info);
+            default -> throw new IllegalStateException(section);
+        }
+    }
+
+    private void appendKeyspace(StringBuilder info) {
+        DataStore dataStore = DataStore.getInstance();
+        info.append("# Keyspace\r\n");
+        int keys = dataStore.size();
+        if (keys > 0) {
+            ExpiryIndex expiryIndex = dataStore.getExpiryIndex();
+            info.append("db0:keys=").append(keys).append(",expires=").append(expiryIndex.size())
+                    .append(",avg_ttl=").append(expiryIndex.averageTtl(System.currentTimeMillis())).append("\r\n");
+        }
+    }
+
+    private void appendMemory(StringBuilder info) {
+        ServerConfig config = ServerConfig.getInstance();
+        EvictionService evictionService = EvictionService.getInstance();
+        long used = DataStore.getInstance().getUsedMemory();
+        long peak = evictionService.getPeakMemory();
+        Runtime runtime = Runtime.getRuntime();
+        info.append("# Memory\r\n");
+        info.append("used_memory:").append(used).append("\r\n");
+        info.append("used_memory_human:").append(bytesToHuman(used)).append("\r\n");
+        info.append("used_memory_peak:").append(peak).append("\r\n");
+        info.append("used_memory_peak_human:").append(bytesToHuman(peak)).append("\r\n");
+        info.append("jvm_heap_used:").append(runtime.totalMemory() - runtime.freeMemory()).append("\r\n");
+        info.append("jvm_heap_max:").append(runtime.maxMemory()).append("\r\n");
+        info.append("maxmemory:").append(config.getMaxmemory()).append("\r\n");
+        info.append("maxmemory_human:").append(bytesToHuman(config.getMaxmemory())).append("\r\n");
+        info.append("maxmemory_policy:").append(config.getMaxmemoryPolicy()).append("\r\n");
+        info.append("maxmemory_samples:").append(config.getMaxmemorySamples()).append("\r\n");
+        info.append("evicted_keys:").append(evictionService.getEvictedKeys()).append("\r\n");
+    }
+
+    private static String bytesToHuman(long bytes) {
+        if (bytes < 1024) {
+            return bytes + "B";
+        }
+        String[] units = {"K", "M", "G", "T"};
+        double value = bytes;
+        int unit = -1;
+        while (value >= 1024 && unit < units.length - 1) {
+            value /= 1024;
+            unit++;
+        }
+        return String.format(Locale.ROOT, "%.2f%s", value, units[unit]);
+    }
+}
@@ -0,0 +1,122 @@
+package Service;
+
+import Models.ServerConfig;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+// Commands that ran longer than slowlog-log-slower-than microseconds, newest last, in a ring of
+// slowlog-max-len slots. Each entry takes the slot its id maps to with a compare-and-set, so connection
+// threads log concurrently without a lock; only a change of slowlog-max-len swaps the ring under one.
+public class SlowLog {
+
+    private static final int MAX_ARGUMENTS = 32;
+    private static final int MAX_ARGUMENT_LENGTH = 128;
+
+    private static SlowLog instance;
+
+    public record Entry(long id, long timestamp, long micros, List<String> arguments, String client) {
+    }
+
+    private final ServerConfig config = ServerConfig.getInstance();
+    private final AtomicLong nextId = new AtomicLong();
+    private volatile AtomicReferenceArray<Entry> ring = new AtomicReferenceArray<>(config.getSlowlogMaxLen());
+
+    private SlowLog() {
+    }
+
+    public static synchronized SlowLog getInstance() {
+        if(instance == null) {
+            instance = new SlowLog();
+        }
+        return instance;
+    }
+
+    // Called after every command with the time it ran; cheap when it is not slow enough to keep.
+    void record(CommandProcessor client, List<String> arguments, long elapsedNanos) {
+        long threshold = config.getSlowlogLogSlowerThan();
+        long micros = elapsedNanos / 1000;
+        if (threshold < 0 || micros < threshold) {
+            return;
+        }
+        AtomicReferenceArray<Entry> slots = ringFor(config.getSlowlogMaxLen());
+        if (slots.length() == 0) {
+            return;
+        }
+        Entry entry = new Entry(nextId.getAndIncrement(), System.currentTimeMillis() / 1000, micros,
+                truncate(arguments), client.describePeer());
+        int slot = (int) (entry.id() % slots.length());
+        // A logger that stalled between taking its id and here must not overwrite a newer entry.
+        while (true) {
+            Entry current = slots.get(slot);
+            if ((current != null && current.id() > entry.id()) || slots.compareAndSet(slot, current, entry)) {
+                return;
+            }
+        }
+    }
+
+    private AtomicReferenceArray<Entry> ringFor(int maxLen) {
+        AtomicReferenceArray<Entry> slots = ring;
+        if (slots.length() == maxLen) {
+            return slots;
+        }
+        synchronized (this) {
+            if (ring.length() != maxLen) {
+                List<Entry> kept = newest(maxLen);
+                AtomicReferenceArray<Entry> resized = new AtomicReferenceArray<>(maxLen);
+                for (Entry entry : kept) {
+                    resized.set((int) (entry.id() % maxLen), entry);
+                }
+                ring = resized;
+            }
+            return ring;
+        }
+    }
+
+    // SLOWLOG GET: up to count entries, newest first.
+    public List<Entry> newest(int count) {
+        AtomicReferenceArray<Entry> slots = ring;
+        List<Entry> entries = new ArrayList<>();
+        for (int i = 0; i < slots.length(); i++) {
+            Entry entry = slots.get(i);
+            if (entry != null) {
+                entries.add(entry);
+            }
+        }
+        entries.sort(Comparator.comparingLong(Entry::id).reversed());
+        return entries.size() > count ? entries.subList(0, count) : entries;
+    }
+
+    public int size() {
+        AtomicReferenceArray<Entry> slots = ring;
+        int size = 0;
+        for (int i = 0; i < slots.length(); i++) {
+            if (slots.get(i) != null) {
+                size++;
+            }
+        }
+        return size;
+    }
+
+    public synchronized void reset() {
+        ring = new AtomicReferenceArray<>(config.getSlowlogMaxLen());
+    }
+
+    // As Redis keeps them: at most 32 arguments and 128 characters of each, saying how much was left out.
+    private static List<String> truncate(List<String> arguments) {
+        int kept = arguments.size() > MAX_ARGUMENTS ? MAX_ARGUMENTS - 1 : arguments.size();
+        List<String> truncated = new ArrayList<>(kept + 1);
+        for (int i = 0; i < kept; i++) {
+            String argument = arguments.get(i);
+            truncated.add(argument.length() <= MAX_ARGUMENT_LENGTH ? argument : argument.substring(0, MAX_ARGUMENT_LENGTH)
+                    + "... (" + (argument.length() - MAX_ARGUMENT_LENGTH) + " more bytes)");
+        }
+        if (kept < arguments.size()) {
+            truncated.add("... (" + (arguments.size() - kept) + " more arguments)");
+        }
+        return truncated;
+    }
+}
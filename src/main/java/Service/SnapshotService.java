@@ -0,0 +1,223 @@
+package Service;
+
+import Models.DataStore;
+import Models.KeyLocks;
+import Models.ServerConfig;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+// RDB persistence: SAVE/BGSAVE and the save rules write the keyspace to dir/dbfilename, and startup
+// loads it back. A snapshot is a KeyspaceCapture instead of a fork, so commands keep running while it
+// is written: it starts with every key locked, between two commands (a whole EXEC, LMOVE or BLMOVE
+// included), and from then on a write saves a key's value before changing it, so the file holds the
+// dataset as it was at that instant.
+public class SnapshotService {
+
+    private static final LogService log = LogService.getInstance();
+
+    // After a failed background save the rules wait this long before trying again.
+    private static final long RETRY_DELAY_MILLIS = 5000;
+
+    private static SnapshotService instance;
+
+    private final DataStore dataStore = DataStore.getInstance();
+    private final ServerConfig config = ServerConfig.getInstance();
+    private final AtomicBoolean saving = new AtomicBoolean();
+    private volatile KeyspaceCapture capture;
+    private final LongAdder dirty = new LongAdder();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "save-rules");
+        t.setDaemon(true);
+        return t;
+    });
+    private volatile long lastSaveTime = System.currentTimeMillis();
+    private volatile long lastAttemptTime;
+    private volatile boolean lastBgsaveOk = true;
+    private volatile long lastBgsaveMillis = -1;
+    private volatile long bgsaveStartTime = -1;
+    private volatile long saves;
+    private volatile long loadMillis;
+    private volatile long keysLoaded;
+    private volatile long keysExpiredOnLoad;
+
+    private SnapshotService() {
+    }
+
+    public static synchronized SnapshotService getInstance() {
+        if(instance == null) {
+            instance = new SnapshotService();
+        }
+        return instance;
+    }
+
+    public void start() {
+        scheduler.scheduleAtFixedRate(this::checkSaveRules, 1, 1, TimeUnit.SECONDS);
+    }
+
+    // Counts one change towards the save rules; called for every write command that succeeded.
+    public void markDirty() {
+        dirty.increment();
+    }
+
+    public long getDirty() {
+        return dirty.sum();
+    }
+
+    public long getLastSaveTime() {
+        return lastSaveTime;
+    }
+
+    public boolean isSaving() {
+        return saving.get();
+    }
+
+    public boolean isCapturing() {
+        return capture != null;
+    }
+
+    // Called by a write command with its keys locked, before it changes them.
+    public void beforeWrite(List<String> keys) {
+        KeyspaceCapture current = capture;
+        if (current != null) {
+            current.beforeWrite(keys);
+        }
+    }
+
+    // Loads dir/dbfilename if it exists. Runs before the server accepts connections.
+    public void load() throws IOException {
+        Path path = snapshotPath();
+        if (!Files.exists(path)) {
+            return;
+        }
+        long start = System.nanoTime();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            RdbLoader loader = new RdbLoader(channel);
+            loader.load(dataStore);
+            keysLoaded = loader.getKeysLoaded();
+            keysExpiredOnLoad = loader.getKeysExpired();
+        }
+        loadMillis = (System.nanoTime() - start) / 1_000_000;
+        log.notice(String.format("DB loaded from disk: %d keys in %.3f seconds", keysLoaded, loadMillis / 1000.0));
+    }
+
+    // SAVE: writes the snapshot on the calling thread.
+    public void save() throws IOException {
+        if (!saving.compareAndSet(false, true)) {
+            throw new IllegalStateException("Background save already in progress");
+        }
+        long start = System.nanoTime();
+        try {
+            writeSnapshot();
+        } finally {
+            saving.set(false);
+            LatencyMonitor.getInstance().record(LatencyMonitor.SAVE, System.nanoTime() - start);
+        }
+    }
+
+    // BGSAVE: false when a save is already running.
+    public boolean backgroundSave() {
+        if (!saving.compareAndSet(false, true)) {
+            return false;
+        }
+        bgsaveStartTime = System.currentTimeMillis();
+        lastAttemptTime = bgsaveStartTime;
+        Thread thread = new Thread(this::runBackgroundSave, "bgsave");
+        thread.setDaemon(true);
+        thread.start();
+        return true;
+    }
+
+    private void runBackgroundSave() {
+        try {
+            writeSnapshot();
+            lastBgsaveOk = true;
+        } catch (IOException | RuntimeException e) {
+            lastBgsaveOk = false;
+            log.warning("Background saving error: " + e.getMessage());
+        } finally {
+            lastBgsaveMillis = System.currentTimeMillis() - bgsaveStartTime;
+            bgsaveStartTime = -1;
+            saving.set(false);
+        }
+    }
+
+    private void checkSaveRules() {
+        long now = System.currentTimeMillis();
+        long changes = dirty.sum();
+        if (changes == 0 || saving.get() || (!lastBgsaveOk && now - lastAttemptTime < RETRY_DELAY_MILLIS)) {
+            return;
+        }
+        for (long[] rule : config.getSaveRules()) {
+            if (changes >= rule[1] && now - lastSaveTime >= rule[0] * 1000) {
+                log.notice(String.format("%d changes in %d seconds. Saving...", rule[1], rule[0]));
+                backgroundSave();
+                return;
+            }
+        }
+    }
+
+    private Path snapshotPath() {
+        return Path.of(config.getDir(), config.getDbfilename());
+    }
+
+    // Written to a temp file in the same directory and renamed over the old snapshot once it is on
+    // disk, so a crash mid-save never leaves a truncated dump behind.
+    private void writeSnapshot() throws IOException {
+        Path target = snapshotPath();
+        Path temp = target.resolveSibling("temp-" + ProcessHandle.current().pid() + ".rdb");
+        KeyspaceCapture current = new KeyspaceCapture(temp, false);
+        long changesAtStart;
+        // Writers check isCapturing with their keys locked, so each one sees the capture either for all
+        // of its changes or for none of them.
+        KeyLocks keyLocks = dataStore.getKeyLocks();
+        keyLocks.lockEverything();
+        try {
+            capture = current;
+            changesAtStart = dirty.sum();
+        } finally {
+            keyLocks.unlockEverything();
+        }
+        try {
+            current.walk();
+            current.finish();
+            current.getFile().close();
+        } catch (IOException | RuntimeException e) {
+            current.discard();
+            throw e;
+        } finally {
+            capture = null;
+        }
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        dirty.add(-changesAtStart);
+        lastSaveTime = System.currentTimeMillis();
+        saves++;
+    }
+
+    public void appendInfo(StringBuilder info) {
+        long bgsaveStart = bgsaveStartTime;
+        info.append("# Persistence\r\n");
+        info.append("loading:0\r\n");
+        info.append("rdb_changes_since_last_save:").append(dirty.sum()).append("\r\n");
+        info.append("rdb_bgsave_in_progress:").append(bgsaveStart != -1 ? 1 : 0).append("\r\n");
+        info.append("rdb_last_save_time:").append(lastSaveTime / 1000).append("\r\n");
+        info.append("rdb_last_bgsave_status:").append(lastBgsaveOk ? "ok" : "err").append("\r\n");
+        info.append("rdb_last_bgsave_time_sec:").append(lastBgsaveMillis < 0 ? -1 : lastBgsaveMillis / 1000).append("\r\n");
+        info.append("rdb_current_bgsave_time_sec:")
+                .append(bgsaveStart == -1 ? -1 : (System.currentTimeMillis() - bgsaveStart) / 1000).append("\r\n");
+        info.append("rdb_saves:").append(saves).append("\r\n");
+        info.append("rdb_last_load_keys_loaded:").append(keysLoaded).append("\r\n");
+        info.append("rdb_last_load_keys_expired:").append(keysExpiredOnLoad).append("\r\n");
+        info.append("rdb_last_load_time_ms:").append(loadMillis).append("\r\n");
+    }
+}
@@ -0,0 +1,154 @@
+package Service;
+
+import Models.DataStore;
+import Models.LatencyHistogram;
+import Models.ServerConfig;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+// Server-wide counters, and the INFO sections built from them and from each command's CommandStats.
+public class StatsService {
+
+    private static StatsService instance;
+
+    private final long startMillis = System.currentTimeMillis();
+    private final AtomicInteger connectedClients = new AtomicInteger();
+    private final AtomicInteger blockedClients = new AtomicInteger();
+    private final LongAdder connectionsReceived = new LongAdder();
+
+    private StatsService() {
+    }
+
+    public static synchronized StatsService getInstance() {
+        if(instance == null) {
+            instance = new StatsService();
+        }
+        return instance;
+    }
+
+    public void clientConnected() {
+        connectedClients.incrementAndGet();
+        connectionsReceived.increment();
+    }
+
+    public void clientDisconnected() {
+        connectedClients.decrementAndGet();
+    }
+
+    void clientBlocked() {
+        blockedClients.incrementAndGet();
+    }
+
+    void clientUnblocked() {
+        blockedClients.decrementAndGet();
+    }
+
+    public long getUptimeSeconds() {
+        return (System.currentTimeMillis() - startMillis) / 1000;
+    }
+
+    public int getConnectedClients() {
+        return connectedClients.get();
+    }
+
+    public int getBlockedClients() {
+        return blockedClients.get();
+    }
+
+    public long getConnectionsReceived() {
+        return connectionsReceived.sum();
+    }
+
+    public long getCommandsProcessed() {
+        long total = 0;
+        for (CommandSpec spec : CommandRegistry.getInstance().getCommands()) {
+            total += spec.getStats().getCalls();
+        }
+        return total;
+    }
+
+    // CONFIG RESETSTAT.
+    public void reset() {
+        connectionsReceived.reset();
+        for (CommandSpec spec : CommandRegistry.getInstance().getCommands()) {
+            spec.getStats().reset();
+        }
+    }
+
+    public void appendServer(StringBuilder info) {
+        ServerConfig config = ServerConfig.getInstance();
+        long uptime = getUptimeSeconds();
+        info.append("# Server\r\n");
+        info.append("redis_version:7.2.0\r\n");
+        info.append("redis_mode:standalone\r\n");
+        info.append("os:").append(System.getProperty("os.name")).append(' ').append(System.getProperty("os.version"))
+                .append(' ').append(System.getProperty("os.arch")).append("\r\n");
+        info.append("java_version:").append(Runtime.version()).append("\r\n");
+        info.append("process_id:").append(ProcessHandle.current().pid()).append("\r\n");
+        info.append("tcp_port:").append(config.getPort()).append("\r\n");
+        info.append("io_mode:").append(config.getIoMode()).append("\r\n");
+        info.append("io_threads:").append(config.getIoThreads()).append("\r\n");
+        info.append("server_time_usec:").append(System.currentTimeMillis() * 1000).append("\r\n");
+        info.append("uptime_in_seconds:").append(uptime).append("\r\n");
+        info.append("uptime_in_days:").append(uptime / 86400).append("\r\n");
+        info.append("hz:").append(config.getHz()).append("\r\n");
+    }
+
+    public void appendClients(StringBuilder info) {
+        info.append("# Clients\r\n");
+        info.append("connected_clients:").append(getConnectedClients()).append("\r\n");
+        info.append("blocked_clients:").append(getBlockedClients()).append("\r\n");
+    }
+
+    public void appendStats(StringBuilder info) {
+        PubSubService pubSub = PubSubService.getInstance();
+        info.append("# Stats\r\n");
+        info.append("total_connections_received:").append(getConnectionsReceived()).append("\r\n");
+        info.append("total_commands_processed:").append(getCommandsProcessed()).append("\r\n");
+        info.append("expired_keys:").append(DataStore.getInstance().getExpiredKeys()).append("\r\n");
+        info.append("evicted_keys:").append(EvictionService.getInstance().getEvictedKeys()).append("\r\n");
+        info.append("pubsub_channels:").append(pubSub.channelCount()).append("\r\n");
+        info.append("pubsub_patterns:").append(pubSub.patternCount()).append("\r\n");
+    }
+
+    // cmdstat_get:calls=2,usec=15,usec_per_call=7.50,rejected_calls=0,failed_calls=0
+    public void appendCommandStats(StringBuilder info) {
+        info.append("# Commandstats\r\n");
+        for (CommandSpec spec : CommandRegistry.getInstance().getCommands()) {
+            CommandStats stats = spec.getStats();
+            if (stats.isEmpty()) {
+                continue;
+            }
+            long calls = stats.getCalls();
+            long usec = stats.getNanos() / 1000;
+            info.append("cmdstat_").append(spec.getName())
+                    .append(":calls=").append(calls)
+                    .append(",usec=").append(usec)
+                    .append(",usec_per_call=").append(String.format(Locale.ROOT, "%.2f", calls == 0 ? 0.0 : (double) usec / calls))
+                    .append(",rejected_calls=").append(stats.getRejectedCalls())
+                    .append(",failed_calls=").append(stats.getFailedCalls()).append("\r\n");
+        }
+    }
+
+    // latency_percentiles_usec_get:p50=1.003,p99=2.007,p99.9=5.023
+    public void appendLatencyStats(StringBuilder info) {
+        info.append("# Latencystats\r\n");
+        for (CommandSpec spec : CommandRegistry.getInstance().getCommands()) {
+            CommandStats stats = spec.getStats();
+            if (stats.getCalls() == 0) {
+                continue;
+            }
+            LatencyHistogram latency = stats.getLatency();
+            info.append("latency_percentiles_usec_").append(spec.getName())
+                    .append(":p50=").append(usec(latency.percentile(0.5)))
+                    .append(",p99=").append(usec(latency.percentile(0.99)))
+                    .append(",p99.9=").append(usec(latency.percentile(0.999))).append("\r\n");
+        }
+    }
+
+    private static String usec(long nanos) {
+        return String.format(Locale.ROOT, "%.3f", nanos / 1000.0);
+    }
+}
@@ -0,0 +1,211 @@
+package Service;
+
+import Models.Bytes;
+import Models.DataStore;
+import Models.Entry;
+import Models.RedisObject;
+import Models.Stream;
+import Models.StreamId;
+import Service.CommandSpec.Flag;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+
+public class StreamCommands {
+
+    private final DataStore dataStore = DataStore.getInstance();
+    private final StreamWaiterRegistry streamWaiters = new StreamWaiterRegistry();
+
+    public void register(CommandRegistry registry) {
+        registry.register(new CommandSpec("xadd", -5, EnumSet.of(Flag.WRITE, Flag.DENYOOM, Flag.FAST), 1, 1, 1, this::xadd));
+        registry.register(new CommandSpec("xlen", 2, EnumSet.of(Flag.READONLY, Flag.FAST), 1, 1, 1, this::xlen));
+        registry.register(new CommandSpec("xrange", -4, EnumSet.of(Flag.READONLY), 1, 1, 1,
+                (client, arguments) -> xrange(client, arguments, false)));
+        registry.register(new CommandSpec("xrevrange", -4, EnumSet.of(Flag.READONLY), 1, 1, 1,
+                (client, arguments) -> xrange(client, arguments, true)));
+        registry.register(new CommandSpec("xread", -4, EnumSet.of(Flag.READONLY, Flag.BLOCKING), 0, 0, 0, this::xread)
+                .withKeyExtractor(this::xreadKeys));
+    }
+
+    private void xadd(CommandProcessor client, List<String> arguments) {
+        String key = arguments.get(1);
+        String id = arguments.get(2);
+        if ((arguments.size() - 3) % 2 != 0) {
+            throw new RuntimeException("wrong number of arguments for 'xadd' command");
+        }
+        byte[][] fields = Bytes.of(arguments.subList(3, arguments.size()));
+        RedisObject value = dataStore.getOrCreate(key, RedisObject.Type.STREAM, () -> RedisObject.ofStream(new Stream()));
+        Stream stream = value.getStream();
+        StreamId added;
+        long before = stream.memoryUsage();
+        try {
+            added = stream.add(id, fields);
+            dataStore.adjustMemory(stream.memoryUsage() - before);
+        } catch (RuntimeException e) {
+            if (stream.size() == 0) {
+                dataStore.remove(key, value);
+            }
+            throw e;
+        }
+        client.getOutput().encodeEntryId(added.milliseconds(), added.sequenceNumber());
+        // Logged with the id that was assigned, so a replay does not generate a new one.
+        List<String> logged = new ArrayList<>(arguments);
+        logged.set(2, Long.toUnsignedString(added.milliseconds()) + "-" + Long.toUnsignedString(added.sequenceNumber()));
+        client.propagateAs(logged);
+        streamWaiters.signal(key);
+    }
+
+    private void xlen(CommandProcessor client, List<String> arguments) {
+        Stream stream = getStream(arguments.get(1));
+        client.getOutput().encodeInteger(stream == null ? 0 : stream.size());
+    }
+
+    private void xrange(CommandProcessor client, List<String> arguments, boolean reverse) {
+        String key = arguments.get(1);
+        StreamId start = parseRangeBound(arguments.get(reverse ? 3 : 2), true);
+        StreamId end = parseRangeBound(arguments.get(reverse ? 2 : 3), false);
+        int count = Integer.MAX_VALUE;
+        if (arguments.size() > 4) {
+            if (arguments.size() != 6 || !"COUNT".equalsIgnoreCase(arguments.get(4))) {
+                throw new RuntimeException("syntax error");
+            }
+            count = Math.max(0, Integer.parseInt(arguments.get(5)));
+        }
+        Stream stream = getStream(key);
+        if (stream == null || count == 0 || start.compareTo(end) > 0) {
+            client.getOutput().writeRaw(OutputEncoderService.EMPTY_ARRAY);
+            return;
+        }
+        List<Entry> entries = reverse ? stream.reverseRange(end, start, count) : stream.range(start, end, count);
+        client.getOutput().encodeEntryList(entries);
+    }
+
+    // "-" and "+" are the extremes, a bare millisecond value covers every sequence in it,
+    // and a leading "(" makes the bound exclusive.
+    private StreamId parseRangeBound(String bound, boolean isStart) {
+        if (bound.equals("-")) {
+            return StreamId.MIN;
+        }
+        if (bound.equals("+")) {
+            return StreamId.MAX;
+        }
+        if (bound.startsWith("(")) {
+            StreamId id = StreamId.parse(bound.substring(1), isStart ? 0 : -1);
+            return isStart ? id.next() : id.previous();
+        }
+        return StreamId.parse(bound, isStart ? 0 : -1);
+    }
+
+    private void xread(CommandProcessor client, List<String> arguments) {
+        OutputEncoderService output = client.getOutput();
+        int count = Integer.MAX_VALUE;
+        long blockMillis = -1;
+        int streamsIndex = 1;
+        while (streamsIndex < arguments.size() && !"STREAMS".equalsIgnoreCase(arguments.get(streamsIndex))) {
+            String option = arguments.get(streamsIndex);
+            if ("COUNT".equalsIgnoreCase(option) && streamsIndex + 1 < arguments.size()) {
+                // As in Redis, COUNT 0 (or below) means no limit.
+                long requested = Long.parseLong(arguments.get(streamsIndex + 1));
+                count = requested > 0 ? (int) Math.min(requested, Integer.MAX_VALUE) : Integer.MAX_VALUE;
+            } else if ("BLOCK".equalsIgnoreCase(option) && streamsIndex + 1 < arguments.size()) {
+                blockMillis = Long.parseLong(arguments.get(streamsIndex + 1));
+                if (blockMillis < 0) {
+                    throw new RuntimeException("timeout is negative");
+                }
+            } else {
+                throw new RuntimeException("syntax error");
+            }
+            streamsIndex += 2;
+        }
+        int numberOfKeys = (arguments.size() - streamsIndex - 1) / 2;
+        if (numberOfKeys == 0 || (arguments.size() - streamsIndex - 1) % 2 != 0) {
+            throw new RuntimeException("Unbalanced 'xread' list of streams: for each stream key an ID or '$' must be specified.");
+        }
+        List<String> keys = List.copyOf(arguments.subList(streamsIndex + 1, streamsIndex + 1 + numberOfKeys));
+        List<StreamId> startIds = new ArrayList<>();
+        for (int i = 0; i < numberOfKeys; i++) {
+            String id = arguments.get(streamsIndex + 1 + numberOfKeys + i);
+            Stream stream = getStream(keys.get(i));
+            if ("$".equals(id)) {
+                startIds.add(stream == null ? StreamId.MIN : stream.getLastId());
+            } else {
+                startIds.add(StreamId.parse(id, 0));
+            }
+        }
+        if (encodeNewEntries(output, keys, startIds, count)) {
+            return;
+        }
+        if (blockMillis < 0) {
+            output.writeRaw(OutputEncoderService.NULL_ARRAY);
+            return;
+        }
+        int replyCount = count;
+        streamWaiters.block(client, keys, blockMillis, () -> hasNewEntries(keys, startIds),
+                blockedOutput -> encodeNewEntries(blockedOutput, keys, startIds, replyCount));
+    }
+
+    private boolean hasNewEntries(List<String> keys, List<StreamId> startIds) {
+        for (int i = 0; i < keys.size(); i++) {
+            Stream stream = peekStream(keys.get(i));
+            if (stream != null && stream.size() > 0 && stream.getLastId().compareTo(startIds.get(i)) > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean encodeNewEntries(OutputEncoderService output, List<String> keys, List<StreamId> startIds, int count) {
+        List<String> readyKeys = new ArrayList<>();
+        List<List<Entry>> readyEntries = new ArrayList<>();
+        for (int i = 0; i < keys.size(); i++) {
+            Stream stream = peekStream(keys.get(i));
+            if (stream == null) {
+                continue;
+            }
+            List<Entry> entries = stream.entriesAfter(startIds.get(i), count);
+            if (!entries.isEmpty()) {
+                readyKeys.add(keys.get(i));
+                readyEntries.add(entries);
+            }
+        }
+        if (readyKeys.isEmpty()) {
+            return false;
+        }
+        output.encodeArrayHeader(readyKeys.size());
+        for (int i = 0; i < readyKeys.size(); i++) {
+            output.encodeArrayHeader(2);
+            output.encodeBulkString(readyKeys.get(i));
+            output.encodeEntryList(readyEntries.get(i));
+        }
+        return true;
+    }
+
+    void signalKeyReady(String key) {
+        streamWaiters.signal(key);
+    }
+
+    private Stream getStream(String key) {
+        RedisObject value = dataStore.get(key, RedisObject.Type.STREAM);
+        return value == null ? null : value.getStream();
+    }
+
+    // For blocked readers: a key that stopped being a stream just has nothing new to read.
+    private Stream peekStream(String key) {
+        RedisObject value = dataStore.get(key);
+        return value == null || value.getType() != RedisObject.Type.STREAM ? null : value.getStream();
+    }
+
+    private List<String> xreadKeys(List<String> arguments) {
+        int streamsIndex = 1;
+        while (streamsIndex < arguments.size() && !"STREAMS".equalsIgnoreCase(arguments.get(streamsIndex))) {
+            streamsIndex++;
+        }
+        // Without STREAMS there are no keys; the command itself replies with the syntax error.
+        if (streamsIndex == arguments.size()) {
+            return new ArrayList<>();
+        }
+        int numberOfKeys = (arguments.size() - streamsIndex - 1) / 2;
+        return new ArrayList<>(arguments.subList(streamsIndex + 1, streamsIndex + 1 + numberOfKeys));
+    }
+}
@@ -0,0 +1,73 @@
+package Service;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+// Clients blocked in XREAD, indexed by every stream key they wait on. XADD signals the key's waiters
+// directly, so a reader wakes as soon as an entry is appended and an idle waiter costs no CPU at all.
+public class StreamWaiterRegistry {
+
+    private class Waiter {
+        final List<String> keys;
+        final BooleanSupplier ready;
+        final Consumer<OutputEncoderService> writeReply;
+        BlockedClient blockedClient;
+
+        Waiter(List<String> keys, BooleanSupplier ready, Consumer<OutputEncoderService> writeReply) {
+            this.keys = keys;
+            this.ready = ready;
+            this.writeReply = writeReply;
+        }
+
+        void unregister() {
+            for (String key : keys) {
+                waiters.computeIfPresent(key, (k, set) -> {
+                    set.remove(this);
+                    return set.isEmpty() ? null : set;
+                });
+            }
+        }
+
+        // Stream entries are never removed, so once ready the reply can be written after winning the claim.
+        void serve() {
+            if (ready.getAsBoolean() && blockedClient.claim()) {
+                writeReply.accept(blockedClient.getOutput());
+                blockedClient.resume();
+            }
+        }
+    }
+
+    private final ConcurrentHashMap<String, Set<Waiter>> waiters = new ConcurrentHashMap<>();
+
+    public void block(CommandProcessor client, List<String> keys, long timeoutMillis, BooleanSupplier ready,
+                      Consumer<OutputEncoderService> writeReply) {
+        if (client.isExecuting()) {
+            client.getOutput().writeRaw(OutputEncoderService.NULL_ARRAY);
+            return;
+        }
+        Waiter waiter = new Waiter(List.copyOf(keys), ready, writeReply);
+        waiter.blockedClient = new BlockedClient(client, waiter::unregister);
+        for (String key : waiter.keys) {
+            waiters.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet()).add(waiter);
+        }
+        // An entry may have been appended between the caller's check and our registration.
+        waiter.serve();
+        waiter.blockedClient.startTimeout(timeoutMillis,
+                () -> waiter.blockedClient.getOutput().writeRaw(OutputEncoderService.NULL_ARRAY));
+    }
+
+    public void signal(String key) {
+        Set<Waiter> keyWaiters = waiters.get(key);
+        if (keyWaiters == null) {
+            return;
+        }
+        long start = System.nanoTime();
+        for (Waiter waiter : keyWaiters) {
+            waiter.serve();
+        }
+        LatencyMonitor.getInstance().record(LatencyMonitor.BLOCKED_WAKEUP, System.nanoTime() - start);
+    }
+}
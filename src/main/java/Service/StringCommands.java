@@ -0,0 +1,162 @@
+package Service;
+
+import Models.DataStore;
+import Models.ExpiryIndex;
+import Models.RedisObject;
+import Service.CommandSpec.Flag;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.EnumSet;
+import java.util.List;
+
+public class StringCommands {
+
+    private static final MathContext FLOAT_PRECISION = new MathContext(17, RoundingMode.HALF_EVEN);
+
+    private final DataStore dataStore = DataStore.getInstance();
+
+    public void register(CommandRegistry registry) {
+        registry.register(new CommandSpec("set", -3, EnumSet.of(Flag.WRITE, Flag.DENYOOM), 1, 1, 1, this::set));
+        registry.register(new CommandSpec("get", 2, EnumSet.of(Flag.READONLY, Flag.FAST), 1, 1, 1, this::get));
+        registry.register(new CommandSpec("incr", 2, EnumSet.of(Flag.WRITE, Flag.DENYOOM, Flag.FAST), 1, 1, 1,
+                (client, arguments) -> incrementBy(client, arguments.get(1), 1)));
+        registry.register(new CommandSpec("decr", 2, EnumSet.of(Flag.WRITE, Flag.DENYOOM, Flag.FAST), 1, 1, 1,
+                (client, arguments) -> incrementBy(client, arguments.get(1), -1)));
+        registry.register(new CommandSpec("incrby", 3, EnumSet.of(Flag.WRITE, Flag.DENYOOM, Flag.FAST), 1, 1, 1,
+                (client, arguments) -> incrementBy(client, arguments.get(1), Long.parseLong(arguments.get(2)))));
+        registry.register(new CommandSpec("decrby", 3, EnumSet.of(Flag.WRITE, Flag.DENYOOM, Flag.FAST), 1, 1, 1, this::decrby));
+        registry.register(new CommandSpec("incrbyfloat", 3, EnumSet.of(Flag.WRITE, Flag.DENYOOM, Flag.FAST), 1, 1, 1, this::incrbyfloat));
+    }
+
+    private void set(CommandProcessor client, List<String> arguments) {
+        String key = arguments.get(1);
+        String value = arguments.get(2);
+        if (arguments.size() < 5) {
+            setValue(key, value, null, null);
+        } else {
+            String timeUnit = arguments.get(3);
+            Long time = Long.parseLong(arguments.get(4));
+            long expiryTime = setValue(key, value, timeUnit, time);
+            // The AOF gets the absolute deadline, so replaying the log later does not extend the TTL.
+            client.propagateAs(List.of("SET", key, value, "PXAT", Long.toString(expiryTime)));
+        }
+        client.getOutput().writeRaw(OutputEncoderService.OK);
+    }
+
+    private void get(CommandProcessor client, List<String> arguments) {
+        RedisObject value = getValue(arguments.get(1));
+        if (value == null) {
+            client.getOutput().writeRaw(OutputEncoderService.NULL_BULK_STRING);
+        } else if (value.isInteger()) {
+            client.getOutput().encodeBulkLong(value.getLong());
+        } else {
+            client.getOutput().encodeBulkString(value.getBytes());
+        }
+    }
+
+    private void decrby(CommandProcessor client, List<String> arguments) {
+        long decrement = Long.parseLong(arguments.get(2));
+        if (decrement == Long.MIN_VALUE) {
+            throw new RuntimeException("decrement would overflow");
+        }
+        incrementBy(client, arguments.get(1), -decrement);
+    }
+
+    // The read-modify-write runs inside compute, which locks only the key's hash bin: concurrent
+    // counters on different keys never contend and updates to one key are never lost. Values are
+    // immutable, so the reply comes from the value we installed rather than a second read.
+    private void incrementBy(CommandProcessor client, String key, long delta) {
+        RedisObject updated = dataStore.update(key, current -> {
+            long value = 0;
+            if (current != null) {
+                if (current.getType() != RedisObject.Type.STRING) {
+                    throw new RuntimeException(DataStore.WRONGTYPE);
+                }
+                // Only int-encoded values can be numbers: anything that failed the canonical check is not one.
+                if (!current.isInteger()) {
+                    throw new NumberFormatException();
+                }
+                value = current.getLong();
+            }
+            if ((delta > 0 && value > Long.MAX_VALUE - delta) || (delta < 0 && value < Long.MIN_VALUE - delta)) {
+                throw new RuntimeException("increment or decrement would overflow");
+            }
+            return RedisObject.ofLong(value + delta);
+        });
+        client.getOutput().encodeInteger(updated.getLong());
+    }
+
+    private void incrbyfloat(CommandProcessor client, List<String> arguments) {
+        BigDecimal increment = parseFloat(arguments.get(2));
+        RedisObject updated = dataStore.update(arguments.get(1), current -> {
+            BigDecimal value = BigDecimal.ZERO;
+            if (current != null) {
+                if (current.getType() != RedisObject.Type.STRING) {
+                    throw new RuntimeException(DataStore.WRONGTYPE);
+                }
+                value = current.isInteger() ? BigDecimal.valueOf(current.getLong())
+                        : parseFloat(new String(current.getBytes(), StandardCharsets.ISO_8859_1));
+            }
+            // Redis sums in long double and prints "%.17Lf" with trailing zeros trimmed, so 0.2 + 0.1 is "0.3".
+            // The exact decimal sum rounded to 17 significant digits and at most 17 places gives the same text.
+            BigDecimal result = value.add(increment, FLOAT_PRECISION);
+            if (Double.isInfinite(result.doubleValue())) {
+                throw new RuntimeException("increment would produce NaN or Infinity");
+            }
+            if (result.scale() > 17) {
+                result = result.setScale(17, RoundingMode.HALF_EVEN);
+            }
+            return RedisObject.ofString(result.stripTrailingZeros().toPlainString());
+        });
+        client.getOutput().encodeBulkString(updated.getBytes());
+    }
+
+    // Double.parseDouble also accepts surrounding spaces, hex and "d"/"f" suffixes; Redis does not.
+    private static BigDecimal parseFloat(String value) {
+        int length = value.length();
+        if (length == 0 || Character.isWhitespace(value.charAt(0)) || Character.isWhitespace(value.charAt(length - 1))
+                || Character.isLetter(value.charAt(length - 1)) || value.contains("x") || value.contains("X")) {
+            throw new RuntimeException("value is not a valid float");
+        }
+        try {
+            if (Double.isNaN(Double.parseDouble(value))) {
+                throw new RuntimeException("value is not a valid float");
+            }
+            BigDecimal parsed = new BigDecimal(value);
+            // Digits this far below the 17 printed places cannot show up in the result; dropping them
+            // keeps an exponent like 1e-999999999 from ever being expanded.
+            return parsed.precision() - parsed.scale() < -40 ? BigDecimal.ZERO : parsed;
+        } catch (NumberFormatException e) {
+            throw new RuntimeException("value is not a valid float");
+        }
+    }
+
+    private long setValue(String key, String value, String timeUnit, Long time) {
+        long expiryTime = Instant.now().toEpochMilli();
+        if (timeUnit == null) {
+            expiryTime = ExpiryIndex.NO_EXPIRY;
+        } else {
+            if ("EX".equalsIgnoreCase(timeUnit)) {
+                expiryTime += time * 1000;
+            } else if ("PX".equalsIgnoreCase(timeUnit)) {
+                expiryTime += time;
+            } else if ("EXAT".equalsIgnoreCase(timeUnit)) {
+                expiryTime = time * 1000;
+            } else if ("PXAT".equalsIgnoreCase(timeUnit)) {
+                expiryTime = time;
+            } else {
+                throw new RuntimeException("Incorrect unit for time sent, it can only be PX, EX, PXAT or EXAT.");
+            }
+        }
+        dataStore.set(key, RedisObject.ofString(value), expiryTime);
+        return expiryTime;
+    }
+
+    private RedisObject getValue(String key) {
+        return dataStore.get(key, RedisObject.Type.STRING);
+    }
+}
@@ -0,0 +1,113 @@
+package Service;
+
+import Models.DataStore;
+import Models.KeyLocks;
+import Service.CommandSpec.Flag;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+
+// MULTI/EXEC with WATCH. EXEC locks every key of the queued commands and of the watch list at once,
+// checks the watched versions and runs the whole queue in that one critical section, so no other
+// command on those keys can run in between. The replies are written out together as one array.
+public class TransactionCommands {
+
+    private final KeyLocks keyLocks = DataStore.getInstance().getKeyLocks();
+    private final EvictionService evictionService = EvictionService.getInstance();
+    private CommandRegistry registry;
+
+    public void register(CommandRegistry registry) {
+        this.registry = registry;
+        registry.register(new CommandSpec("multi", 1, EnumSet.of(Flag.FAST), 0, 0, 0, this::multi));
+        registry.register(new CommandSpec("exec", 1, EnumSet.of(Flag.SKIP_SLOWLOG), 0, 0, 0, this::exec));
+        registry.register(new CommandSpec("discard", 1, EnumSet.of(Flag.FAST), 0, 0, 0, this::discard));
+        registry.register(new CommandSpec("watch", -2, EnumSet.of(Flag.FAST), 1, -1, 1, this::watch));
+        registry.register(new CommandSpec("unwatch", 1, EnumSet.of(Flag.FAST), 0, 0, 0, this::unwatch));
+    }
+
+    // The master's stream and the AOF replay are applied as they arrive; a MULTI there only marks a boundary.
+    private void multi(CommandProcessor client, List<String> arguments) {
+        if (!client.isMaster()) {
+            if (client.inTransaction()) {
+                throw new RuntimeException("MULTI calls can not be nested");
+            }
+            client.beginTransaction();
+        }
+        client.getOutput().writeRaw(OutputEncoderService.OK);
+    }
+
+    private void exec(CommandProcessor client, List<String> arguments) {
+        if (client.isMaster()) {
+            client.getOutput().writeRaw(OutputEncoderService.OK);
+            return;
+        }
+        if (!client.inTransaction()) {
+            throw new RuntimeException("EXEC without MULTI");
+        }
+        List<List<String>> commands = client.endTransaction();
+        try {
+            if (commands == null) {
+                throw new RuntimeException("-EXECABORT Transaction discarded because of previous errors.");
+            }
+            List<CommandSpec> specs = new ArrayList<>(commands.size());
+            List<List<String>> keysOf = new ArrayList<>(commands.size());
+            List<String> locked = new ArrayList<>(client.getWatchedKeys());
+            boolean denyOom = false;
+            for (List<String> command : commands) {
+                CommandSpec spec = registry.lookup(command.get(0));
+                List<String> keys = spec.getKeys(command);
+                specs.add(spec);
+                keysOf.add(keys);
+                locked.addAll(keys);
+                denyOom |= spec.hasFlag(Flag.DENYOOM);
+            }
+            // Room is made for the whole batch up front: eviction locks keys of its own.
+            if (denyOom && !evictionService.makeRoom()) {
+                throw new RuntimeException("-OOM command not allowed when used memory > 'maxmemory'.");
+            }
+            keyLocks.lockAll(locked);
+            try {
+                if (client.watchedKeysChanged()) {
+                    client.getOutput().writeRaw(OutputEncoderService.NULL_ARRAY);
+                    return;
+                }
+                client.getOutput().encodeArrayHeader(commands.size());
+                client.setExecuting(true);
+                for (int i = 0; i < commands.size(); i++) {
+                    client.execute(specs.get(i), commands.get(i), keysOf.get(i));
+                }
+            } finally {
+                client.setExecuting(false);
+                keyLocks.unlockAll(locked);
+            }
+        } finally {
+            client.unwatchAll();
+        }
+    }
+
+    private void discard(CommandProcessor client, List<String> arguments) {
+        if (!client.inTransaction()) {
+            throw new RuntimeException("DISCARD without MULTI");
+        }
+        client.endTransaction();
+        client.unwatchAll();
+        client.getOutput().writeRaw(OutputEncoderService.OK);
+    }
+
+    // Runs with the keys locked, so each version is read consistently with the writes to its key.
+    private void watch(CommandProcessor client, List<String> arguments) {
+        if (client.inTransaction()) {
+            throw new RuntimeException("WATCH inside MULTI is not allowed");
+        }
+        for (int i = 1; i < arguments.size(); i++) {
+            client.watch(arguments.get(i));
+        }
+        client.getOutput().writeRaw(OutputEncoderService.OK);
+    }
+
+    private void unwatch(CommandProcessor client, List<String> arguments) {
+        client.unwatchAll();
+        client.getOutput().writeRaw(OutputEncoderService.OK);
+    }
+}